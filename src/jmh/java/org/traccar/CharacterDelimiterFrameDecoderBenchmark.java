@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares Netty DelimiterBasedFrameDecoder (previous base class) with the single pass delimiter scanner. Input is a
+ * stream of small text frames, delivered either in one buffer or in small fragments to show repeated scanning.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CharacterDelimiterFrameDecoderBenchmark {
+
+    private static final String FRAME =
+            "+RESP:GTFRI,060228,862894020180553,,,10,1,1,0.0,0,115.8,117.129356,31.839248,20161117080006,"
+            + "0460,0001,5663,2BA2,00,35.9,,,,100,210100,,,,20161117080008,0C4F";
+
+    private static final int FRAMES = 64;
+    private static final int FRAGMENT = 16;
+
+    @Param({"single", "multiple"})
+    private String delimiters;
+
+    private ByteBuf data;
+
+    private static final class NettyDecoder extends DelimiterBasedFrameDecoder {
+
+        private NettyDecoder(String... delimiters) {
+            super(1024, true, convert(delimiters));
+        }
+
+        private static ByteBuf[] convert(String... delimiters) {
+            ByteBuf[] result = new ByteBuf[delimiters.length];
+            for (int i = 0; i < delimiters.length; i++) {
+                result[i] = Unpooled.copiedBuffer(delimiters[i], StandardCharsets.ISO_8859_1);
+            }
+            return result;
+        }
+
+        private Object decodeFrame(ByteBuf buf) throws Exception {
+            return decode(null, buf);
+        }
+
+    }
+
+    private String[] getDelimiters() {
+        if (delimiters.equals("single")) {
+            return new String[] {"$"};
+        } else {
+            return new String[] {"$\r\n", "$", "\r\n"};
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < FRAMES; i++) {
+            builder.append(FRAME).append(i % 2 == 0 ? "$" : "$\r\n");
+        }
+        data = Unpooled.copiedBuffer(builder.toString(), StandardCharsets.ISO_8859_1);
+    }
+
+    private static int drain(ByteBuf buf, FrameFunction decoder) throws Exception {
+        int count = 0;
+        Object frame;
+        while ((frame = decoder.decode(buf)) != null) {
+            ((ByteBuf) frame).release();
+            count += 1;
+        }
+        return count;
+    }
+
+    @FunctionalInterface
+    private interface FrameFunction {
+        Object decode(ByteBuf buf) throws Exception;
+    }
+
+    private int decodeWhole(FrameFunction decoder) throws Exception {
+        return drain(data.duplicate(), decoder);
+    }
+
+    private int decodeFragmented(FrameFunction decoder) throws Exception {
+        ByteBuf input = data.duplicate();
+        ByteBuf buf = Unpooled.buffer(input.readableBytes());
+        int count = 0;
+        while (input.isReadable()) {
+            buf.writeBytes(input, Math.min(FRAGMENT, input.readableBytes()));
+            count += drain(buf, decoder);
+        }
+        buf.release();
+        return count;
+    }
+
+    @Benchmark
+    public int nettyWhole() throws Exception {
+        NettyDecoder decoder = new NettyDecoder(getDelimiters());
+        return decodeWhole(decoder::decodeFrame);
+    }
+
+    @Benchmark
+    public int scannerWhole() throws Exception {
+        CharacterDelimiterFrameDecoder decoder = new CharacterDelimiterFrameDecoder(1024, getDelimiters());
+        return decodeWhole(buf -> decoder.decode(null, buf));
+    }
+
+    @Benchmark
+    public int nettyFragmented() throws Exception {
+        NettyDecoder decoder = new NettyDecoder(getDelimiters());
+        return decodeFragmented(decoder::decodeFrame);
+    }
+
+    @Benchmark
+    public int scannerFragmented() throws Exception {
+        CharacterDelimiterFrameDecoder decoder = new CharacterDelimiterFrameDecoder(1024, getDelimiters());
+        return decodeFragmented(buf -> decoder.decode(null, buf));
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode throughput of protocol decoders using samples from their unit tests. Samples are collected by running
+ * {@code <protocol>ProtocolDecoderTest} with a decode listener and replayed on the same decoder instances, one message
+ * per operation, so the GC profiler reports allocation per message. Running the main method benchmarks the protocols
+ * listed in the {@code protocols} property, writes JSON results to the {@code results} file and compares them with
+ * the {@code baseline} results file from an earlier run, if provided.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolDecoderBenchmark {
+
+    private static final String ALLOCATION = "·gc.alloc.rate.norm";
+
+    @Param({"Gt06", "Teltonika", "Gl200Text"})
+    private String protocol;
+
+    private static final class Sample {
+
+        private final BaseProtocolDecoder decoder;
+        private final Object message;
+
+        private Sample(BaseProtocolDecoder decoder, Object message) {
+            this.decoder = decoder;
+            this.message = message;
+        }
+
+        private Object decode() throws Exception {
+            Object duplicate = message;
+            if (message instanceof ByteBuf) {
+                duplicate = ((ByteBuf) message).duplicate();
+            } else if (message instanceof ByteBufHolder) {
+                duplicate = ((ByteBufHolder) message).duplicate();
+            }
+            return decoder.decode(null, null, duplicate);
+        }
+
+    }
+
+    private Sample[] samples;
+    private int index;
+
+    private static Object copy(Object message) {
+        if (message instanceof ByteBuf) {
+            return ((ByteBuf) message).copy();
+        } else if (message instanceof ByteBufHolder) {
+            return ((ByteBufHolder) message).copy();
+        } else if (message instanceof String) {
+            return message;
+        }
+        return null;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Class<?> testClass = Class.forName("org.traccar.protocol." + protocol + "ProtocolDecoderTest");
+
+        List<Sample> recorded = new ArrayList<>();
+        ProtocolTest.setDecodeListener((decoder, message) -> {
+            Object copy = copy(message);
+            if (copy != null) {
+                recorded.add(new Sample(decoder, copy));
+            }
+        });
+        Result result;
+        try {
+            result = JUnitCore.runClasses(testClass);
+        } finally {
+            ProtocolTest.setDecodeListener(null);
+        }
+        if (!result.wasSuccessful()) {
+            throw new IllegalStateException(result.getFailures().get(0).toString());
+        }
+
+        List<Sample> valid = new ArrayList<>();
+        for (Sample sample : recorded) {
+            try {
+                sample.decode();
+                valid.add(sample);
+            } catch (Exception e) {
+                continue; // sample depends on decoder state
+            }
+        }
+        if (valid.isEmpty()) {
+            throw new IllegalStateException("No samples for " + protocol);
+        }
+        samples = valid.toArray(new Sample[0]);
+    }
+
+    @Benchmark
+    public Object decode() throws Exception {
+        Sample sample = samples[index];
+        index += 1;
+        if (index == samples.length) {
+            index = 0;
+        }
+        return sample.decode();
+    }
+
+    private static Map<String, double[]> readBaseline(File file) throws Exception {
+        Map<String, double[]> baseline = new TreeMap<>();
+        for (JsonNode node : new ObjectMapper().readTree(file)) {
+            if (node.path("benchmark").asText().equals(ProtocolDecoderBenchmark.class.getName() + ".decode")) {
+                baseline.put(node.path("params").path("protocol").asText(), new double[] {
+                        node.path("primaryMetric").path("score").asDouble(),
+                        node.path("secondaryMetrics").path(ALLOCATION).path("score").asDouble()});
+            }
+        }
+        return baseline;
+    }
+
+    private static String formatChange(double value, double[] baseline, int index) {
+        if (baseline == null || baseline[index] == 0) {
+            return "";
+        }
+        return String.format("%+.1f%%", (value - baseline[index]) * 100 / baseline[index]);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String protocols = System.getProperty("protocols");
+        String results = System.getProperty("results", "protocols.json");
+        String baselineFile = System.getProperty("baseline");
+
+        new File(results).getAbsoluteFile().getParentFile().mkdirs();
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(ProtocolDecoderBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(results);
+        if (protocols != null && !protocols.isEmpty()) {
+            options.param("protocol", protocols.split(","));
+        }
+        Collection<RunResult> runResults = new Runner(options.build()).run();
+
+        Map<String, double[]> baseline = baselineFile != null ? readBaseline(new File(baselineFile)) : Map.of();
+        System.out.println();
+        System.out.println(String.format("%-20s %14s %9s %12s %9s", "Protocol", "ops/s", "", "B/op", ""));
+        for (RunResult runResult : runResults) {
+            String name = runResult.getParams().getParam("protocol");
+            double score = runResult.getPrimaryResult().getScore();
+            double allocation = runResult.getSecondaryResults().get(ALLOCATION).getScore();
+            System.out.println(String.format("%-20s %14.0f %9s %12.1f %9s",
+                    name, score, formatChange(score, baseline.get(name), 0),
+                    allocation, formatChange(allocation, baseline.get(name), 1)));
+        }
+        System.out.println();
+        System.out.println("Results written to " + results);
+    }
+
+}
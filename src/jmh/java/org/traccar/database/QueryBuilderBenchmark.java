@@ -0,0 +1,111 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.traccar.model.Position;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing named parameters for every query (previous behaviour) with the shared parsed query cache, and
+ * measures the complete create, bind and execute path on an in-memory database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBuilderBenchmark {
+
+    private static final String SELECT = "SELECT * FROM tc_positions WHERE deviceId = :deviceId"
+            + " AND fixTime BETWEEN :from AND :to ORDER BY fixTime";
+
+    private static final String INSERT = "INSERT INTO tc_positions (deviceId, protocol, fixTime, latitude, longitude)"
+            + " VALUES (:deviceId, :protocol, :fixTime, :latitude, :longitude)";
+
+    private String insert;
+    private HikariDataSource dataSource;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        insert = DataManager.constructObjectQuery(DataManager.ACTION_INSERT, Position.class, false);
+
+        HikariConfig hikariConfig = new HikariConfig();
+        hikariConfig.setJdbcUrl("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+        dataSource = new HikariDataSource(hikariConfig);
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE tc_positions (id INT AUTO_INCREMENT PRIMARY KEY, deviceId INT,"
+                    + " protocol VARCHAR(128), fixTime TIMESTAMP, latitude DOUBLE, longitude DOUBLE)");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Object parseUncached() {
+        return QueryBuilder.parse(insert);
+    }
+
+    @Benchmark
+    public Object parseCached() {
+        return QueryBuilder.getParsedQuery(insert);
+    }
+
+    @Benchmark
+    public Object parseUncachedSelect() {
+        return QueryBuilder.parse(SELECT);
+    }
+
+    @Benchmark
+    public Object parseCachedSelect() {
+        return QueryBuilder.getParsedQuery(SELECT);
+    }
+
+    @Benchmark
+    public long insert() throws SQLException {
+        return QueryBuilder.create(dataSource, INSERT, true)
+                .setLong("deviceId", 1)
+                .setString("protocol", "osmand")
+                .setDate("fixTime", new Date())
+                .setDouble("latitude", 10.0)
+                .setDouble("longitude", 20.0)
+                .executeUpdate();
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.geofence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.traccar.model.Geofence;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares linear geofence scan with the spatial index lookup for 10k city sized circles and polygons spread over a
+ * 10 by 10 degree area.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeofenceIndexBenchmark {
+
+    private static final int GEOFENCES = 10000;
+    private static final int POINTS = 1024;
+
+    private List<Geofence> geofences;
+    private GeofenceIndex index;
+    private double[] points;
+    private int current;
+
+    private static GeofenceGeometry createGeometry(Random random) throws ParseException {
+        double latitude = 40 + random.nextDouble() * 10;
+        double longitude = random.nextDouble() * 10;
+        if (random.nextBoolean()) {
+            return new GeofenceCircle(latitude, longitude, 100 + random.nextDouble() * 5000);
+        }
+        StringBuilder polygon = new StringBuilder("POLYGON ((");
+        for (int i = 0; i < 12; i++) {
+            double angle = 2 * Math.PI * i / 12;
+            double size = 0.01 + random.nextDouble() * 0.05;
+            polygon.append(latitude + size * Math.sin(angle)).append(' ');
+            polygon.append(longitude + size * Math.cos(angle)).append(", ");
+        }
+        polygon.append(latitude).append(' ').append(longitude + 0.01).append("))");
+        return new GeofencePolygon(polygon.toString());
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws ParseException {
+        Random random = new Random(1);
+        geofences = new ArrayList<>();
+        for (int i = 0; i < GEOFENCES; i++) {
+            Geofence geofence = new Geofence();
+            geofence.setId(i + 1);
+            geofence.setGeometry(createGeometry(random));
+            geofences.add(geofence);
+        }
+        index = new GeofenceIndex(geofences);
+        points = new double[POINTS * 2];
+        for (int i = 0; i < POINTS; i++) {
+            points[i * 2] = 40 + random.nextDouble() * 10;
+            points[i * 2 + 1] = random.nextDouble() * 10;
+        }
+    }
+
+    private int nextPoint() {
+        int result = current;
+        current = (current + 2) % points.length;
+        return result;
+    }
+
+    @Benchmark
+    public List<Long> linear() {
+        int point = nextPoint();
+        double latitude = points[point];
+        double longitude = points[point + 1];
+        List<Long> result = new ArrayList<>();
+        for (Geofence geofence : geofences) {
+            if (geofence.getGeometry().containsPoint(latitude, longitude)) {
+                result.add(geofence.getId());
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Long> index() {
+        int point = nextPoint();
+        return index.getContaining(points[point], points[point + 1], id -> true);
+    }
+
+    @Benchmark
+    public GeofenceIndex build() {
+        return new GeofenceIndex(geofences);
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.geofence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares ray casting polygon with prepared JTS polygon point tests for a range of vertex counts, which is used to
+ * pick {@link GeofencePreparedPolygon#VERTEX_THRESHOLD}. Polygon outline is smooth and wavy, like a city boundary.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeofencePolygonBenchmark {
+
+    private static final int POINTS = 1024;
+
+    @Param({"16", "64", "256", "4096", "65536"})
+    private int vertices;
+
+    private GeofencePolygon polygon;
+    private GeofencePreparedPolygon prepared;
+    private double[] points;
+    private int current;
+
+    @Setup(Level.Trial)
+    public void setup() throws ParseException {
+        Random random = new Random(1);
+        StringBuilder wkt = new StringBuilder("POLYGON ((");
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            double size = 0.75 + 0.2 * Math.sin(angle * 17) + 0.05 * Math.sin(angle * 101);
+            if (i > 0) {
+                wkt.append(", ");
+            }
+            wkt.append(50 + size * Math.sin(angle)).append(' ').append(30 + size * Math.cos(angle));
+        }
+        wkt.append("))");
+        polygon = new GeofencePolygon(wkt.toString());
+        prepared = new GeofencePreparedPolygon(wkt.toString());
+        points = new double[POINTS * 2];
+        for (int i = 0; i < POINTS; i++) {
+            points[i * 2] = 49 + random.nextDouble() * 2;
+            points[i * 2 + 1] = 29 + random.nextDouble() * 2;
+        }
+    }
+
+    private int nextPoint() {
+        int result = current;
+        current = (current + 2) % points.length;
+        return result;
+    }
+
+    @Benchmark
+    public boolean polygon() {
+        int point = nextPoint();
+        return polygon.containsPoint(points[point], points[point + 1]);
+    }
+
+    @Benchmark
+    public boolean prepared() {
+        int point = nextPoint();
+        return prepared.containsPoint(points[point], points[point + 1]);
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares regular expression and compiled scanner parsing of a typical GL200 location report.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    private static final PatternBuilder BUILDER = new PatternBuilder()
+            .text("+").expression("(?:RESP|BUFF):GT...,")
+            .number("(?:[0-9A-Z]{2}xxxx)?,")     // protocol version
+            .number("(d{15}|x{14}),")            // imei
+            .expression("[^,]*,")                // device name
+            .number("d{1,2},")                   // report id
+            .number("d{1,2},")                   // report type
+            .number("d{1,2},")                   // count
+            .number("(d{1,2}.?d?)?,")            // hdop
+            .number("(d{1,3}.d)?,")              // speed
+            .number("(d{1,3}.?d?)?,")            // course
+            .number("(-?d{1,5}.d)?,")            // altitude
+            .number("(-?d{1,3}.d{6})?,")         // longitude
+            .number("(-?d{1,2}.d{6})?,")         // latitude
+            .number("(dddd)(dd)(dd)")            // date (yyyymmdd)
+            .number("(dd)(dd)(dd)").optional(2)  // time (hhmmss)
+            .text(",")
+            .number("(d+)?,")                    // mcc
+            .number("(d+)?,")                    // mnc
+            .number("(x+)?,")                    // lac
+            .number("(x+)?,")                    // cid
+            .number("(?:d+|(d+.d))?,")           // rssi / odometer
+            .number("(d{1,3})?,")                // battery
+            .number("(dddd)(dd)(dd)(dd)(dd)(dd)") // date
+            .text(",")
+            .number("(xxxx)")                    // count number
+            .text("$").optional();
+
+    private static final Pattern PATTERN = BUILDER.compile();
+    private static final PatternScanner SCANNER = BUILDER.compileScanner();
+
+    private static final String SENTENCE = "+RESP:GTFRI,060228,862894020180553,,10,1,1,0.0,0,115.8,117.129356,"
+            + "31.839248,20161117080006,0460,0001,5663,2BA2,00,35,20161117080008,0C4F$";
+
+    private static double parse(Parser parser) {
+        double result = 0;
+        if (parser.matches()) {
+            result += parser.next().length();
+            result += parser.nextDouble(0);
+            result += parser.nextDouble(0);
+            result += parser.nextDouble(0);
+            result += parser.nextDouble(0);
+            result += parser.nextDouble(0);
+            result += parser.nextDouble(0);
+            result += parser.nextDateTime().getTime();
+            result += parser.nextInt(0);
+            result += parser.nextInt(0);
+            result += parser.nextHexInt(0);
+            result += parser.nextHexLong();
+            result += parser.nextDouble(0);
+            result += parser.nextInt(0);
+            result += parser.nextDateTime().getTime();
+            result += parser.nextHexInt(0);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public double regex() {
+        return parse(new Parser(PATTERN, SENTENCE));
+    }
+
+    @Benchmark
+    public double scanner() {
+        return parse(new Parser(SCANNER, SENTENCE));
+    }
+
+}
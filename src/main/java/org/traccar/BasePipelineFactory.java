@@ -22,6 +22,8 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOutboundHandler;
 import io.netty.channel.ChannelPipeline;
 import io.netty.handler.timeout.IdleStateHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.traccar.config.Keys;
 import org.traccar.handler.ComputedAttributesHandler;
 import org.traccar.handler.CopyAttributesHandler;
@@ -35,6 +37,7 @@ import org.traccar.handler.HemisphereHandler;
 import org.traccar.handler.MotionHandler;
 import org.traccar.handler.NetworkMessageHandler;
 import org.traccar.handler.OpenChannelHandler;
+import org.traccar.handler.ProcessingHandler;
 import org.traccar.handler.RemoteAddressHandler;
 import org.traccar.handler.SpeedLimitHandler;
 import org.traccar.handler.StandardLoggingHandler;
@@ -50,14 +53,59 @@ import org.traccar.handler.events.MaintenanceEventHandler;
 import org.traccar.handler.events.MotionEventHandler;
 import org.traccar.handler.events.OverspeedEventHandler;
 
+import java.beans.Introspector;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(BasePipelineFactory.class);
+
+    /**
+     * Position processing stages in pipeline order. Stages can be selected per protocol using their names (class
+     * name without the "Handler" suffix, for example "geocoder" or "geofenceEvent").
+     */
+    private static final List<Class<? extends ChannelHandler>> PROCESSING_HANDLERS = List.of(
+            TimeHandler.class,
+            GeolocationHandler.class,
+            HemisphereHandler.class,
+            DistanceHandler.class,
+            RemoteAddressHandler.class,
+            FilterHandler.class,
+            GeocoderHandler.class,
+            SpeedLimitHandler.class,
+            MotionHandler.class,
+            CopyAttributesHandler.class,
+            EngineHoursHandler.class,
+            ComputedAttributesHandler.class,
+            DefaultDataHandler.class,
+            WebDataHandler.class,
+            CommandResultEventHandler.class,
+            OverspeedEventHandler.class,
+            BehaviorEventHandler.class,
+            FuelDropEventHandler.class,
+            MotionEventHandler.class,
+            GeofenceEventHandler.class,
+            AlertEventHandler.class,
+            IgnitionEventHandler.class,
+            MaintenanceEventHandler.class,
+            DriverEventHandler.class);
+
     private final TrackerConnector connector;
     private final String protocol;
     private int timeout;
 
+    private volatile List<ChannelHandler> processingHandlers;
+    private ProcessingExecutor processingExecutor;
+    private ProcessingHandler processingHandler;
+    private FlowController flowController;
+    private PipelineMetrics metrics;
+    private List<PipelineMetrics.Stage> processingStages;
+
     public BasePipelineFactory(TrackerConnector connector, String protocol) {
         this.connector = connector;
         this.protocol = protocol;
@@ -71,13 +119,147 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
 
     protected abstract void addProtocolHandlers(PipelineBuilder pipeline);
 
-    @SafeVarargs
-    private void addHandlers(ChannelPipeline pipeline, Class<? extends ChannelHandler>... handlerClasses) {
-        for (Class<? extends ChannelHandler> handlerClass : handlerClasses) {
-            if (handlerClass != null) {
-                pipeline.addLast(Main.getInjector().getInstance(handlerClass));
+    public static String getHandlerName(Class<?> handlerClass) {
+        String name = handlerClass.getSimpleName();
+        if (name.endsWith("Handler")) {
+            name = name.substring(0, name.length() - "Handler".length());
+        }
+        return Introspector.decapitalize(name);
+    }
+
+    /**
+     * Select processing stages from the configured list. Plain names select only the listed stages, names prefixed
+     * with '-' remove stages from the selection. Protocol specific list overrides the server wide one.
+     */
+    static List<Class<? extends ChannelHandler>> selectHandlers(String value) {
+        if (value == null || value.isBlank()) {
+            return PROCESSING_HANDLERS;
+        }
+        Map<String, Class<? extends ChannelHandler>> names = new HashMap<>();
+        for (Class<? extends ChannelHandler> handlerClass : PROCESSING_HANDLERS) {
+            names.put(getHandlerName(handlerClass), handlerClass);
+        }
+        Set<Class<? extends ChannelHandler>> included = new HashSet<>();
+        Set<Class<? extends ChannelHandler>> excluded = new HashSet<>();
+        for (String name : value.split("[, ]")) {
+            boolean exclude = name.startsWith("-");
+            if (exclude) {
+                name = name.substring(1);
+            }
+            if (name.isEmpty()) {
+                continue;
+            }
+            Class<? extends ChannelHandler> handlerClass = names.get(name);
+            if (handlerClass == null) {
+                LOGGER.warn("Unknown pipeline handler {}", name);
+            } else if (exclude) {
+                excluded.add(handlerClass);
+            } else {
+                included.add(handlerClass);
+            }
+        }
+        List<Class<? extends ChannelHandler>> result = new ArrayList<>();
+        for (Class<? extends ChannelHandler> handlerClass : PROCESSING_HANDLERS) {
+            if ((included.isEmpty() || included.contains(handlerClass)) && !excluded.contains(handlerClass)) {
+                result.add(handlerClass);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fuse consecutive handlers that only transform positions into composite stages.
+     */
+    static List<ChannelHandler> fuseHandlers(List<ChannelHandler> handlers) {
+        List<ChannelHandler> result = new ArrayList<>();
+        List<BaseDataHandler> fused = new ArrayList<>();
+        for (ChannelHandler handler : handlers) {
+            if (CompositeDataHandler.isFusible(handler)) {
+                fused.add((BaseDataHandler) handler);
+            } else {
+                addFused(result, fused);
+                result.add(handler);
             }
         }
+        addFused(result, fused);
+        return result;
+    }
+
+    private static void addFused(List<ChannelHandler> result, List<BaseDataHandler> fused) {
+        if (fused.size() == 1) {
+            result.add(fused.get(0));
+        } else if (fused.size() > 1) {
+            result.add(new CompositeDataHandler(fused));
+        }
+        fused.clear();
+    }
+
+    /**
+     * Processing handlers are singletons, so they are resolved once on the first connection. Injector is not
+     * available yet when the factory is created.
+     */
+    private List<ChannelHandler> getProcessingHandlers() {
+        List<ChannelHandler> result = processingHandlers;
+        if (result == null) {
+            synchronized (this) {
+                result = processingHandlers;
+                if (result == null) {
+                    flowController = Main.getInjector().getInstance(FlowController.class);
+                    processingExecutor = Main.getInjector().getInstance(ProcessingExecutor.class);
+                    if (processingExecutor != null) {
+                        processingHandler = new ProcessingHandler(processingExecutor);
+                    }
+                    String value = Context.getConfig().getString(
+                            Keys.PROTOCOL_HANDLERS.withPrefix(protocol),
+                            Context.getConfig().getString(Keys.SERVER_HANDLERS));
+                    List<ChannelHandler> handlers = new ArrayList<>();
+                    for (Class<? extends ChannelHandler> handlerClass : selectHandlers(value)) {
+                        ChannelHandler handler = Main.getInjector().getInstance(handlerClass);
+                        if (handler != null) {
+                            handlers.add(handler);
+                        }
+                    }
+                    result = fuseHandlers(handlers);
+                    metrics = Main.getInjector().getInstance(PipelineMetrics.class);
+                    if (metrics != null) {
+                        result = instrumentHandlers(result);
+                    }
+                    processingHandlers = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private String getStageName(ChannelHandler handler) {
+        Class<?> handlerClass = handler.getClass();
+        while (handlerClass.isAnonymousClass()) {
+            handlerClass = handlerClass.getSuperclass();
+        }
+        return getHandlerName(handlerClass);
+    }
+
+    /**
+     * Create metrics stages for processing handlers. Fused handlers are measured individually inside the composite.
+     */
+    private List<ChannelHandler> instrumentHandlers(List<ChannelHandler> handlers) {
+        List<ChannelHandler> result = new ArrayList<>();
+        processingStages = new ArrayList<>();
+        for (ChannelHandler handler : handlers) {
+            if (handler instanceof CompositeDataHandler) {
+                List<BaseDataHandler> fused = ((CompositeDataHandler) handler).getHandlers();
+                List<PipelineMetrics.Stage> stages = new ArrayList<>();
+                for (BaseDataHandler fusedHandler : fused) {
+                    stages.add(metrics.getStage(protocol, getStageName(fusedHandler)));
+                }
+                result.add(new CompositeDataHandler(fused, stages));
+                processingStages.add(null);
+            } else {
+                result.add(handler);
+                processingStages.add(metrics.getStage(protocol, getStageName(handler)));
+            }
+        }
+        return result;
     }
 
     public static <T extends ChannelHandler> T getHandler(ChannelPipeline pipeline, Class<T> clazz) {
@@ -88,6 +270,13 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
             } else if (handler instanceof WrapperOutboundHandler) {
                 handler = ((WrapperOutboundHandler) handler).getWrappedHandler();
             }
+            if (handler instanceof CompositeDataHandler) {
+                for (ChannelHandler fusedHandler : ((CompositeDataHandler) handler).getHandlers()) {
+                    if (clazz.isAssignableFrom(fusedHandler.getClass())) {
+                        return clazz.cast(fusedHandler);
+                    }
+                }
+            }
             if (clazz.isAssignableFrom(handler.getClass())) {
                 return (T) handler;
             }
@@ -98,20 +287,25 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
     @Override
     protected void initChannel(Channel channel) {
         final ChannelPipeline pipeline = channel.pipeline();
+        final List<ChannelHandler> handlers = getProcessingHandlers();
 
         addTransportHandlers(pipeline::addLast);
 
         if (timeout > 0 && !connector.isDatagram()) {
             pipeline.addLast(new IdleStateHandler(timeout, 0, 0));
         }
-        pipeline.addLast(new OpenChannelHandler(connector));
+        pipeline.addLast(new OpenChannelHandler(connector, flowController));
         pipeline.addLast(new NetworkMessageHandler());
         pipeline.addLast(new StandardLoggingHandler(protocol));
 
         addProtocolHandlers(handler -> {
+            if (metrics != null && handler instanceof BaseProtocolDecoder) {
+                ((BaseProtocolDecoder) handler).setMetricsStage(metrics.getStage(protocol, "decoder"));
+            }
             if (!(handler instanceof BaseProtocolDecoder || handler instanceof BaseProtocolEncoder)) {
                 if (handler instanceof ChannelInboundHandler) {
-                    handler = new WrapperInboundHandler((ChannelInboundHandler) handler);
+                    handler = new WrapperInboundHandler((ChannelInboundHandler) handler,
+                            metrics != null ? metrics.getStage(protocol, getStageName(handler)) : null);
                 } else {
                     handler = new WrapperOutboundHandler((ChannelOutboundHandler) handler);
                 }
@@ -119,34 +313,19 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
             pipeline.addLast(handler);
         });
 
-        addHandlers(
-                pipeline,
-                TimeHandler.class,
-                GeolocationHandler.class,
-                HemisphereHandler.class,
-                DistanceHandler.class,
-                RemoteAddressHandler.class,
-                FilterHandler.class,
-                GeocoderHandler.class,
-                SpeedLimitHandler.class,
-                MotionHandler.class,
-                CopyAttributesHandler.class,
-                EngineHoursHandler.class,
-                ComputedAttributesHandler.class,
-                WebDataHandler.class,
-                DefaultDataHandler.class,
-                CommandResultEventHandler.class,
-                OverspeedEventHandler.class,
-                BehaviorEventHandler.class,
-                FuelDropEventHandler.class,
-                MotionEventHandler.class,
-                GeofenceEventHandler.class,
-                AlertEventHandler.class,
-                IgnitionEventHandler.class,
-                MaintenanceEventHandler.class,
-                DriverEventHandler.class);
-
-        pipeline.addLast(new MainEventHandler());
+        if (processingHandler != null) {
+            pipeline.addLast(processingHandler);
+        }
+        for (int i = 0; i < handlers.size(); i++) {
+            ChannelHandler handler = handlers.get(i);
+            PipelineMetrics.Stage stage = processingStages != null ? processingStages.get(i) : null;
+            if (stage != null && handler instanceof ChannelInboundHandler) {
+                handler = new WrapperInboundHandler((ChannelInboundHandler) handler, stage);
+            }
+            pipeline.addLast(processingExecutor, handler);
+        }
+
+        pipeline.addLast(processingExecutor, new MainEventHandler());
     }
 
 }
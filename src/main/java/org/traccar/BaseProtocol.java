@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -36,6 +36,7 @@ public abstract class BaseProtocol implements Protocol {
     private final Set<String> supportedDataCommands = new HashSet<>();
     private final Set<String> supportedTextCommands = new HashSet<>();
     private final List<TrackerConnector> connectorList = new LinkedList<>();
+    private final List<ProtocolSignature> signatures = new LinkedList<>();
 
     private StringProtocolEncoder textCommandEncoder = null;
 
@@ -66,6 +67,17 @@ public abstract class BaseProtocol implements Protocol {
         return connectorList;
     }
 
+    /**
+     * Register pattern of the first message for protocol detection on the shared port.
+     */
+    protected void addSignature(ProtocolSignature signature) {
+        signatures.add(signature);
+    }
+
+    public List<ProtocolSignature> getSignatures() {
+        return signatures;
+    }
+
     public void setSupportedDataCommands(String... commands) {
         supportedDataCommands.addAll(Arrays.asList(commands));
     }
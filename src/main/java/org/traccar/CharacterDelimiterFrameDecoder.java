@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,50 +16,161 @@
 package org.traccar;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
-import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.ByteProcessor;
 
-public class CharacterDelimiterFrameDecoder extends DelimiterBasedFrameDecoder {
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
-    private static ByteBuf createDelimiter(char delimiter) {
-        byte[] buf = {(byte) delimiter};
-        return Unpooled.wrappedBuffer(buf);
-    }
+/**
+ * Splits frames on one or more delimiters, same as Netty DelimiterBasedFrameDecoder. Buffer is scanned once for the
+ * first byte of any delimiter and candidates are then compared with the delimiters in order, so the earliest
+ * delimiter wins and the first listed one wins at the same position. Bytes scanned without a match are not scanned
+ * again when more data arrives. Frames are retained slices of the input buffer.
+ */
+public class CharacterDelimiterFrameDecoder extends ByteToMessageDecoder {
 
-    private static ByteBuf createDelimiter(String delimiter) {
-        byte[] buf = new byte[delimiter.length()];
-        for (int i = 0; i < delimiter.length(); i++) {
-            buf[i] = (byte) delimiter.charAt(i);
-        }
-        return Unpooled.wrappedBuffer(buf);
-    }
+    private final int maxFrameLength;
+    private final boolean stripDelimiter;
+    private final byte[][] delimiters;
+    private final int maxDelimiterLength;
+    private final ByteProcessor delimiterStart;
 
-    private static ByteBuf[] convertDelimiters(String[] delimiters) {
-        ByteBuf[] result = new ByteBuf[delimiters.length];
-        for (int i = 0; i < delimiters.length; i++) {
-            result[i] = createDelimiter(delimiters[i]);
-        }
-        return result;
-    }
+    private boolean discardingTooLongFrame;
+    private int scannedLength;
 
     public CharacterDelimiterFrameDecoder(int maxFrameLength, char delimiter) {
-        super(maxFrameLength, createDelimiter(delimiter));
+        this(maxFrameLength, true, String.valueOf(delimiter));
     }
 
     public CharacterDelimiterFrameDecoder(int maxFrameLength, String delimiter) {
-        super(maxFrameLength, createDelimiter(delimiter));
+        this(maxFrameLength, true, delimiter);
     }
 
     public CharacterDelimiterFrameDecoder(int maxFrameLength, boolean stripDelimiter, String delimiter) {
-        super(maxFrameLength, stripDelimiter, createDelimiter(delimiter));
+        this(maxFrameLength, stripDelimiter, new String[] {delimiter});
     }
 
     public CharacterDelimiterFrameDecoder(int maxFrameLength, String... delimiters) {
-        super(maxFrameLength, convertDelimiters(delimiters));
+        this(maxFrameLength, true, delimiters);
     }
 
     public CharacterDelimiterFrameDecoder(int maxFrameLength, boolean stripDelimiter, String... delimiters) {
-        super(maxFrameLength, stripDelimiter, convertDelimiters(delimiters));
+        if (delimiters.length == 0) {
+            throw new IllegalArgumentException("No delimiters");
+        }
+        this.maxFrameLength = maxFrameLength;
+        this.stripDelimiter = stripDelimiter;
+        this.delimiters = new byte[delimiters.length][];
+        boolean[] firstBytes = new boolean[256];
+        int maxLength = 0;
+        for (int i = 0; i < delimiters.length; i++) {
+            if (delimiters[i].isEmpty()) {
+                throw new IllegalArgumentException("Empty delimiter");
+            }
+            this.delimiters[i] = delimiters[i].getBytes(StandardCharsets.ISO_8859_1);
+            firstBytes[this.delimiters[i][0] & 0xff] = true;
+            maxLength = Math.max(maxLength, this.delimiters[i].length);
+        }
+        maxDelimiterLength = maxLength;
+        delimiterStart = value -> !firstBytes[value & 0xff];
+    }
+
+    @Override
+    protected final void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        Object decoded = decode(ctx, in);
+        if (decoded != null) {
+            out.add(decoded);
+        }
+    }
+
+    private int findDelimiterStart(ByteBuf buf, int fromIndex, int toIndex) {
+        if (delimiters.length == 1 && maxDelimiterLength == 1) {
+            return buf.indexOf(fromIndex, toIndex, delimiters[0][0]);
+        }
+        return buf.forEachByte(fromIndex, toIndex - fromIndex, delimiterStart);
+    }
+
+    private int matchDelimiter(ByteBuf buf, int index) {
+        for (int i = 0; i < delimiters.length; i++) {
+            byte[] delimiter = delimiters[i];
+            if (index + delimiter.length <= buf.writerIndex()) {
+                int j = 0;
+                while (j < delimiter.length && buf.getByte(index + j) == delimiter[j]) {
+                    j += 1;
+                }
+                if (j == delimiter.length) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf buf) throws Exception {
+
+        int startIndex = buf.readerIndex();
+        int endIndex = buf.writerIndex();
+        int index = startIndex + scannedLength;
+        int delimiter = -1;
+
+        while (index < endIndex) {
+            index = findDelimiterStart(buf, index, endIndex);
+            if (index < 0) {
+                break;
+            }
+            delimiter = matchDelimiter(buf, index);
+            if (delimiter >= 0) {
+                break;
+            }
+            index += 1;
+        }
+
+        if (delimiter >= 0) {
+            scannedLength = 0;
+            int frameLength = index - startIndex;
+            int delimiterLength = delimiters[delimiter].length;
+
+            if (discardingTooLongFrame) {
+                discardingTooLongFrame = false;
+                buf.skipBytes(frameLength + delimiterLength);
+                return null;
+            }
+
+            if (frameLength > maxFrameLength) {
+                buf.skipBytes(frameLength + delimiterLength);
+                fail(frameLength);
+            }
+
+            if (stripDelimiter) {
+                ByteBuf frame = buf.readRetainedSlice(frameLength);
+                buf.skipBytes(delimiterLength);
+                return frame;
+            } else {
+                return buf.readRetainedSlice(frameLength + delimiterLength);
+            }
+        }
+
+        int readableBytes = buf.readableBytes();
+        if (discardingTooLongFrame) {
+            buf.skipBytes(readableBytes);
+            scannedLength = 0;
+        } else if (readableBytes > maxFrameLength) {
+            buf.skipBytes(readableBytes);
+            discardingTooLongFrame = true;
+            scannedLength = 0;
+            fail(readableBytes);
+        } else {
+            scannedLength = Math.max(0, readableBytes - maxDelimiterLength + 1);
+        }
+        return null;
+    }
+
+    private void fail(long frameLength) {
+        throw new TooLongFrameException(
+                "frame length exceeds " + maxFrameLength + ": " + frameLength + " - discarded");
     }
 
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import org.traccar.model.Position;
+
+import java.util.List;
+
+/**
+ * Several data handlers fused into a single pipeline stage. Positions go through the handlers in order without a
+ * channel context hop in between, and processing stops when any of them drops the position.
+ */
+@ChannelHandler.Sharable
+public class CompositeDataHandler extends BaseDataHandler {
+
+    private final BaseDataHandler[] handlers;
+    private final PipelineMetrics.Stage[] stages;
+
+    public CompositeDataHandler(List<BaseDataHandler> handlers) {
+        this(handlers, null);
+    }
+
+    /**
+     * @param stages metrics stages matching the handlers, or null if metrics are disabled
+     */
+    public CompositeDataHandler(List<BaseDataHandler> handlers, List<PipelineMetrics.Stage> stages) {
+        this.handlers = handlers.toArray(new BaseDataHandler[0]);
+        this.stages = stages != null ? stages.toArray(new PipelineMetrics.Stage[0]) : null;
+    }
+
+    public List<BaseDataHandler> getHandlers() {
+        return List.of(handlers);
+    }
+
+    /**
+     * Handler can be fused if it only transforms positions and does not override the channel callbacks.
+     */
+    public static boolean isFusible(ChannelHandler handler) {
+        if (!(handler instanceof BaseDataHandler)) {
+            return false;
+        }
+        try {
+            return handler.getClass().getMethod("channelRead", ChannelHandlerContext.class, Object.class)
+                    .getDeclaringClass() == BaseDataHandler.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    @Override
+    protected Position handlePosition(Position position) {
+        for (int i = 0; i < handlers.length && position != null; i++) {
+            if (stages != null) {
+                long startTime = stages[i].enter();
+                try {
+                    position = handlers[i].handlePosition(position);
+                } finally {
+                    stages[i].exit(startTime);
+                }
+            } else {
+                position = handlers[i].handlePosition(position);
+            }
+        }
+        return position;
+    }
+
+}
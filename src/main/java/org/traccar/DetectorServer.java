@@ -0,0 +1,305 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Keys;
+import org.traccar.database.StatisticsManager;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Shared TCP port for several protocols. First bytes of each new connection are matched against protocol signatures
+ * and the connection is then handed over to the pipeline of the matching protocol server. Detection handler removes
+ * itself afterwards, so established sessions are processed exactly as on a dedicated port.
+ */
+public class DetectorServer implements TrackerConnector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DetectorServer.class);
+
+    private static final int MAX_LENGTH = 64;
+
+    private final List<Candidate> candidates;
+    private final String address;
+    private final int port;
+    private final int timeout;
+
+    private final ServerBootstrap bootstrap;
+    private final ChannelGroup channelGroup = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile StatisticsManager statisticsManager;
+
+    static final class Candidate {
+
+        private final String protocol;
+        private final List<ProtocolSignature> signatures;
+        private final Consumer<Channel> initializer;
+
+        Candidate(String protocol, List<ProtocolSignature> signatures, Consumer<Channel> initializer) {
+            this.protocol = protocol;
+            this.signatures = signatures;
+            this.initializer = initializer;
+        }
+
+        private ProtocolSignature.Result match(ByteBuf buf) {
+            ProtocolSignature.Result result = ProtocolSignature.Result.MISMATCH;
+            for (ProtocolSignature signature : signatures) {
+                switch (signature.match(buf)) {
+                    case MATCH:
+                        return ProtocolSignature.Result.MATCH;
+                    case MORE:
+                        result = ProtocolSignature.Result.MORE;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return result;
+        }
+
+    }
+
+    private final class DetectionHandler extends ChannelInboundHandlerAdapter {
+
+        private ByteBuf buffer;
+        private ScheduledFuture<?> timeoutFuture;
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            buffer = ctx.alloc().buffer(MAX_LENGTH);
+            if (timeout > 0) {
+                timeoutFuture = ctx.executor().schedule(() -> {
+                    if (buffer != null) {
+                        miss(ctx);
+                    }
+                }, timeout, TimeUnit.SECONDS);
+            }
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) {
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+            }
+            if (buffer != null) {
+                buffer.release();
+                buffer = null;
+            }
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            channelGroup.add(ctx.channel());
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (buffer == null || !(msg instanceof ByteBuf)) {
+                ReferenceCountUtil.release(msg);
+                return;
+            }
+            try {
+                buffer.writeBytes((ByteBuf) msg);
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+
+            boolean more = false;
+            for (Candidate candidate : candidates) {
+                switch (candidate.match(buffer)) {
+                    case MATCH:
+                        hit(ctx, candidate);
+                        return;
+                    case MORE:
+                        more = true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (!more || buffer.readableBytes() >= MAX_LENGTH) {
+                miss(ctx);
+            }
+        }
+
+        private void hit(ChannelHandlerContext ctx, Candidate candidate) {
+            register(true);
+            ByteBuf data = buffer;
+            buffer = null;
+            Channel channel = ctx.channel();
+            try {
+                candidate.initializer.accept(channel);
+                channel.pipeline().remove(this);
+            } catch (RuntimeException e) {
+                data.release();
+                throw e;
+            }
+            channel.pipeline().fireChannelActive();
+            channel.pipeline().fireChannelRead(data);
+            channel.pipeline().fireChannelReadComplete();
+        }
+
+        private void miss(ChannelHandlerContext ctx) {
+            register(false);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Unknown protocol from {}", ctx.channel().remoteAddress());
+            }
+            buffer.release();
+            buffer = null;
+            ctx.close();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            LOGGER.warn("Protocol detection error", cause);
+            ctx.close();
+        }
+
+    }
+
+    public DetectorServer(Collection<BaseProtocol> protocols) {
+        this(createCandidates(protocols),
+                Context.getConfig().getString(Keys.DETECTOR_ADDRESS),
+                Context.getConfig().getInteger(Keys.DETECTOR_PORT),
+                Context.getConfig().getInteger(Keys.DETECTOR_TIMEOUT));
+    }
+
+    DetectorServer(List<Candidate> candidates, String address, int port, int timeout) {
+        this.candidates = candidates;
+        this.address = address;
+        this.port = port;
+        this.timeout = timeout;
+
+        bootstrap = new ServerBootstrap()
+                .group(EventLoopGroupFactory.getBossGroup(), EventLoopGroupFactory.getWorkerGroup())
+                .channel(EventLoopGroupFactory.getServerSocketChannelClass())
+                .childHandler(new ChannelInitializer<>() {
+                    @Override
+                    protected void initChannel(Channel channel) {
+                        channel.pipeline().addLast(createHandler());
+                    }
+                });
+    }
+
+    private static List<Candidate> createCandidates(Collection<BaseProtocol> protocols) {
+        List<Candidate> result = new ArrayList<>();
+        for (BaseProtocol protocol : protocols) {
+            if (protocol.getSignatures().isEmpty()) {
+                LOGGER.warn("Protocol {} can't be detected", protocol.getName());
+                continue;
+            }
+            TrackerServer server = null;
+            for (TrackerConnector connector : protocol.getConnectorList()) {
+                if (connector instanceof TrackerServer && !connector.isDatagram() && !connector.isSecure()) {
+                    server = (TrackerServer) connector;
+                    break;
+                }
+            }
+            if (server == null) {
+                LOGGER.warn("Protocol {} has no TCP server", protocol.getName());
+                continue;
+            }
+            result.add(new Candidate(
+                    protocol.getName(), protocol.getSignatures(), server.getPipelineFactory()::initChannel));
+        }
+        return result;
+    }
+
+    ChannelHandler createHandler() {
+        return new DetectionHandler();
+    }
+
+    public List<String> getProtocols() {
+        List<String> result = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            result.add(candidate.protocol);
+        }
+        return result;
+    }
+
+    public long getDetectionHits() {
+        return hits.get();
+    }
+
+    public long getDetectionMisses() {
+        return misses.get();
+    }
+
+    private void register(boolean detected) {
+        (detected ? hits : misses).incrementAndGet();
+        if (statisticsManager != null) {
+            statisticsManager.registerDetection(detected);
+        }
+    }
+
+    @Override
+    public boolean isDatagram() {
+        return false;
+    }
+
+    @Override
+    public boolean isSecure() {
+        return false;
+    }
+
+    @Override
+    public ChannelGroup getChannelGroup() {
+        return channelGroup;
+    }
+
+    @Override
+    public void start() throws Exception {
+        statisticsManager = Main.getInjector().getInstance(StatisticsManager.class);
+        InetSocketAddress endpoint;
+        if (address == null) {
+            endpoint = new InetSocketAddress(port);
+        } else {
+            endpoint = new InetSocketAddress(address, port);
+        }
+        Channel channel = bootstrap.bind(endpoint).syncUninterruptibly().channel();
+        if (channel != null) {
+            channelGroup.add(channel);
+        }
+        LOGGER.info("Protocol detection on port {} for {}", port, String.join(", ", getProtocols()));
+    }
+
+    @Override
+    public void stop() {
+        channelGroup.close().awaitUninterruptibly();
+    }
+
+}
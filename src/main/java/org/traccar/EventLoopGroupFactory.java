@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,22 +16,87 @@
 package org.traccar;
 
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
 
 public final class EventLoopGroupFactory {
 
-    private static EventLoopGroup bossGroup = new NioEventLoopGroup();
-    private static EventLoopGroup workerGroup = new NioEventLoopGroup();
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventLoopGroupFactory.class);
+
+    private static final boolean EPOLL;
+
+    private static final EventLoopGroup BOSS_GROUP;
+    private static final EventLoopGroup WORKER_GROUP;
+
+    static {
+        Config config = Context.getConfig();
+        String transport = config != null ? config.getString(Keys.SERVER_TRANSPORT) : null;
+        int bossThreads = config != null ? config.getInteger(Keys.SERVER_BOSS_THREADS) : 0;
+        int workerThreads = config != null ? config.getInteger(Keys.SERVER_WORKER_THREADS) : 0;
+
+        if ("nio".equals(transport)) {
+            EPOLL = false;
+        } else if (Epoll.isAvailable()) {
+            EPOLL = true;
+        } else {
+            if ("epoll".equals(transport)) {
+                LOGGER.warn("Epoll transport is not available, using NIO", Epoll.unavailabilityCause());
+            }
+            EPOLL = false;
+        }
+
+        if (EPOLL) {
+            BOSS_GROUP = new EpollEventLoopGroup(bossThreads);
+            WORKER_GROUP = new EpollEventLoopGroup(workerThreads);
+        } else {
+            BOSS_GROUP = new NioEventLoopGroup(bossThreads);
+            WORKER_GROUP = new NioEventLoopGroup(workerThreads);
+        }
+    }
 
     private EventLoopGroupFactory() {
     }
 
     public static EventLoopGroup getBossGroup() {
-        return bossGroup;
+        return BOSS_GROUP;
     }
 
     public static EventLoopGroup getWorkerGroup() {
-        return workerGroup;
+        return WORKER_GROUP;
+    }
+
+    /**
+     * True if native epoll transport is used. It supports SO_REUSEPORT for binding several datagram channels to the
+     * same port.
+     */
+    public static boolean isEpoll() {
+        return EPOLL;
+    }
+
+    public static Class<? extends ServerSocketChannel> getServerSocketChannelClass() {
+        return EPOLL ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public static Class<? extends SocketChannel> getSocketChannelClass() {
+        return EPOLL ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    public static Class<? extends DatagramChannel> getDatagramChannelClass() {
+        return EPOLL ? EpollDatagramChannel.class : NioDatagramChannel.class;
     }
 
 }
@@ -31,6 +31,12 @@ import java.util.Collection;
 
 public abstract class ExtendedObjectDecoder extends ChannelInboundHandlerAdapter {
 
+    private PipelineMetrics.Stage metricsStage;
+
+    public void setMetricsStage(PipelineMetrics.Stage metricsStage) {
+        this.metricsStage = metricsStage;
+    }
+
     private void saveOriginal(Object decodedMessage, Object originalMessage) {
         if (Context.getConfig().getBoolean(Keys.DATABASE_SAVE_ORIGINAL) && decodedMessage instanceof Position) {
             Position position = (Position) decodedMessage;
@@ -46,6 +52,19 @@ public abstract class ExtendedObjectDecoder extends ChannelInboundHandlerAdapter
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (metricsStage != null) {
+            long startTime = metricsStage.enter();
+            try {
+                handleRead(ctx, msg);
+            } finally {
+                metricsStage.exit(startTime);
+            }
+        } else {
+            handleRead(ctx, msg);
+        }
+    }
+
+    private void handleRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         NetworkMessage networkMessage = (NetworkMessage) msg;
         Object originalMessage = networkMessage.getMessage();
         try {
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import io.netty.channel.Channel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.database.StatisticsManager;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Backpressure from position processing and storage to the network. When queued positions reach the high-water mark,
+ * reading is paused on all tracker connections and UDP sockets. TCP devices are then throttled by the kernel and
+ * buffer data locally. Reading is resumed once the queues drain to the low-water mark.
+ */
+public class FlowController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlowController.class);
+
+    private final StatisticsManager statisticsManager;
+    private final int highWaterMark;
+    private final int lowWaterMark;
+
+    private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private final List<Source> sources = new CopyOnWriteArrayList<>();
+
+    private volatile boolean paused;
+    private long pauseTime;
+    private long pauseCount;
+
+    /**
+     * Queue reporting its current size.
+     */
+    public final class Source {
+
+        private volatile int level;
+
+        private Source() {
+        }
+
+        public void update(int level) {
+            this.level = level;
+            if (!paused) {
+                if (getLevel() >= highWaterMark) {
+                    pause();
+                }
+            } else if (level <= lowWaterMark && getLevel() <= lowWaterMark) {
+                resume();
+            }
+        }
+
+    }
+
+    public FlowController(Config config, StatisticsManager statisticsManager) {
+        this.statisticsManager = statisticsManager;
+        highWaterMark = config.getInteger(Keys.SERVER_BACKPRESSURE_HIGH);
+        lowWaterMark = Math.min(config.getInteger(Keys.SERVER_BACKPRESSURE_LOW), highWaterMark);
+    }
+
+    public Source createSource() {
+        Source source = new Source();
+        sources.add(source);
+        return source;
+    }
+
+    /**
+     * Total number of queued positions.
+     */
+    public int getLevel() {
+        int level = 0;
+        for (Source source : sources) {
+            level += source.level;
+        }
+        return level;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public int getPausedChannels() {
+        return paused ? channels.size() : 0;
+    }
+
+    public synchronized long getPauseCount() {
+        return pauseCount;
+    }
+
+    /**
+     * Register connection or datagram socket. It starts paused if backpressure is currently active. Closed channels
+     * are removed automatically.
+     */
+    public synchronized void addChannel(Channel channel) {
+        channels.add(channel);
+        if (paused) {
+            channel.config().setAutoRead(false);
+        }
+    }
+
+    /**
+     * Level is checked again under the lock, because queues can drain before the lock is acquired. Updates that see
+     * reading still enabled don't try to resume, so the level is also checked after pausing.
+     */
+    private synchronized void pause() {
+        if (!paused && getLevel() >= highWaterMark) {
+            paused = true;
+            pauseTime = System.currentTimeMillis();
+            pauseCount += 1;
+            for (Channel channel : channels) {
+                channel.config().setAutoRead(false);
+            }
+            LOGGER.warn("Processing queues are full ({} positions), pausing {} channels", getLevel(), channels.size());
+            if (statisticsManager != null) {
+                statisticsManager.registerBackpressurePause(channels.size());
+            }
+            if (getLevel() <= lowWaterMark) {
+                resume();
+            }
+        }
+    }
+
+    private synchronized void resume() {
+        if (paused && getLevel() <= lowWaterMark) {
+            paused = false;
+            for (Channel channel : channels) {
+                channel.config().setAutoRead(true);
+            }
+            long duration = System.currentTimeMillis() - pauseTime;
+            LOGGER.info("Processing queues drained, resuming {} channels after {} ms", channels.size(), duration);
+            if (statisticsManager != null) {
+                statisticsManager.registerBackpressureResume(duration);
+            }
+        }
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import com.google.inject.Injector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.api.HealthCheckService;
+import org.traccar.database.StatisticsManager;
 
 import java.io.File;
 import java.lang.management.ManagementFactory;
@@ -128,6 +129,7 @@ public final class Main {
                 Context.getWebServer().start();
             }
             Context.getScheduleManager().start();
+            injector.getInstance(StatisticsManager.class).start();
 
             scheduleHealthCheck();
 
@@ -137,6 +139,7 @@ public final class Main {
                 LOGGER.info("Shutting down server...");
 
                 Context.getScheduleManager().stop();
+                injector.getInstance(StatisticsManager.class).stop();
                 if (Context.getWebServer() != null) {
                     Context.getWebServer().stop();
                 }
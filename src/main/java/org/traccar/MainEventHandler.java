@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -109,7 +109,8 @@ public class MainEventHandler extends ChannelInboundHandlerAdapter {
             LOGGER.info(builder.toString());
 
             Main.getInjector().getInstance(StatisticsManager.class)
-                    .registerMessageStored(position.getDeviceId(), position.getProtocol());
+                    .registerMessageStored(position.getDeviceId(), position.getProtocol(),
+                            System.currentTimeMillis() - position.getServerTime().getTime());
         }
     }
 
@@ -29,6 +29,8 @@ import org.traccar.database.DeviceManager;
 import org.traccar.database.GeofenceManager;
 import org.traccar.database.IdentityManager;
 import org.traccar.database.MaintenancesManager;
+import org.traccar.database.PositionBatchWriter;
+import org.traccar.database.PositionSpool;
 import org.traccar.database.StatisticsManager;
 import org.traccar.geocoder.AddressFormat;
 import org.traccar.geocoder.BanGeocoder;
@@ -80,6 +82,7 @@ import org.traccar.reports.model.TripsConfig;
 
 import javax.annotation.Nullable;
 import javax.ws.rs.client.Client;
+import java.io.IOException;
 import io.netty.util.Timer;
 import org.traccar.speedlimit.OverpassSpeedLimitProvider;
 import org.traccar.speedlimit.SpeedLimitProvider;
@@ -357,9 +360,61 @@ public class MainModule extends AbstractModule {
 
     @Singleton
     @Provides
-    public static DefaultDataHandler provideDefaultDataHandler(@Nullable DataManager dataManager) {
+    public static ProcessingExecutor provideProcessingExecutor(
+            Config config, StatisticsManager statisticsManager, @Nullable FlowController flowController) {
+        if (config.hasKey(Keys.PROCESSING_EXECUTOR)) {
+            return new ProcessingExecutor(config, statisticsManager, flowController);
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static FlowController provideFlowController(Config config, StatisticsManager statisticsManager) {
+        if (config.getInteger(Keys.SERVER_BACKPRESSURE_HIGH) > 0) {
+            return new FlowController(config, statisticsManager);
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static PipelineMetrics providePipelineMetrics(Config config) {
+        if (config.getBoolean(Keys.SERVER_METRICS)) {
+            return new PipelineMetrics();
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static PositionSpool providePositionSpool(
+            Config config, @Nullable DataManager dataManager, StatisticsManager statisticsManager,
+            ObjectMapper objectMapper) throws IOException {
+        if (dataManager != null && config.hasKey(Keys.DATABASE_SPOOL_PATH)) {
+            return new PositionSpool(config, dataManager, statisticsManager, objectMapper);
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static PositionBatchWriter providePositionBatchWriter(
+            Config config, @Nullable DataManager dataManager, StatisticsManager statisticsManager,
+            @Nullable PositionSpool spool, @Nullable FlowController flowController) {
+        if (dataManager != null && config.getBoolean(Keys.DATABASE_BATCH_ENABLE)) {
+            return new PositionBatchWriter(config, dataManager, statisticsManager, spool, flowController);
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static DefaultDataHandler provideDefaultDataHandler(
+            @Nullable DataManager dataManager, @Nullable PositionBatchWriter batchWriter,
+            @Nullable PositionSpool spool) {
         if (dataManager != null) {
-            return new DefaultDataHandler(dataManager);
+            return new DefaultDataHandler(dataManager, batchWriter, spool);
         }
         return null;
     }
@@ -399,9 +454,11 @@ public class MainModule extends AbstractModule {
     @Singleton
     @Provides
     public static GeofenceEventHandler provideGeofenceEventHandler(
-            IdentityManager identityManager, GeofenceManager geofenceManager, CalendarManager calendarManager,
-            ConnectionManager connectionManager) {
-        return new GeofenceEventHandler(identityManager, geofenceManager, calendarManager, connectionManager);
+            Config config, IdentityManager identityManager, GeofenceManager geofenceManager,
+            CalendarManager calendarManager, ConnectionManager connectionManager,
+            StatisticsManager statisticsManager) {
+        return new GeofenceEventHandler(
+                config, identityManager, geofenceManager, calendarManager, connectionManager, statisticsManager);
     }
 
     @Singleton
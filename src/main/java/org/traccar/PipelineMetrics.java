@@ -0,0 +1,203 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Invocation counts and latency histograms of pipeline stages per protocol. Stages are usually nested, because each
+ * handler calls the next one synchronously, so only the time spent in the stage itself is recorded and the time of
+ * nested stages is subtracted.
+ */
+public class PipelineMetrics {
+
+    /**
+     * Histogram bucket upper bounds in nanoseconds.
+     */
+    private static final long[] BUCKETS = {
+            1_000, 2_000, 5_000, 10_000, 20_000, 50_000, 100_000, 200_000, 500_000,
+            1_000_000, 2_000_000, 5_000_000, 10_000_000, 20_000_000, 50_000_000, 100_000_000, 200_000_000,
+            500_000_000, 1_000_000_000, 2_000_000_000, 5_000_000_000L};
+
+    private static final ThreadLocal<Frame> FRAME = ThreadLocal.withInitial(Frame::new);
+
+    private final Map<String, Map<String, Stage>> protocols = new ConcurrentHashMap<>();
+
+    private static final class Frame {
+
+        private long[] saved = new long[16];
+        private int depth;
+        private long nested;
+
+    }
+
+    public static final class Stage {
+
+        private final String protocol;
+        private final String handler;
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder time = new LongAdder();
+        private final LongAccumulator maxTime = new LongAccumulator(Long::max, 0);
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+
+        private Stage(String protocol, String handler) {
+            this.protocol = protocol;
+            this.handler = handler;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public String getProtocol() {
+            return protocol;
+        }
+
+        public String getHandler() {
+            return handler;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Total time in nanoseconds.
+         */
+        public long getTime() {
+            return time.sum();
+        }
+
+        /**
+         * Maximum time of a single invocation in nanoseconds.
+         */
+        public long getMaxTime() {
+            return maxTime.get();
+        }
+
+        /**
+         * Invocation counts per bucket, not cumulative. Last bucket counts invocations longer than the last bound.
+         */
+        public long[] getBuckets() {
+            long[] result = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                result[i] = buckets[i].sum();
+            }
+            return result;
+        }
+
+        /**
+         * Start measurement. Returned value has to be passed to {@link #exit(long)} on the same thread.
+         */
+        public long enter() {
+            Frame frame = FRAME.get();
+            if (frame.depth == frame.saved.length) {
+                long[] saved = new long[frame.saved.length * 2];
+                System.arraycopy(frame.saved, 0, saved, 0, frame.saved.length);
+                frame.saved = saved;
+            }
+            frame.saved[frame.depth++] = frame.nested;
+            frame.nested = 0;
+            return System.nanoTime();
+        }
+
+        public void exit(long startTime) {
+            long elapsed = System.nanoTime() - startTime;
+            Frame frame = FRAME.get();
+            long self = Math.max(0, elapsed - frame.nested);
+            frame.nested = frame.saved[--frame.depth] + elapsed;
+            record(self);
+        }
+
+        void record(long duration) {
+            count.increment();
+            time.add(duration);
+            maxTime.accumulate(duration);
+            int index = 0;
+            while (index < BUCKETS.length && duration > BUCKETS[index]) {
+                index += 1;
+            }
+            buckets[index].increment();
+        }
+
+    }
+
+    public Stage getStage(String protocol, String handler) {
+        return protocols
+                .computeIfAbsent(protocol, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(handler, key -> new Stage(protocol, key));
+    }
+
+    public Collection<Stage> getStages() {
+        List<Stage> result = new ArrayList<>();
+        for (Map<String, Stage> stages : protocols.values()) {
+            result.addAll(stages.values());
+        }
+        return result;
+    }
+
+    /**
+     * Histogram bucket upper bounds in seconds.
+     */
+    public static double[] getBucketBounds() {
+        double[] result = new double[BUCKETS.length];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            result[i] = BUCKETS[i] / (double) TimeUnit.SECONDS.toNanos(1);
+        }
+        return result;
+    }
+
+    /**
+     * Format all stages in Prometheus text exposition format.
+     */
+    public String formatPrometheus() {
+        double[] bounds = getBucketBounds();
+        StringBuilder builder = new StringBuilder();
+        builder.append("# HELP traccar_pipeline_handler_seconds Time spent in pipeline handler\n");
+        builder.append("# TYPE traccar_pipeline_handler_seconds histogram\n");
+        for (Stage stage : getStages()) {
+            String labels = "protocol=\"" + stage.protocol + "\",handler=\"" + stage.handler + "\"";
+            long[] buckets = stage.getBuckets();
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i];
+                builder.append("traccar_pipeline_handler_seconds_bucket{").append(labels).append(",le=\"")
+                        .append(i < bounds.length ? String.valueOf(bounds[i]) : "+Inf").append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            builder.append("traccar_pipeline_handler_seconds_sum{").append(labels).append("} ")
+                    .append(stage.getTime() / (double) TimeUnit.SECONDS.toNanos(1)).append('\n');
+            builder.append("traccar_pipeline_handler_seconds_count{").append(labels).append("} ")
+                    .append(cumulative).append('\n');
+        }
+        builder.append("# HELP traccar_pipeline_handler_max_seconds Longest pipeline handler invocation\n");
+        builder.append("# TYPE traccar_pipeline_handler_max_seconds gauge\n");
+        for (Stage stage : getStages()) {
+            builder.append("traccar_pipeline_handler_max_seconds{protocol=\"").append(stage.protocol)
+                    .append("\",handler=\"").append(stage.handler).append("\"} ")
+                    .append(stage.getMaxTime() / (double) TimeUnit.SECONDS.toNanos(1)).append('\n');
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import io.netty.util.concurrent.AbstractEventExecutor;
+import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.database.StatisticsManager;
+import org.traccar.model.Statistics;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Netty executor for pipeline handlers that can block (database, geocoding, notifications). Work is split into
+ * lanes drained one task at a time, so tasks submitted with the same key (device id) run in submission order, while
+ * different lanes run in parallel on a thread pool or on virtual threads. Tasks submitted by Netty without a key stay
+ * in the lane of the submitting task, or in a lane selected by the submitting thread, so events of a channel coming
+ * from its event loop keep their order.
+ */
+public class ProcessingExecutor extends AbstractEventExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessingExecutor.class);
+
+    private static final int LANE_BATCH = 64;
+
+    private static final ThreadLocal<Lane> CURRENT = new ThreadLocal<>();
+
+    private final StatisticsManager statisticsManager;
+    private final FlowController.Source flowSource;
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final ExecutorService executorService;
+    private final Lane[] lanes;
+    private final Promise<?> terminationFuture = new DefaultPromise<>(GlobalEventExecutor.INSTANCE);
+
+    private static final class Task {
+
+        private final Runnable command;
+        private final long submitTime = System.nanoTime();
+
+        private Task(Runnable command) {
+            this.command = command;
+        }
+
+    }
+
+    private final class Lane implements Runnable {
+
+        private final Queue<Task> tasks = new ArrayDeque<>();
+        private boolean scheduled;
+
+        private void add(Task task) {
+            int pending = pendingCount.incrementAndGet();
+            if (flowSource != null) {
+                flowSource.update(pending);
+            }
+            boolean schedule;
+            synchronized (this) {
+                tasks.add(task);
+                schedule = !scheduled;
+                scheduled = true;
+            }
+            if (schedule) {
+                executorService.execute(this);
+            }
+        }
+
+        private ProcessingExecutor getExecutor() {
+            return ProcessingExecutor.this;
+        }
+
+        private synchronized Task poll() {
+            Task task = tasks.poll();
+            if (task == null) {
+                scheduled = false;
+            }
+            return task;
+        }
+
+        @Override
+        public void run() {
+            CURRENT.set(this);
+            try {
+                for (int i = 0; i < LANE_BATCH; i++) {
+                    Task task = poll();
+                    if (task == null) {
+                        return;
+                    }
+                    runTask(task);
+                }
+                executorService.execute(this);
+            } finally {
+                CURRENT.remove();
+            }
+        }
+
+    }
+
+    public ProcessingExecutor(Config config, StatisticsManager statisticsManager, FlowController flowController) {
+        this.statisticsManager = statisticsManager;
+        flowSource = flowController != null ? flowController.createSource() : null;
+
+        int threads = config.getInteger(Keys.PROCESSING_THREADS);
+        ExecutorService virtualExecutor = null;
+        if ("virtual".equals(config.getString(Keys.PROCESSING_EXECUTOR))) {
+            try {
+                virtualExecutor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                LOGGER.warn("Virtual threads are not available, using thread pool");
+            }
+        }
+
+        int laneCount;
+        if (virtualExecutor != null) {
+            executorService = virtualExecutor;
+            laneCount = threads > 0 ? threads : 1024;
+        } else {
+            if (threads <= 0) {
+                threads = Runtime.getRuntime().availableProcessors() * 4;
+            }
+            executorService = Executors.newFixedThreadPool(threads, new DefaultThreadFactory("processing", true));
+            laneCount = threads * 4;
+        }
+
+        if (statisticsManager != null) {
+            statisticsManager.registerGauge(Statistics.KEY_PROCESSING_PENDING_MAX, this::getPendingCount);
+        }
+
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane();
+        }
+    }
+
+    private void runTask(Task task) {
+        long startTime = System.nanoTime();
+        try {
+            task.command.run();
+        } catch (Throwable e) {
+            LOGGER.warn("Processing task error", e);
+        }
+        int pending = pendingCount.decrementAndGet();
+        if (flowSource != null) {
+            flowSource.update(pending);
+        }
+        if (statisticsManager != null) {
+            statisticsManager.registerProcessing(startTime - task.submitTime, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Number of tasks waiting or running.
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Execute task after all previously submitted tasks with the same key.
+     */
+    public void execute(long key, Runnable command) {
+        getLane(key).add(new Task(command));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        Lane lane = CURRENT.get();
+        if (lane == null || lane.getExecutor() != this) {
+            lane = getLane(Thread.currentThread().getId());
+        }
+        lane.add(new Task(command));
+    }
+
+    private Lane getLane(long key) {
+        return lanes[(int) Math.floorMod(key ^ (key >>> 32), (long) lanes.length)];
+    }
+
+    @Override
+    public boolean inEventLoop(Thread thread) {
+        Lane lane = CURRENT.get();
+        return thread == Thread.currentThread() && lane != null && lane.getExecutor() == this;
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return executorService.isShutdown();
+    }
+
+    @Override
+    public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        executorService.shutdown();
+        GlobalEventExecutor.INSTANCE.execute(() -> {
+            try {
+                executorService.awaitTermination(timeout, unit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            terminationFuture.trySuccess(null);
+        });
+        return terminationFuture;
+    }
+
+    @Override
+    public Future<?> terminationFuture() {
+        return terminationFuture;
+    }
+
+    @Override
+    @Deprecated
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executorService.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return executorService.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executorService.awaitTermination(timeout, unit);
+    }
+
+}
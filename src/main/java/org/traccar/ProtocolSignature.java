@@ -0,0 +1,77 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import io.netty.buffer.ByteBuf;
+import org.traccar.helper.DataConverter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Matcher for the first bytes a device sends after connecting. Used by {@link DetectorServer} to pick the protocol
+ * of a connection on the shared port. Matchers must not modify the buffer.
+ */
+@FunctionalInterface
+public interface ProtocolSignature {
+
+    enum Result {
+        MATCH,
+        MISMATCH,
+        MORE
+    }
+
+    Result match(ByteBuf buf);
+
+    static ProtocolSignature prefix(byte[]... prefixes) {
+        return buf -> {
+            Result result = Result.MISMATCH;
+            for (byte[] prefix : prefixes) {
+                int length = Math.min(prefix.length, buf.readableBytes());
+                boolean equal = true;
+                for (int i = 0; i < length; i++) {
+                    if (buf.getByte(buf.readerIndex() + i) != prefix[i]) {
+                        equal = false;
+                        break;
+                    }
+                }
+                if (equal) {
+                    if (length == prefix.length) {
+                        return Result.MATCH;
+                    }
+                    result = Result.MORE;
+                }
+            }
+            return result;
+        };
+    }
+
+    static ProtocolSignature textPrefix(String... prefixes) {
+        byte[][] values = new byte[prefixes.length][];
+        for (int i = 0; i < prefixes.length; i++) {
+            values[i] = prefixes[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        return prefix(values);
+    }
+
+    static ProtocolSignature hexPrefix(String... prefixes) {
+        byte[][] values = new byte[prefixes.length][];
+        for (int i = 0; i < prefixes.length; i++) {
+            values[i] = DataConverter.parseHex(prefixes[i]);
+        }
+        return prefix(values);
+    }
+
+}
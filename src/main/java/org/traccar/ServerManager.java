@@ -21,6 +21,7 @@ import org.traccar.config.Keys;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.BindException;
 import java.net.ConnectException;
 import java.net.URI;
@@ -29,9 +30,13 @@ import java.net.URL;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -43,7 +48,30 @@ public class ServerManager {
     private final List<TrackerConnector> connectorList = new LinkedList<>();
     private final Map<String, BaseProtocol> protocolList = new ConcurrentHashMap<>();
 
-    private void loadPackage(String packageName) throws IOException, URISyntaxException, ReflectiveOperationException {
+    private final Set<String> detectedProtocols = new HashSet<>();
+
+    /**
+     * Protocol name to class mapping generated at build time by the 'generateProtocolIndex' task.
+     */
+    private static final String PROTOCOL_INDEX = "protocols.properties";
+
+    private Map<String, String> loadIndex() throws IOException {
+        try (InputStream inputStream = getClass().getResourceAsStream(PROTOCOL_INDEX)) {
+            if (inputStream == null) {
+                return null;
+            }
+            Properties properties = new Properties();
+            properties.load(inputStream);
+            Map<String, String> result = new TreeMap<>();
+            for (String name : properties.stringPropertyNames()) {
+                result.put(name, properties.getProperty(name));
+            }
+            return result;
+        }
+    }
+
+    private Map<String, String> loadPackage(String packageName)
+            throws IOException, URISyntaxException, ReflectiveOperationException {
 
         List<String> names = new LinkedList<>();
         String packagePath = packageName.replace('.', '/');
@@ -71,19 +99,60 @@ public class ServerManager {
             }
         }
 
+        Map<String, String> result = new TreeMap<>();
         for (String name : names) {
             Class<?> protocolClass = Class.forName(packageName + '.' + name);
-            if (BaseProtocol.class.isAssignableFrom(protocolClass) && Context.getConfig().hasKey(
-                    Keys.PROTOCOL_PORT.withPrefix(BaseProtocol.nameFromClass(protocolClass)))) {
-                BaseProtocol protocol = (BaseProtocol) protocolClass.getDeclaredConstructor().newInstance();
-                connectorList.addAll(protocol.getConnectorList());
+            if (BaseProtocol.class.isAssignableFrom(protocolClass)) {
+                result.put(BaseProtocol.nameFromClass(protocolClass), protocolClass.getName());
+            }
+        }
+        return result;
+    }
+
+    private void loadProtocols(Map<String, String> protocolClasses) throws ReflectiveOperationException {
+        for (Map.Entry<String, String> entry : protocolClasses.entrySet()) {
+            boolean enabled = Context.getConfig().hasKey(Keys.PROTOCOL_PORT.withPrefix(entry.getKey()));
+            if (enabled || detectedProtocols.contains(entry.getKey())) {
+                BaseProtocol protocol = (BaseProtocol) Class.forName(entry.getValue())
+                        .getDeclaredConstructor().newInstance();
+                if (enabled) {
+                    connectorList.addAll(protocol.getConnectorList());
+                }
                 protocolList.put(protocol.getName(), protocol);
             }
         }
     }
 
     public ServerManager() throws IOException, URISyntaxException, ReflectiveOperationException {
-        loadPackage("org.traccar.protocol");
+        if (Context.getConfig().hasKey(Keys.DETECTOR_PORT)) {
+            String protocols = Context.getConfig().getString(Keys.DETECTOR_PROTOCOLS);
+            if (protocols != null) {
+                for (String protocol : protocols.split("[, ]")) {
+                    if (!protocol.isEmpty()) {
+                        detectedProtocols.add(protocol);
+                    }
+                }
+            }
+        }
+        long startTime = System.currentTimeMillis();
+        Map<String, String> protocolClasses = loadIndex();
+        if (protocolClasses == null) {
+            LOGGER.warn("Protocol index is missing, scanning classpath");
+            protocolClasses = loadPackage("org.traccar.protocol");
+        }
+        loadProtocols(protocolClasses);
+        LOGGER.info("Loaded {} protocols in {} ms", protocolList.size(), System.currentTimeMillis() - startTime);
+        if (!detectedProtocols.isEmpty()) {
+            List<BaseProtocol> protocols = new LinkedList<>();
+            for (String protocol : detectedProtocols) {
+                if (protocolList.containsKey(protocol)) {
+                    protocols.add(protocolList.get(protocol));
+                } else {
+                    LOGGER.warn("Unknown protocol {} for detection", protocol);
+                }
+            }
+            connectorList.add(new DetectorServer(protocols));
+        }
     }
 
     public BaseProtocol getProtocol(String name) {
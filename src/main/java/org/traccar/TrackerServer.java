@@ -21,8 +21,7 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.channel.socket.nio.NioDatagramChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import org.traccar.config.Keys;
@@ -41,6 +40,9 @@ public abstract class TrackerServer implements TrackerConnector {
 
     private final int port;
     private final String address;
+    private final int channelCount;
+
+    private final BasePipelineFactory pipelineFactory;
 
     private final ChannelGroup channelGroup = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
 
@@ -61,7 +63,7 @@ public abstract class TrackerServer implements TrackerConnector {
         address = Context.getConfig().getString(Keys.PROTOCOL_ADDRESS.withPrefix(protocol));
         port = Context.getConfig().getInteger(Keys.PROTOCOL_PORT.withPrefix(protocol));
 
-        BasePipelineFactory pipelineFactory = new BasePipelineFactory(this, protocol) {
+        pipelineFactory = new BasePipelineFactory(this, protocol) {
             @Override
             protected void addTransportHandlers(PipelineBuilder pipeline) {
                 try {
@@ -82,23 +84,38 @@ public abstract class TrackerServer implements TrackerConnector {
 
         if (datagram) {
 
-            bootstrap = new Bootstrap()
+            Bootstrap datagramBootstrap = new Bootstrap()
                     .group(EventLoopGroupFactory.getWorkerGroup())
-                    .channel(NioDatagramChannel.class)
+                    .channel(EventLoopGroupFactory.getDatagramChannelClass())
                     .handler(pipelineFactory);
 
+            if (EventLoopGroupFactory.isEpoll()) {
+                channelCount = Math.max(1, Context.getConfig().getInteger(Keys.SERVER_DATAGRAM_CHANNELS));
+                datagramBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            } else {
+                channelCount = 1;
+            }
+
+            bootstrap = datagramBootstrap;
+
         } else {
 
             bootstrap = new ServerBootstrap()
                     .group(EventLoopGroupFactory.getBossGroup(), EventLoopGroupFactory.getWorkerGroup())
-                    .channel(NioServerSocketChannel.class)
+                    .channel(EventLoopGroupFactory.getServerSocketChannelClass())
                     .childHandler(pipelineFactory);
 
+            channelCount = 1;
+
         }
     }
 
     protected abstract void addProtocolHandlers(PipelineBuilder pipeline);
 
+    BasePipelineFactory getPipelineFactory() {
+        return pipelineFactory;
+    }
+
     public int getPort() {
         return port;
     }
@@ -121,9 +138,15 @@ public abstract class TrackerServer implements TrackerConnector {
             endpoint = new InetSocketAddress(address, port);
         }
 
-        Channel channel = bootstrap.bind(endpoint).syncUninterruptibly().channel();
-        if (channel != null) {
-            getChannelGroup().add(channel);
+        FlowController flowController = datagram ? Main.getInjector().getInstance(FlowController.class) : null;
+        for (int i = 0; i < channelCount; i++) {
+            Channel channel = bootstrap.bind(endpoint).syncUninterruptibly().channel();
+            if (channel != null) {
+                getChannelGroup().add(channel);
+                if (flowController != null) {
+                    flowController.addChannel(channel);
+                }
+            }
         }
     }
 
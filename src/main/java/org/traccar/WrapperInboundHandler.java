@@ -21,13 +21,19 @@ import io.netty.channel.ChannelInboundHandler;
 public class WrapperInboundHandler implements ChannelInboundHandler {
 
     private final ChannelInboundHandler handler;
+    private final PipelineMetrics.Stage stage;
 
     public ChannelInboundHandler getWrappedHandler() {
         return handler;
     }
 
     public WrapperInboundHandler(ChannelInboundHandler handler) {
+        this(handler, null);
+    }
+
+    public WrapperInboundHandler(ChannelInboundHandler handler, PipelineMetrics.Stage stage) {
         this.handler = handler;
+        this.stage = stage;
     }
 
     @Override
@@ -52,6 +58,19 @@ public class WrapperInboundHandler implements ChannelInboundHandler {
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (stage != null) {
+            long startTime = stage.enter();
+            try {
+                handleRead(ctx, msg);
+            } finally {
+                stage.exit(startTime);
+            }
+        } else {
+            handleRead(ctx, msg);
+        }
+    }
+
+    private void handleRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         if (msg instanceof NetworkMessage) {
             NetworkMessage nm = (NetworkMessage) msg;
             handler.channelRead(new WrapperContext(ctx, nm.getRemoteAddress()), nm.getMessage());
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.traccar.Context;
+import org.traccar.database.QueryCursor;
+import org.traccar.model.Position;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * Writes positions as JSON array directly from the database cursor without loading the whole period into memory.
+ * Permissions have to be checked before the response is returned.
+ */
+public class PositionStreamingOutput implements StreamingOutput {
+
+    private final Collection<Long> deviceIds;
+    private final Date from;
+    private final Date to;
+
+    public PositionStreamingOutput(Collection<Long> deviceIds, Date from, Date to) {
+        this.deviceIds = deviceIds;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        JsonGenerator generator = Context.getObjectMapper().getFactory().createGenerator(output);
+        generator.writeStartArray();
+        for (long deviceId : deviceIds) {
+            try (QueryCursor<Position> positions = Context.getDataManager().getPositionsCursor(deviceId, from, to)) {
+                for (Position position : positions) {
+                    generator.writeObject(position);
+                }
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+        generator.writeEndArray();
+        generator.flush();
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.api.resource;
+
+import org.traccar.Context;
+import org.traccar.Main;
+import org.traccar.PipelineMetrics;
+import org.traccar.api.BaseResource;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import java.util.Collection;
+import java.util.Collections;
+
+@Path("metrics")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class MetricsResource extends BaseResource {
+
+    private static PipelineMetrics getMetrics() {
+        return Main.getInjector().getInstance(PipelineMetrics.class);
+    }
+
+    @GET
+    public Collection<PipelineMetrics.Stage> get() {
+        Context.getPermissionsManager().checkAdmin(getUserId());
+        PipelineMetrics metrics = getMetrics();
+        return metrics != null ? metrics.getStages() : Collections.emptyList();
+    }
+
+    @Path("prometheus")
+    @GET
+    @Produces("text/plain; version=0.0.4")
+    public String getPrometheus() {
+        Context.getPermissionsManager().checkAdmin(getUserId());
+        PipelineMetrics metrics = getMetrics();
+        return metrics != null ? metrics.formatPrometheus() : "";
+    }
+
+}
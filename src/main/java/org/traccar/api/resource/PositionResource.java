@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@ package org.traccar.api.resource;
 
 import org.traccar.Context;
 import org.traccar.api.BaseResource;
+import org.traccar.api.PositionStreamingOutput;
 import org.traccar.model.Position;
 
 import javax.ws.rs.Consumes;
@@ -24,10 +25,11 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -38,7 +40,7 @@ import java.util.List;
 public class PositionResource extends BaseResource {
 
     @GET
-    public Collection<Position> getJson(
+    public Response getJson(
             @QueryParam("deviceId") long deviceId, @QueryParam("id") List<Long> positionIds,
             @QueryParam("from") Date from, @QueryParam("to") Date to)
             throws SQLException {
@@ -46,18 +48,21 @@ public class PositionResource extends BaseResource {
             ArrayList<Position> positions = new ArrayList<>();
             for (Long positionId : positionIds) {
                 Position position = Context.getDataManager().getObject(Position.class, positionId);
+                if (position == null) {
+                    throw new WebApplicationException(Response.status(Response.Status.NOT_FOUND).build());
+                }
                 Context.getPermissionsManager().checkDevice(getUserId(), position.getDeviceId());
                 positions.add(position);
             }
-            return positions;
+            return Response.ok(positions).build();
         } else if (deviceId == 0) {
-            return Context.getDeviceManager().getInitialState(getUserId());
+            return Response.ok(Context.getDeviceManager().getInitialState(getUserId())).build();
         } else {
             Context.getPermissionsManager().checkDevice(getUserId(), deviceId);
             if (from != null && to != null) {
-                return Context.getDataManager().getPositions(deviceId, from, to);
+                return Response.ok(new PositionStreamingOutput(Collections.singleton(deviceId), from, to)).build();
             } else {
-                return Collections.singleton(Context.getDeviceManager().getLastPosition(deviceId));
+                return Response.ok(Collections.singleton(Context.getDeviceManager().getLastPosition(deviceId))).build();
             }
         }
     }
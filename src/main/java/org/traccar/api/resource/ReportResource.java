@@ -40,9 +40,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.Context;
 import org.traccar.api.BaseResource;
+import org.traccar.api.PositionStreamingOutput;
 import org.traccar.helper.LogAction;
 import org.traccar.model.Event;
-import org.traccar.model.Position;
 import org.traccar.reports.Events;
 import org.traccar.reports.Summary;
 import org.traccar.reports.Trips;
@@ -96,11 +96,12 @@ public class ReportResource extends BaseResource {
 
     @Path("route")
     @GET
-    public Collection<Position> getRoute(
+    public Response getRoute(
             @QueryParam("deviceId") final List<Long> deviceIds, @QueryParam("groupId") final List<Long> groupIds,
             @QueryParam("from") Date from, @QueryParam("to") Date to) throws SQLException {
         LogAction.logReport(getUserId(), "route", from, to, deviceIds, groupIds);
-        return Route.getObjects(getUserId(), deviceIds, groupIds, from, to);
+        return Response.ok(new PositionStreamingOutput(
+                Route.getDevices(getUserId(), deviceIds, groupIds, from, to), from, to)).build();
     }
 
     @Path("route")
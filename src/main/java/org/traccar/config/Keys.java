@@ -69,6 +69,14 @@ public final class Keys {
             ".timeout",
             Collections.singletonList(KeyType.GLOBAL));
 
+    /**
+     * Position processing handlers used by the protocol. Overrides server wide 'server.handlers' list. See
+     * 'server.handlers' for the format.
+     */
+    public static final ConfigSuffix<String> PROTOCOL_HANDLERS = new ConfigSuffix<>(
+            ".handlers",
+            Collections.singletonList(KeyType.GLOBAL));
+
     /**
      * Device password. Commonly used in some protocol for sending commands.
      */
@@ -233,6 +241,122 @@ public final class Keys {
             "server.statistics",
             Collections.singletonList(KeyType.GLOBAL));
 
+    /**
+     * Network transport for tracker connections. Possible values are 'epoll' and 'nio'. By default native epoll
+     * transport is used when available (Linux), otherwise Java NIO.
+     */
+    public static final ConfigKey<String> SERVER_TRANSPORT = new ConfigKey<>(
+            "server.transport",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Number of threads accepting new TCP connections. Default value is defined by Netty.
+     */
+    public static final ConfigKey<Integer> SERVER_BOSS_THREADS = new ConfigKey<>(
+            "server.bossThreads",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Number of threads processing connection I/O and decoding. Default value is defined by Netty (twice the number
+     * of processors).
+     */
+    public static final ConfigKey<Integer> SERVER_WORKER_THREADS = new ConfigKey<>(
+            "server.workerThreads",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Number of sockets bound to each UDP port. With epoll transport sockets use SO_REUSEPORT, so the kernel
+     * distributes datagrams between several worker threads. Ignored for NIO transport.
+     */
+    public static final ConfigKey<Integer> SERVER_DATAGRAM_CHANNELS = new ConfigKey<>(
+            "server.datagramChannels",
+            Collections.singletonList(KeyType.GLOBAL),
+            1);
+
+    /**
+     * Shared port for TCP devices of several protocols. Protocol is detected from the first bytes each connection
+     * sends. Only protocols listed in 'detector.protocols' and declaring a signature are detected.
+     */
+    public static final ConfigKey<Integer> DETECTOR_PORT = new ConfigKey<>(
+            "detector.port",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Network interface for the shared detection port. By default all interfaces are used.
+     */
+    public static final ConfigKey<String> DETECTOR_ADDRESS = new ConfigKey<>(
+            "detector.address",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Comma separated list of protocols accepted on the shared port, for example 'gt06,gl200,watch'. Protocols don't
+     * need a port of their own to be listed here.
+     */
+    public static final ConfigKey<String> DETECTOR_PROTOCOLS = new ConfigKey<>(
+            "detector.protocols",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Time in seconds a new connection on the shared port has to send enough data for protocol detection. Connection
+     * is closed after that.
+     */
+    public static final ConfigKey<Integer> DETECTOR_TIMEOUT = new ConfigKey<>(
+            "detector.timeout",
+            Collections.singletonList(KeyType.GLOBAL),
+            30);
+
+    /**
+     * Number of queued positions (processing executor and storage batch queue) at which the server stops reading from
+     * tracker connections and UDP sockets. Zero disables backpressure.
+     */
+    public static final ConfigKey<Integer> SERVER_BACKPRESSURE_HIGH = new ConfigKey<>(
+            "server.backpressure.high",
+            Collections.singletonList(KeyType.GLOBAL),
+            8000);
+
+    /**
+     * Number of queued positions at which reading is resumed after backpressure.
+     */
+    public static final ConfigKey<Integer> SERVER_BACKPRESSURE_LOW = new ConfigKey<>(
+            "server.backpressure.low",
+            Collections.singletonList(KeyType.GLOBAL),
+            4000);
+
+    /**
+     * Position processing handlers added to the pipeline, separated by commas. Handler names are class names without
+     * "Handler" suffix, for example 'filter', 'geocoder', 'defaultData' or 'geofenceEvent'. Plain names select only
+     * the listed handlers, names prefixed with '-' disable handlers (e.g. '-geocoder,-overspeedEvent'). By default
+     * all handlers are used. Disabled handlers are not added to the connection pipeline at all.
+     */
+    public static final ConfigKey<String> SERVER_HANDLERS = new ConfigKey<>(
+            "server.handlers",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Record invocation counts and latency histograms of pipeline handlers per protocol. Data is available through
+     * 'api/metrics' and in Prometheus text format through 'api/metrics/prometheus'.
+     */
+    public static final ConfigKey<Boolean> SERVER_METRICS = new ConfigKey<>(
+            "server.metrics",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Executor for position processing after decoding (filtering, geocoding, storage, events). By default the
+     * processing runs on the network threads. Possible values are 'pool' for a fixed thread pool and 'virtual' for
+     * virtual threads (requires Java 21 or later). Positions of the same device are always processed in order.
+     */
+    public static final ConfigKey<String> PROCESSING_EXECUTOR = new ConfigKey<>(
+            "processing.executor",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Number of processing threads for 'pool' executor or maximum number of concurrently processed devices for
+     * 'virtual' executor. Default value depends on the number of processors.
+     */
+    public static final ConfigKey<Integer> PROCESSING_THREADS = new ConfigKey<>(
+            "processing.threads",
+            Collections.singletonList(KeyType.GLOBAL));
+
     /**
      * If true, the event is generated once at the beginning of overspeeding period.
      */
@@ -299,6 +423,16 @@ public final class Keys {
             Collections.singletonList(KeyType.GLOBAL),
             25.0);
 
+    /**
+     * Maximum safety radius in meters for incremental geofence evaluation. While a device stays within the distance
+     * to the nearest geofence boundary from the last fully evaluated position, previous containment is reused.
+     * Zero disables incremental evaluation. Default value is 1000 meters.
+     */
+    public static final ConfigKey<Double> GEOFENCE_INCREMENTAL_DISTANCE = new ConfigKey<>(
+            "geofence.incrementalDistance",
+            Collections.singletonList(KeyType.GLOBAL),
+            1000.0);
+
     /**
      * Path to the database driver JAR file. Traccar includes drivers for MySQL, PostgreSQL and H2 databases. If you use
      * one of those, you don't need to specify this parameter.
@@ -365,6 +499,37 @@ public final class Keys {
             Collections.singletonList(KeyType.GLOBAL),
             "SELECT 1");
 
+    /**
+     * Connection URL of a read-only database replica. If configured, reports, position and event history and
+     * statistics are read from the replica instead of the primary database. Queries fall back to the primary
+     * database while the replica is unavailable.
+     */
+    public static final ConfigKey<String> DATABASE_REPLICA_URL = new ConfigKey<>(
+            "database.replica.url",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Replica database user name. Primary database user is used by default.
+     */
+    public static final ConfigKey<String> DATABASE_REPLICA_USER = new ConfigKey<>(
+            "database.replica.user",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Replica database user password. Primary database password is used by default.
+     */
+    public static final ConfigKey<String> DATABASE_REPLICA_PASSWORD = new ConfigKey<>(
+            "database.replica.password",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Connection pool size for read-only queries. If set without a replica URL, read-only queries use a separate
+     * pool to the primary database, so long reports can't take all connections needed to store positions.
+     */
+    public static final ConfigKey<Integer> DATABASE_REPLICA_MAX_POOL_SIZE = new ConfigKey<>(
+            "database.replica.maxPoolSize",
+            Collections.singletonList(KeyType.GLOBAL));
+
     /**
      * Store original HEX or string data as "raw" attribute in the corresponding position.
      */
@@ -416,6 +581,152 @@ public final class Keys {
             "database.saveEmpty",
             Collections.singletonList(KeyType.GLOBAL));
 
+    /**
+     * Store positions asynchronously using JDBC batch inserts. Requires a database driver that returns generated keys
+     * for batched statements (H2, MySQL and PostgreSQL do).
+     */
+    public static final ConfigKey<Boolean> DATABASE_BATCH_ENABLE = new ConfigKey<>(
+            "database.batch.enable",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Maximum number of positions written in a single batch. Default value is 100.
+     */
+    public static final ConfigKey<Integer> DATABASE_BATCH_SIZE = new ConfigKey<>(
+            "database.batch.size",
+            Collections.singletonList(KeyType.GLOBAL),
+            100);
+
+    /**
+     * Maximum time in milliseconds a position waits for the batch to fill up before it is written. Default value is
+     * 100 milliseconds.
+     */
+    public static final ConfigKey<Long> DATABASE_BATCH_DELAY = new ConfigKey<>(
+            "database.batch.delay",
+            Collections.singletonList(KeyType.GLOBAL),
+            100L);
+
+    /**
+     * Capacity of the pending positions queue. If the queue is full, positions are stored synchronously. Default
+     * value is 10000.
+     */
+    public static final ConfigKey<Integer> DATABASE_BATCH_QUEUE_SIZE = new ConfigKey<>(
+            "database.batch.queueSize",
+            Collections.singletonList(KeyType.GLOBAL),
+            10000);
+
+    /**
+     * Directory for the position spool. If set, positions that cannot be stored because the database is unavailable
+     * or the storage queue is full are journaled there and replayed into the database later.
+     */
+    public static final ConfigKey<String> DATABASE_SPOOL_PATH = new ConfigKey<>(
+            "database.spool.path",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Size of a single spool file in bytes. Default value is 16 MB.
+     */
+    public static final ConfigKey<Integer> DATABASE_SPOOL_SEGMENT_SIZE = new ConfigKey<>(
+            "database.spool.segmentSize",
+            Collections.singletonList(KeyType.GLOBAL),
+            16 * 1024 * 1024);
+
+    /**
+     * Maximum total size of spool files in bytes. When the limit is reached, positions are dropped. Default value is
+     * 1 GB.
+     */
+    public static final ConfigKey<Long> DATABASE_SPOOL_MAX_SIZE = new ConfigKey<>(
+            "database.spool.maxSize",
+            Collections.singletonList(KeyType.GLOBAL),
+            1024L * 1024 * 1024);
+
+    /**
+     * Interval in milliseconds for writing device latest position and last update time. Only the newest values of
+     * each device are kept between writes and all changed devices are written in one batch. By default every change
+     * is written immediately.
+     */
+    public static final ConfigKey<Long> DATABASE_DEVICE_UPDATE_INTERVAL = new ConfigKey<>(
+            "database.deviceUpdate.interval",
+            Collections.singletonList(KeyType.GLOBAL),
+            0L);
+
+    /**
+     * Number of rows fetched from the database at once when streaming positions for reports. MySQL only honours it
+     * if 'useCursorFetch=true' is added to the connection URL.
+     */
+    public static final ConfigKey<Integer> DATABASE_FETCH_SIZE = new ConfigKey<>(
+            "database.fetchSize",
+            Collections.singletonList(KeyType.GLOBAL),
+            1000);
+
+    /**
+     * Number of prepared statements the JDBC driver keeps per pooled connection, so the same query is not prepared on
+     * the server again for every execution. Applies to MySQL, MariaDB and PostgreSQL drivers. Zero keeps the driver
+     * defaults.
+     */
+    public static final ConfigKey<Integer> DATABASE_STATEMENT_CACHE_SIZE = new ConfigKey<>(
+            "database.statementCacheSize",
+            Collections.singletonList(KeyType.GLOBAL),
+            250);
+
+    /**
+     * Store positions and events in monthly tables. Range queries only read tables overlapping the requested period
+     * and the original tables, and old data is removed by dropping whole tables. Tables are created in advance by a
+     * maintenance task, data for months without a table is kept in the original tables.
+     */
+    public static final ConfigKey<Boolean> DATABASE_PARTITION_ENABLE = new ConfigKey<>(
+            "database.partition.enable",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Path to the Liquibase changelog used to create monthly tables.
+     */
+    public static final ConfigKey<String> DATABASE_PARTITION_CHANGELOG = new ConfigKey<>(
+            "database.partition.changelog",
+            Collections.singletonList(KeyType.GLOBAL),
+            "./schema/changelog-partition.xml");
+
+    /**
+     * Number of months to keep partitioned data. Older tables are dropped. Default value is 0, which keeps all data.
+     */
+    public static final ConfigKey<Integer> DATABASE_PARTITION_RETENTION = new ConfigKey<>(
+            "database.partition.retention",
+            Collections.singletonList(KeyType.GLOBAL),
+            0);
+
+    /**
+     * Directory for archived positions. If set, positions older than 'database.archive.age' days are periodically
+     * moved from the database into compact per device and per day files. Archived positions are still returned by
+     * reports and the API.
+     */
+    public static final ConfigKey<String> DATABASE_ARCHIVE_PATH = new ConfigKey<>(
+            "database.archive.path",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Age in days after which positions are archived.
+     */
+    public static final ConfigKey<Integer> DATABASE_ARCHIVE_AGE = new ConfigKey<>(
+            "database.archive.age",
+            Collections.singletonList(KeyType.GLOBAL),
+            90);
+
+    /**
+     * Store position attributes in the compact binary column instead of JSON text. Positions written before are
+     * still read from JSON and converted in the background.
+     */
+    public static final ConfigKey<Boolean> DATABASE_BINARY_ATTRIBUTES = new ConfigKey<>(
+            "database.binaryAttributes",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Maximum number of JSON attribute rows converted to the binary form in one background run.
+     */
+    public static final ConfigKey<Integer> DATABASE_BINARY_ATTRIBUTES_MIGRATION_LIMIT = new ConfigKey<>(
+            "database.binaryAttributes.migrationLimit",
+            Collections.singletonList(KeyType.GLOBAL),
+            10000);
+
     /**
      * Device limit for self registered users. Default value is -1, which indicates no limit.
      */
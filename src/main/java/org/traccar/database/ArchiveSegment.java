@@ -0,0 +1,378 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.traccar.model.Network;
+import org.traccar.model.Position;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact file format for archived positions of a single device. Times, coordinates and other numeric values are
+ * stored as zigzag varint deltas from the previous position. Strings (attribute keys, text values, protocol and
+ * address) are kept once in a dictionary at the beginning of the file and referenced by index. Coordinates are
+ * stored with 1e-7 degree precision.
+ */
+public final class ArchiveSegment {
+
+    private static final int MAGIC = 0x54434131; // TCA1
+
+    private static final double COORDINATE_SCALE = 10_000_000;
+    private static final double ALTITUDE_SCALE = 10;
+    private static final double SPEED_SCALE = 100;
+    private static final double COURSE_SCALE = 10;
+    private static final double ACCURACY_SCALE = 10;
+
+    private static final int FLAG_VALID = 1;
+    private static final int FLAG_PROTOCOL = 2;
+    private static final int FLAG_ADDRESS = 4;
+    private static final int FLAG_NETWORK = 8;
+
+    private static final int TYPE_FALSE = 0;
+    private static final int TYPE_TRUE = 1;
+    private static final int TYPE_INTEGER = 2;
+    private static final int TYPE_LONG = 3;
+    private static final int TYPE_DOUBLE = 4;
+    private static final int TYPE_STRING = 5;
+    private static final int TYPE_JSON = 6;
+
+    private ArchiveSegment() {
+    }
+
+    static void writeVarLong(OutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    static void writeZigZag(OutputStream output, long value) throws IOException {
+        writeVarLong(output, (value << 1) ^ (value >> 63));
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    static long readZigZag(ByteBuffer buffer) {
+        long value = readVarLong(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Dictionary {
+
+        private final Map<String, Integer> indexes = new LinkedHashMap<>();
+
+        int add(String value) {
+            return indexes.computeIfAbsent(value, key -> indexes.size());
+        }
+
+        int get(String value) {
+            return indexes.get(value);
+        }
+
+        void write(OutputStream output) throws IOException {
+            writeVarLong(output, indexes.size());
+            for (String value : indexes.keySet()) {
+                byte[] data = value.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(output, data.length);
+                output.write(data);
+            }
+        }
+
+    }
+
+    /**
+     * Write positions, ordered by fix time, into a new file. Existing file is replaced atomically.
+     */
+    public static void write(
+            ObjectMapper objectMapper, Path file, List<Position> positions) throws IOException {
+
+        Dictionary dictionary = new Dictionary();
+        List<String> networks = new ArrayList<>(positions.size());
+        for (Position position : positions) {
+            if (position.getProtocol() != null) {
+                dictionary.add(position.getProtocol());
+            }
+            if (position.getAddress() != null) {
+                dictionary.add(position.getAddress());
+            }
+            String network = null;
+            if (position.getNetwork() != null) {
+                network = objectMapper.writeValueAsString(position.getNetwork());
+            }
+            if (network != null) {
+                dictionary.add(network);
+            }
+            networks.add(network);
+            for (Map.Entry<String, Object> entry : position.getAttributes().entrySet()) {
+                dictionary.add(entry.getKey());
+                Object value = entry.getValue();
+                if (value instanceof String) {
+                    dictionary.add((String) value);
+                } else if (!(value instanceof Boolean || value instanceof Integer
+                        || value instanceof Long || value instanceof Double)) {
+                    dictionary.add(objectMapper.writeValueAsString(value));
+                }
+            }
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)))) {
+
+            output.writeInt(MAGIC);
+            writeVarLong(output, positions.isEmpty() ? 0 : positions.get(0).getDeviceId());
+            writeVarLong(output, positions.size());
+            dictionary.write(output);
+
+            long id = 0;
+            long time = 0;
+            long latitude = 0;
+            long longitude = 0;
+            long altitude = 0;
+            long speed = 0;
+            for (int i = 0; i < positions.size(); i++) {
+                Position position = positions.get(i);
+                String network = networks.get(i);
+
+                writeZigZag(output, position.getId() - id);
+                id = position.getId();
+
+                long fixTime = position.getFixTime().getTime();
+                writeZigZag(output, fixTime - time);
+                time = fixTime;
+                Date deviceTime = position.getDeviceTime() != null ? position.getDeviceTime() : position.getFixTime();
+                writeZigZag(output, deviceTime.getTime() - fixTime);
+                writeZigZag(output, position.getServerTime().getTime() - fixTime);
+
+                int flags = 0;
+                if (position.getValid()) {
+                    flags |= FLAG_VALID;
+                }
+                if (position.getProtocol() != null) {
+                    flags |= FLAG_PROTOCOL;
+                }
+                if (position.getAddress() != null) {
+                    flags |= FLAG_ADDRESS;
+                }
+                if (network != null) {
+                    flags |= FLAG_NETWORK;
+                }
+                output.write(flags);
+
+                long value = Math.round(position.getLatitude() * COORDINATE_SCALE);
+                writeZigZag(output, value - latitude);
+                latitude = value;
+                value = Math.round(position.getLongitude() * COORDINATE_SCALE);
+                writeZigZag(output, value - longitude);
+                longitude = value;
+                value = Math.round(position.getAltitude() * ALTITUDE_SCALE);
+                writeZigZag(output, value - altitude);
+                altitude = value;
+                value = Math.round(position.getSpeed() * SPEED_SCALE);
+                writeZigZag(output, value - speed);
+                speed = value;
+                writeZigZag(output, Math.round(position.getCourse() * COURSE_SCALE));
+                writeZigZag(output, Math.round(position.getAccuracy() * ACCURACY_SCALE));
+
+                if (position.getProtocol() != null) {
+                    writeVarLong(output, dictionary.get(position.getProtocol()));
+                }
+                if (position.getAddress() != null) {
+                    writeVarLong(output, dictionary.get(position.getAddress()));
+                }
+                if (network != null) {
+                    writeVarLong(output, dictionary.get(network));
+                }
+
+                writeVarLong(output, position.getAttributes().size());
+                for (Map.Entry<String, Object> entry : position.getAttributes().entrySet()) {
+                    writeVarLong(output, dictionary.get(entry.getKey()));
+                    Object attribute = entry.getValue();
+                    if (attribute instanceof Boolean) {
+                        output.write((Boolean) attribute ? TYPE_TRUE : TYPE_FALSE);
+                    } else if (attribute instanceof Integer) {
+                        output.write(TYPE_INTEGER);
+                        writeZigZag(output, (Integer) attribute);
+                    } else if (attribute instanceof Long) {
+                        output.write(TYPE_LONG);
+                        writeZigZag(output, (Long) attribute);
+                    } else if (attribute instanceof Double) {
+                        output.write(TYPE_DOUBLE);
+                        output.writeDouble((Double) attribute);
+                    } else if (attribute instanceof String) {
+                        output.write(TYPE_STRING);
+                        writeVarLong(output, dictionary.get((String) attribute));
+                    } else {
+                        output.write(TYPE_JSON);
+                        writeVarLong(output, dictionary.get(objectMapper.writeValueAsString(attribute)));
+                    }
+                }
+            }
+        }
+
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Map the file into memory and decode positions lazily while iterating.
+     */
+    public static Iterator<Position> read(ObjectMapper objectMapper, Path file) throws IOException {
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Invalid archive segment " + file);
+        }
+        long deviceId = readVarLong(buffer);
+        int count = (int) readVarLong(buffer);
+        String[] dictionary = new String[(int) readVarLong(buffer)];
+        for (int i = 0; i < dictionary.length; i++) {
+            byte[] data = new byte[(int) readVarLong(buffer)];
+            buffer.get(data);
+            dictionary[i] = new String(data, StandardCharsets.UTF_8);
+        }
+
+        return new Iterator<>() {
+
+            private int index;
+            private long id;
+            private long time;
+            private long latitude;
+            private long longitude;
+            private long altitude;
+            private long speed;
+
+            @Override
+            public boolean hasNext() {
+                return index < count;
+            }
+
+            @Override
+            public Position next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                index += 1;
+                try {
+                    return decode();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            private Position decode() throws IOException {
+                Position position = new Position();
+                position.setDeviceId(deviceId);
+
+                id += readZigZag(buffer);
+                position.setId(id);
+
+                time += readZigZag(buffer);
+                position.setFixTime(new Date(time));
+                position.setDeviceTime(new Date(time + readZigZag(buffer)));
+                position.setServerTime(new Date(time + readZigZag(buffer)));
+
+                int flags = buffer.get();
+                position.setValid((flags & FLAG_VALID) != 0);
+
+                latitude += readZigZag(buffer);
+                position.setLatitude(latitude / COORDINATE_SCALE);
+                longitude += readZigZag(buffer);
+                position.setLongitude(longitude / COORDINATE_SCALE);
+                altitude += readZigZag(buffer);
+                position.setAltitude(altitude / ALTITUDE_SCALE);
+                speed += readZigZag(buffer);
+                position.setSpeed(speed / SPEED_SCALE);
+                position.setCourse(readZigZag(buffer) / COURSE_SCALE);
+                position.setAccuracy(readZigZag(buffer) / ACCURACY_SCALE);
+
+                if ((flags & FLAG_PROTOCOL) != 0) {
+                    position.setProtocol(dictionary[(int) readVarLong(buffer)]);
+                }
+                if ((flags & FLAG_ADDRESS) != 0) {
+                    position.setAddress(dictionary[(int) readVarLong(buffer)]);
+                }
+                if ((flags & FLAG_NETWORK) != 0) {
+                    position.setNetwork(objectMapper.readValue(dictionary[(int) readVarLong(buffer)], Network.class));
+                }
+
+                int attributes = (int) readVarLong(buffer);
+                for (int i = 0; i < attributes; i++) {
+                    String key = dictionary[(int) readVarLong(buffer)];
+                    int type = buffer.get();
+                    switch (type) {
+                        case TYPE_FALSE:
+                        case TYPE_TRUE:
+                            position.set(key, type == TYPE_TRUE);
+                            break;
+                        case TYPE_INTEGER:
+                            position.set(key, (int) readZigZag(buffer));
+                            break;
+                        case TYPE_LONG:
+                            position.set(key, readZigZag(buffer));
+                            break;
+                        case TYPE_DOUBLE:
+                            position.set(key, buffer.getDouble());
+                            break;
+                        case TYPE_STRING:
+                            position.getAttributes().put(key, dictionary[(int) readVarLong(buffer)]);
+                            break;
+                        default:
+                            position.getAttributes().put(key, objectMapper.readValue(
+                                    dictionary[(int) readVarLong(buffer)], Object.class));
+                            break;
+                    }
+                }
+
+                return position;
+            }
+
+        };
+    }
+
+}
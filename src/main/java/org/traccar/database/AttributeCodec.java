@@ -0,0 +1,173 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.traccar.model.Position;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of model attributes. Common keys are written as small ids, other keys inline, and values keep
+ * their type instead of going through JSON text. Only nested values (maps, lists) are still stored as JSON.
+ */
+public final class AttributeCodec {
+
+    private static final int VERSION = 1;
+
+    private static final int TYPE_FALSE = 0;
+    private static final int TYPE_TRUE = 1;
+    private static final int TYPE_INTEGER = 2;
+    private static final int TYPE_LONG = 3;
+    private static final int TYPE_DOUBLE = 4;
+    private static final int TYPE_STRING = 5;
+    private static final int TYPE_JSON = 6;
+
+    /**
+     * Key ids are stored in the database, so the list can only be appended to.
+     */
+    private static final List<String> KEYS = List.of(
+            Position.KEY_ORIGINAL, Position.KEY_INDEX, Position.KEY_HDOP, Position.KEY_VDOP, Position.KEY_PDOP,
+            Position.KEY_SATELLITES, Position.KEY_SATELLITES_VISIBLE, Position.KEY_RSSI, Position.KEY_GPS,
+            Position.KEY_ROAMING, Position.KEY_EVENT, Position.KEY_ALARM, Position.KEY_STATUS, Position.KEY_ODOMETER,
+            Position.KEY_ODOMETER_SERVICE, Position.KEY_ODOMETER_TRIP, Position.KEY_HOURS, Position.KEY_STEPS,
+            Position.KEY_HEART_RATE, Position.KEY_INPUT, Position.KEY_OUTPUT, Position.KEY_IMAGE, Position.KEY_VIDEO,
+            Position.KEY_AUDIO, Position.KEY_POWER, Position.KEY_BATTERY, Position.KEY_BATTERY_LEVEL,
+            Position.KEY_FUEL_LEVEL, Position.KEY_FUEL_USED, Position.KEY_FUEL_CONSUMPTION, Position.KEY_VERSION_FW,
+            Position.KEY_VERSION_HW, Position.KEY_TYPE, Position.KEY_IGNITION, Position.KEY_FLAGS,
+            Position.KEY_ANTENNA, Position.KEY_CHARGE, Position.KEY_IP, Position.KEY_ARCHIVE, Position.KEY_DISTANCE,
+            Position.KEY_TOTAL_DISTANCE, Position.KEY_RPM, Position.KEY_VIN, Position.KEY_APPROXIMATE,
+            Position.KEY_THROTTLE, Position.KEY_MOTION, Position.KEY_ARMED, Position.KEY_GEOFENCE,
+            Position.KEY_ACCELERATION, Position.KEY_DEVICE_TEMP, Position.KEY_COOLANT_TEMP, Position.KEY_ENGINE_LOAD,
+            Position.KEY_OPERATOR, Position.KEY_COMMAND, Position.KEY_BLOCKED, Position.KEY_DOOR,
+            Position.KEY_AXLE_WEIGHT, Position.KEY_G_SENSOR, Position.KEY_ICCID, Position.KEY_PHONE,
+            Position.KEY_SPEED_LIMIT, Position.KEY_DTCS, Position.KEY_OBD_SPEED, Position.KEY_OBD_ODOMETER,
+            Position.KEY_RESULT, Position.KEY_DRIVER_UNIQUE_ID);
+
+    private static final Map<String, Integer> KEY_IDS = new HashMap<>();
+
+    static {
+        for (int i = 0; i < KEYS.size(); i++) {
+            KEY_IDS.put(KEYS.get(i), i);
+        }
+    }
+
+    private AttributeCodec() {
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        ArchiveSegment.writeVarLong(output, data.length);
+        output.write(data);
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        byte[] data = new byte[length];
+        buffer.get(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    public static byte[] encode(ObjectMapper objectMapper, Map<String, Object> attributes) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 + attributes.size() * 8);
+        DataOutputStream output = new DataOutputStream(buffer);
+        output.write(VERSION);
+        ArchiveSegment.writeVarLong(output, attributes.size());
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            Integer keyId = KEY_IDS.get(entry.getKey());
+            if (keyId != null) {
+                ArchiveSegment.writeVarLong(output, (long) keyId << 1);
+            } else {
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                ArchiveSegment.writeVarLong(output, ((long) key.length << 1) | 1);
+                output.write(key);
+            }
+            Object value = entry.getValue();
+            if (value instanceof Boolean) {
+                output.write((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+            } else if (value instanceof Integer) {
+                output.write(TYPE_INTEGER);
+                ArchiveSegment.writeZigZag(output, (Integer) value);
+            } else if (value instanceof Long) {
+                output.write(TYPE_LONG);
+                ArchiveSegment.writeZigZag(output, (Long) value);
+            } else if (value instanceof Double) {
+                output.write(TYPE_DOUBLE);
+                output.writeDouble((Double) value);
+            } else if (value instanceof String) {
+                output.write(TYPE_STRING);
+                writeString(output, (String) value);
+            } else {
+                output.write(TYPE_JSON);
+                writeString(output, objectMapper.writeValueAsString(value));
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    public static Map<String, Object> decode(ObjectMapper objectMapper, byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int version = buffer.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported attributes version " + version);
+        }
+        int count = (int) ArchiveSegment.readVarLong(buffer);
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            long keyRef = ArchiveSegment.readVarLong(buffer);
+            String key;
+            if ((keyRef & 1) == 0) {
+                key = KEYS.get((int) (keyRef >>> 1));
+            } else {
+                key = readString(buffer, (int) (keyRef >>> 1));
+            }
+            int type = buffer.get();
+            switch (type) {
+                case TYPE_FALSE:
+                case TYPE_TRUE:
+                    attributes.put(key, type == TYPE_TRUE);
+                    break;
+                case TYPE_INTEGER:
+                    attributes.put(key, (int) ArchiveSegment.readZigZag(buffer));
+                    break;
+                case TYPE_LONG:
+                    attributes.put(key, ArchiveSegment.readZigZag(buffer));
+                    break;
+                case TYPE_DOUBLE:
+                    attributes.put(key, buffer.getDouble());
+                    break;
+                case TYPE_STRING:
+                    attributes.put(key, readString(buffer, (int) ArchiveSegment.readVarLong(buffer)));
+                    break;
+                case TYPE_JSON:
+                    attributes.put(key, objectMapper.readValue(
+                            readString(buffer, (int) ArchiveSegment.readVarLong(buffer)), Object.class));
+                    break;
+                default:
+                    throw new IOException("Unknown attribute type " + type);
+            }
+        }
+        return attributes;
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2017 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2017 - 2022 Anton Tananaev (anton@traccar.org)
  * Copyright 2017 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -39,7 +39,7 @@ public class BaseObjectManager<T extends BaseModel> {
     private final DataManager dataManager;
 
     private final Class<T> baseClass;
-    private Map<Long, T> items;
+    private final Map<Long, T> items = new ConcurrentHashMap<>();
 
     protected BaseObjectManager(DataManager dataManager, Class<T> baseClass) {
         this.dataManager = dataManager;
@@ -85,9 +85,6 @@ public class BaseObjectManager<T extends BaseModel> {
             try {
                 writeLock();
                 Collection<T> databaseItems = dataManager.getObjects(baseClass);
-                if (items == null) {
-                    items = new ConcurrentHashMap<>(databaseItems.size());
-                }
                 Set<Long> databaseItemIds = new HashSet<>();
                 for (T item : databaseItems) {
                     databaseItemIds.add(item.getId());
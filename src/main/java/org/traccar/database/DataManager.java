@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2021 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -51,14 +51,25 @@ import org.traccar.model.User;
 import javax.sql.DataSource;
 import java.beans.Introspector;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 public class DataManager {
 
@@ -70,14 +81,30 @@ public class DataManager {
     public static final String ACTION_UPDATE = "update";
     public static final String ACTION_DELETE = "delete";
 
+    private static final Pattern ATTRIBUTES_PATTERN = Pattern.compile("\\battributes\\b", Pattern.CASE_INSENSITIVE);
+
     private final Config config;
 
+    private PartitionManager partitionManager;
+
+    private PositionArchive positionArchive;
+
+    private final boolean binaryAttributes;
+    private final Map<String, String> binaryAttributesQueries = new ConcurrentHashMap<>();
+    private final Map<YearMonth, Long> binaryAttributesMigrated = new HashMap<>();
+
     private DataSource dataSource;
 
     public DataSource getDataSource() {
         return dataSource;
     }
 
+    private static final long REPLICA_CONNECTION_TIMEOUT = 5000;
+    private static final long REPLICA_RETRY_DELAY = 30000;
+
+    private DataSource readDataSource;
+    private volatile long readDataSourceRetryTime;
+
     private boolean generateQueries;
 
     private final boolean forceLdap;
@@ -86,9 +113,19 @@ public class DataManager {
         this.config = config;
 
         forceLdap = config.getBoolean(Keys.LDAP_FORCE);
+        binaryAttributes = config.getBoolean(Keys.DATABASE_BINARY_ATTRIBUTES);
 
         initDatabase();
         initDatabaseSchema();
+
+        if (config.getBoolean(Keys.DATABASE_PARTITION_ENABLE)) {
+            partitionManager = new PartitionManager(config, dataSource);
+            partitionManager.ensurePartition(new Date());
+        }
+
+        if (config.hasKey(Keys.DATABASE_ARCHIVE_PATH)) {
+            positionArchive = new PositionArchive(config, Context.getObjectMapper());
+        }
     }
 
     private void initDatabase() throws Exception {
@@ -126,9 +163,63 @@ public class DataManager {
             hikariConfig.setMaximumPoolSize(maxPoolSize);
         }
 
+        int statementCacheSize = config.getInteger(Keys.DATABASE_STATEMENT_CACHE_SIZE);
+        String url = config.getString(Keys.DATABASE_URL);
+        if (statementCacheSize > 0 && url != null) {
+            if (url.startsWith("jdbc:mysql:") || url.startsWith("jdbc:mariadb:")) {
+                hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
+                hikariConfig.addDataSourceProperty("useServerPrepStmts", "true");
+                hikariConfig.addDataSourceProperty("prepStmtCacheSize", String.valueOf(statementCacheSize));
+                hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "4096");
+            } else if (url.startsWith("jdbc:postgresql:")) {
+                hikariConfig.addDataSourceProperty("prepareThreshold", "1");
+                hikariConfig.addDataSourceProperty(
+                        "preparedStatementCacheQueries", String.valueOf(statementCacheSize));
+            }
+        }
+
         generateQueries = config.getBoolean(Keys.DATABASE_GENERATE_QUERIES);
 
         dataSource = new HikariDataSource(hikariConfig);
+
+        if (config.hasKey(Keys.DATABASE_REPLICA_URL) || config.hasKey(Keys.DATABASE_REPLICA_MAX_POOL_SIZE)) {
+            HikariConfig readConfig = new HikariConfig();
+            hikariConfig.copyStateTo(readConfig);
+            readConfig.setPoolName("read-pool");
+            readConfig.setReadOnly(true);
+            if (config.hasKey(Keys.DATABASE_REPLICA_URL)) {
+                readConfig.setJdbcUrl(config.getString(Keys.DATABASE_REPLICA_URL));
+                readConfig.setConnectionTimeout(REPLICA_CONNECTION_TIMEOUT);
+                readConfig.setInitializationFailTimeout(-1);
+            }
+            if (config.hasKey(Keys.DATABASE_REPLICA_USER)) {
+                readConfig.setUsername(config.getString(Keys.DATABASE_REPLICA_USER));
+            }
+            if (config.hasKey(Keys.DATABASE_REPLICA_PASSWORD)) {
+                readConfig.setPassword(config.getString(Keys.DATABASE_REPLICA_PASSWORD));
+            }
+            int readPoolSize = config.getInteger(Keys.DATABASE_REPLICA_MAX_POOL_SIZE);
+            if (readPoolSize != 0) {
+                readConfig.setMaximumPoolSize(readPoolSize);
+            }
+            readDataSource = new HikariDataSource(readConfig);
+        }
+    }
+
+    /**
+     * Create query for read-only access like reports and history. It uses the replica data source if configured,
+     * falling back to the primary one for some time if replica connection fails.
+     */
+    private QueryBuilder createReadQuery(String query) throws SQLException {
+        if (readDataSource != null && System.currentTimeMillis() >= readDataSourceRetryTime) {
+            try {
+                return QueryBuilder.create(readDataSource, query);
+            } catch (SQLException e) {
+                readDataSourceRetryTime = System.currentTimeMillis() + REPLICA_RETRY_DELAY;
+                LOGGER.warn("Read database connection error, using primary database", e);
+            }
+        }
+        return QueryBuilder.create(dataSource, query);
     }
 
     public static String constructObjectQuery(String action, Class<?> clazz, boolean extended) {
@@ -231,6 +322,11 @@ public class DataManager {
                 LOGGER.info("Query not provided: " + queryName);
             }
         }
+        if (binaryAttributes && query != null && clazz.equals(Position.class)
+                && (action.equals(ACTION_INSERT) || action.equals(ACTION_UPDATE))) {
+            query = binaryAttributesQueries.computeIfAbsent(
+                    query, key -> ATTRIBUTES_PATTERN.matcher(key).replaceAll("binaryAttributes"));
+        }
         return query;
     }
 
@@ -325,19 +421,214 @@ public class DataManager {
                 .executeUpdate();
     }
 
+    public void updateDeviceStatuses(Collection<Device> devices) throws SQLException {
+        QueryBuilder builder = QueryBuilder.create(dataSource, getQuery(ACTION_UPDATE, Device.class, true));
+        for (Device device : devices) {
+            builder.setObject(device).addBatch();
+        }
+        builder.executeBatch();
+    }
+
+    public PartitionManager getPartitionManager() {
+        return partitionManager;
+    }
+
+    public boolean getBinaryAttributes() {
+        return binaryAttributes;
+    }
+
+    public PositionArchive getPositionArchive() {
+        return positionArchive;
+    }
+
+    private List<YearMonth> getPartitions(Date from, Date to) {
+        if (partitionManager != null) {
+            return partitionManager.getPartitions(from, to);
+        } else {
+            return Collections.singletonList(null);
+        }
+    }
+
+    private static Date getPartitionTime(BaseModel entity) {
+        if (entity instanceof Position) {
+            return ((Position) entity).getFixTime();
+        } else if (entity instanceof Event) {
+            return ((Event) entity).getEventTime();
+        }
+        return null;
+    }
+
+    private String getObjectQuery(String action, Class<?> clazz, long id) {
+        String query = getQuery(action, clazz);
+        if (partitionManager != null && (clazz.equals(Position.class) || clazz.equals(Event.class))) {
+            query = PartitionManager.formatQuery(query, PartitionManager.getPartition(id));
+        }
+        return query;
+    }
+
+    private String getInsertQuery(BaseModel entity) {
+        String query = getQuery(ACTION_INSERT, entity.getClass());
+        Date time = getPartitionTime(entity);
+        if (partitionManager != null && time != null) {
+            query = PartitionManager.formatQuery(query, partitionManager.getInsertPartition(time));
+        }
+        return query;
+    }
+
     public Collection<Position> getPositions(long deviceId, Date from, Date to) throws SQLException {
-        return QueryBuilder.create(dataSource, getQuery("database.selectPositions"))
-                .setLong("deviceId", deviceId)
-                .setDate("from", from)
-                .setDate("to", to)
-                .executeQuery(Position.class);
+        List<Position> result = new ArrayList<>();
+        boolean archived = false;
+        List<YearMonth> partitions = getPartitions(from, to);
+        if (positionArchive != null) {
+            try {
+                positionArchive.getPositions(deviceId, from, to).forEach(result::add);
+                archived = !result.isEmpty();
+            } catch (IOException e) {
+                throw new SQLException(e);
+            }
+        }
+        for (YearMonth partition : partitions) {
+            result.addAll(createReadQuery(
+                    PartitionManager.formatQuery(getQuery("database.selectPositions"), partition))
+                    .setLong("deviceId", deviceId)
+                    .setDate("from", from)
+                    .setDate("to", to)
+                    .executeQuery(Position.class));
+        }
+        if (archived || partitions.size() > 1) {
+            result.sort(Comparator.comparing(Position::getFixTime));
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #getPositions(long, Date, Date)}, but positions are read lazily using database cursor. Archived
+     * days can still have rows in the database until the next archive run, so both sources are merged by time.
+     */
+    public QueryCursor<Position> getPositionsCursor(long deviceId, Date from, Date to) throws SQLException {
+        if (positionArchive != null) {
+            try {
+                if (!positionArchive.getDays(deviceId, from, to).isEmpty()) {
+                    Iterable<Position> archived = positionArchive.getPositions(deviceId, from, to);
+                    return QueryCursor.merge(
+                            QueryCursor.of(archived),
+                            getDatabasePositionsCursor(deviceId, from, to, true),
+                            Comparator.comparing(Position::getFixTime));
+                }
+            } catch (IOException e) {
+                throw new SQLException(e);
+            }
+        }
+        return getDatabasePositionsCursor(deviceId, from, to, true);
+    }
+
+    /**
+     * Positions cursor without archived data. Archiving has to read from the primary database, because it deletes
+     * positions afterwards and a lagging replica could miss some of them.
+     */
+    QueryCursor<Position> getDatabasePositionsCursor(
+            long deviceId, Date from, Date to, boolean readOnly) throws SQLException {
+        List<YearMonth> partitions = getPartitions(from, to);
+        List<QueryCursor.CursorFactory<Position>> cursors = new ArrayList<>();
+        for (YearMonth partition : partitions) {
+            String query = PartitionManager.formatQuery(getQuery("database.selectPositions"), partition);
+            cursors.add(() -> (readOnly ? createReadQuery(query) : QueryBuilder.create(dataSource, query))
+                    .setLong("deviceId", deviceId)
+                    .setDate("from", from)
+                    .setDate("to", to)
+                    .executeQueryCursor(Position.class, config.getInteger(Keys.DATABASE_FETCH_SIZE)));
+        }
+        if (cursors.size() == 1) {
+            return cursors.get(0).open();
+        } else if (!partitions.isEmpty() && partitions.get(0) == null) {
+            // original tables can hold data of any month without its own table
+            return QueryCursor.merge(
+                    cursors.get(0).open(),
+                    QueryCursor.concat(cursors.subList(1, cursors.size())),
+                    Comparator.comparing(Position::getFixTime));
+        }
+        return QueryCursor.concat(cursors);
+    }
+
+    /**
+     * Convert positions still stored with JSON attributes into the binary form. Rows are read in id order and each
+     * run continues after the last converted id, so tables are never scanned from the start again.
+     *
+     * @return number of converted positions
+     */
+    public synchronized int migrateBinaryAttributes(int limit) throws SQLException {
+        int count = 0;
+        List<YearMonth> partitions = partitionManager != null
+                ? partitionManager.getPartitions() : Collections.singletonList(null);
+        for (YearMonth partition : partitions) {
+            if (count >= limit) {
+                break;
+            }
+            Collection<Position> positions = QueryBuilder.create(dataSource,
+                    PartitionManager.formatQuery(getQuery("database.selectPositionsJsonAttributes"), partition))
+                    .setLong("lastId", binaryAttributesMigrated.getOrDefault(partition, 0L))
+                    .setInteger("limit", limit - count)
+                    .executeQuery(Position.class);
+            if (!positions.isEmpty()) {
+                QueryBuilder builder = QueryBuilder.create(dataSource,
+                        PartitionManager.formatQuery(getQuery("database.updatePositionBinaryAttributes"), partition));
+                for (Position position : positions) {
+                    builder.setObject(position).addBatch();
+                }
+                builder.executeBatch();
+                count += positions.size();
+                for (Position position : positions) {
+                    binaryAttributesMigrated.merge(partition, position.getId(), Math::max);
+                }
+            }
+        }
+        return count;
+    }
+
+    void deletePositions(long[] ids) throws SQLException {
+        Map<YearMonth, QueryBuilder> builders = new HashMap<>();
+        for (long id : ids) {
+            QueryBuilder builder = builders.get(PartitionManager.getPartition(id));
+            if (builder == null) {
+                builder = QueryBuilder.create(dataSource, getObjectQuery(ACTION_DELETE, Position.class, id));
+                builders.put(PartitionManager.getPartition(id), builder);
+            }
+            builder.setLong("id", id).addBatch();
+        }
+        for (QueryBuilder builder : builders.values()) {
+            builder.executeBatch();
+        }
     }
 
     public Position getPrecedingPosition(long deviceId, Date date) throws SQLException {
-        return QueryBuilder.create(dataSource, getQuery("database.selectPrecedingPosition"))
-                .setLong("deviceId", deviceId)
-                .setDate("time", date)
-                .executeQuerySingle(Position.class);
+        List<YearMonth> partitions = partitionManager != null
+                ? partitionManager.getPartitionsBefore(date) : Collections.singletonList(null);
+        Position result = null;
+        for (YearMonth partition : partitions) {
+            Position position = QueryBuilder.create(dataSource,
+                    PartitionManager.formatQuery(getQuery("database.selectPrecedingPosition"), partition))
+                    .setLong("deviceId", deviceId)
+                    .setDate("time", date)
+                    .executeQuerySingle(Position.class);
+            if (position != null && (result == null || position.getFixTime().after(result.getFixTime()))) {
+                result = position;
+            }
+            if (position != null && partition != null) {
+                break; // original tables can hold any month, so their result is only a candidate
+            }
+        }
+        if (positionArchive != null) {
+            try {
+                Position archived = positionArchive.getPrecedingPosition(
+                        deviceId, result != null ? result.getFixTime() : new Date(0), date);
+                if (archived != null && (result == null || archived.getFixTime().after(result.getFixTime()))) {
+                    result = archived;
+                }
+            } catch (IOException e) {
+                throw new SQLException(e);
+            }
+        }
+        return result;
     }
 
     public void updateLatestPosition(Position position) throws SQLException {
@@ -347,9 +638,25 @@ public class DataManager {
                 .executeUpdate();
     }
 
+    public void updateLatestPositions(Collection<Position> positions) throws SQLException {
+        QueryBuilder builder = QueryBuilder.create(dataSource, getQuery("database.updateLatestPosition"));
+        Date now = new Date();
+        for (Position position : positions) {
+            builder.setDate("now", now).setObject(position).addBatch();
+        }
+        builder.executeBatch();
+    }
+
     public Collection<Position> getLatestPositions() throws SQLException {
-        return QueryBuilder.create(dataSource, getQuery("database.selectLatestPositions"))
-                .executeQuery(Position.class);
+        List<YearMonth> partitions = partitionManager != null
+                ? partitionManager.getPartitions() : Collections.singletonList(null);
+        List<Position> result = new ArrayList<>();
+        for (YearMonth partition : partitions) {
+            result.addAll(QueryBuilder.create(dataSource,
+                    PartitionManager.formatQuery(getQuery("database.selectLatestPositions"), partition))
+                    .executeQuery(Position.class));
+        }
+        return result;
     }
 
     public Server getServer() throws SQLException {
@@ -358,15 +665,24 @@ public class DataManager {
     }
 
     public Collection<Event> getEvents(long deviceId, Date from, Date to) throws SQLException {
-        return QueryBuilder.create(dataSource, getQuery("database.selectEvents"))
-                .setLong("deviceId", deviceId)
-                .setDate("from", from)
-                .setDate("to", to)
-                .executeQuery(Event.class);
+        List<Event> result = new ArrayList<>();
+        List<YearMonth> partitions = getPartitions(from, to);
+        for (YearMonth partition : partitions) {
+            result.addAll(createReadQuery(
+                    PartitionManager.formatQuery(getQuery("database.selectEvents"), partition))
+                    .setLong("deviceId", deviceId)
+                    .setDate("from", from)
+                    .setDate("to", to)
+                    .executeQuery(Event.class));
+        }
+        if (partitions.size() > 1) {
+            result.sort(Comparator.comparing(Event::getEventTime));
+        }
+        return result;
     }
 
     public Collection<Statistics> getStatistics(Date from, Date to) throws SQLException {
-        return QueryBuilder.create(dataSource, getQuery("database.selectStatistics"))
+        return createReadQuery(getQuery("database.selectStatistics"))
                 .setDate("from", from)
                 .setDate("to", to)
                 .executeQuery(Statistics.class);
@@ -423,7 +739,7 @@ public class DataManager {
     }
 
     public <T extends BaseModel> T getObject(Class<T> clazz, long entityId) throws SQLException {
-        return QueryBuilder.create(dataSource, getQuery(ACTION_SELECT, clazz))
+        return QueryBuilder.create(dataSource, getObjectQuery(ACTION_SELECT, clazz, entityId))
                 .setLong("id", entityId)
                 .executeQuerySingle(clazz);
     }
@@ -434,13 +750,30 @@ public class DataManager {
     }
 
     public void addObject(BaseModel entity) throws SQLException {
-        entity.setId(QueryBuilder.create(dataSource, getQuery(ACTION_INSERT, entity.getClass()), true)
+        entity.setId(QueryBuilder.create(dataSource, getInsertQuery(entity), true)
                 .setObject(entity)
                 .executeUpdate());
     }
 
+    public void addObjects(List<? extends BaseModel> entities) throws SQLException {
+        Map<String, List<BaseModel>> batches = new LinkedHashMap<>();
+        for (BaseModel entity : entities) {
+            batches.computeIfAbsent(getInsertQuery(entity), query -> new ArrayList<>()).add(entity);
+        }
+        for (Map.Entry<String, List<BaseModel>> batch : batches.entrySet()) {
+            QueryBuilder builder = QueryBuilder.create(dataSource, batch.getKey(), true);
+            for (BaseModel entity : batch.getValue()) {
+                builder.setObject(entity).addBatch();
+            }
+            long[] ids = builder.executeBatch();
+            for (int i = 0; i < ids.length; i++) {
+                batch.getValue().get(i).setId(ids[i]);
+            }
+        }
+    }
+
     public void updateObject(BaseModel entity) throws SQLException {
-        QueryBuilder.create(dataSource, getQuery(ACTION_UPDATE, entity.getClass()))
+        QueryBuilder.create(dataSource, getObjectQuery(ACTION_UPDATE, entity.getClass(), entity.getId()))
                 .setObject(entity)
                 .executeUpdate();
         if (entity instanceof User && ((User) entity).getHashedPassword() != null) {
@@ -451,7 +784,7 @@ public class DataManager {
     }
 
     public void removeObject(Class<? extends BaseModel> clazz, long entityId) throws SQLException {
-        QueryBuilder.create(dataSource, getQuery(ACTION_DELETE, clazz))
+        QueryBuilder.create(dataSource, getObjectQuery(ACTION_DELETE, clazz, entityId))
                 .setLong("id", entityId)
                 .executeUpdate();
     }
@@ -53,6 +53,8 @@ public class DeviceManager extends BaseObjectManager<Device> implements Identity
 
     private final Map<Long, DeviceState> deviceStates = new ConcurrentHashMap<>();
 
+    private final DeviceUpdateWriter deviceUpdateWriter;
+
     public DeviceManager(DataManager dataManager) {
         super(dataManager, Device.class);
         this.config = Context.getConfig();
@@ -68,6 +70,11 @@ public class DeviceManager extends BaseObjectManager<Device> implements Identity
             writeUnlock();
         }
         dataRefreshDelay = config.getLong(Keys.DATABASE_REFRESH_DELAY) * 1000;
+        if (dataManager != null && config.getLong(Keys.DATABASE_DEVICE_UPDATE_INTERVAL) > 0) {
+            deviceUpdateWriter = new DeviceUpdateWriter(config, dataManager);
+        } else {
+            deviceUpdateWriter = null;
+        }
         refreshLastPositions();
     }
 
@@ -310,7 +317,11 @@ public class DeviceManager extends BaseObjectManager<Device> implements Identity
     }
 
     public void updateDeviceStatus(Device device) throws SQLException {
-        getDataManager().updateDeviceStatus(device);
+        if (deviceUpdateWriter != null) {
+            deviceUpdateWriter.updateDeviceStatus(device);
+        } else {
+            getDataManager().updateDeviceStatus(device);
+        }
         Device cachedDevice = getById(device.getId());
         if (cachedDevice != null) {
             cachedDevice.setStatus(device.getStatus());
@@ -338,7 +349,11 @@ public class DeviceManager extends BaseObjectManager<Device> implements Identity
 
         if (isLatestPosition(position)) {
 
-            getDataManager().updateLatestPosition(position);
+            if (deviceUpdateWriter != null) {
+                deviceUpdateWriter.updateLatestPosition(position);
+            } else {
+                getDataManager().updateLatestPosition(position);
+            }
 
             Device device = getById(position.getDeviceId());
             if (device != null) {
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Device;
+import org.traccar.model.Position;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces device latest position and last update writes. Only the newest values of each device are kept and
+ * changed devices are written in batches at a fixed interval. {@link DeviceManager} keeps the current values in
+ * memory, so the database is only behind by at most one interval.
+ */
+public class DeviceUpdateWriter implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeviceUpdateWriter.class);
+
+    private final DataManager dataManager;
+    private final long interval;
+
+    private final Map<Long, Position> positions = new ConcurrentHashMap<>();
+    private final Map<Long, Date> lastUpdates = new ConcurrentHashMap<>();
+
+    public DeviceUpdateWriter(Config config, DataManager dataManager) {
+        this.dataManager = dataManager;
+        interval = config.getLong(Keys.DATABASE_DEVICE_UPDATE_INTERVAL);
+
+        Thread thread = new Thread(this, "device-writer");
+        thread.setDaemon(true);
+        thread.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "device-writer-shutdown"));
+    }
+
+    private static Position newer(Position first, Position second) {
+        return second.getFixTime().before(first.getFixTime()) ? first : second;
+    }
+
+    private static Date newer(Date first, Date second) {
+        return second.before(first) ? first : second;
+    }
+
+    public void updateLatestPosition(Position position) {
+        positions.merge(position.getDeviceId(), position, DeviceUpdateWriter::newer);
+    }
+
+    public void updateDeviceStatus(Device device) {
+        Date lastUpdate = device.getLastUpdate();
+        if (lastUpdate != null) {
+            lastUpdates.merge(device.getId(), lastUpdate, DeviceUpdateWriter::newer);
+        }
+    }
+
+    public int getPendingCount() {
+        return positions.size() + lastUpdates.size();
+    }
+
+    private static <T> List<T> drain(Map<Long, T> map) {
+        List<T> result = new ArrayList<>(map.size());
+        for (Long deviceId : map.keySet()) {
+            T value = map.remove(deviceId);
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(interval);
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Device writer error", e);
+            }
+        }
+    }
+
+    /**
+     * Write all pending changes. Values that fail to be written are kept for the next flush unless newer values
+     * arrived in the meantime.
+     */
+    public synchronized void flush() {
+
+        List<Position> pendingPositions = drain(positions);
+        if (!pendingPositions.isEmpty()) {
+            try {
+                dataManager.updateLatestPositions(pendingPositions);
+            } catch (SQLException error) {
+                LOGGER.warn("Update latest positions error", error);
+                for (Position position : pendingPositions) {
+                    updateLatestPosition(position);
+                }
+            }
+        }
+
+        List<Device> pendingDevices = new ArrayList<>();
+        for (Long deviceId : lastUpdates.keySet()) {
+            Date lastUpdate = lastUpdates.remove(deviceId);
+            if (lastUpdate != null) {
+                Device device = new Device();
+                device.setId(deviceId);
+                device.setLastUpdate(lastUpdate);
+                pendingDevices.add(device);
+            }
+        }
+        if (!pendingDevices.isEmpty()) {
+            try {
+                dataManager.updateDeviceStatuses(pendingDevices);
+            } catch (SQLException error) {
+                LOGGER.warn("Update device status error", error);
+                for (Device device : pendingDevices) {
+                    updateDeviceStatus(device);
+                }
+            }
+        }
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2017 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2017 - 2022 Anton Tananaev (anton@traccar.org)
  * Copyright 2017 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -18,6 +18,7 @@ package org.traccar.database;
 
 import java.sql.SQLException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -86,6 +87,21 @@ public abstract class ExtendedObjectManager<T extends BaseModel> extends SimpleO
         }
     }
 
+    /**
+     * Returns device items including group items without copying, caller must hold the read lock.
+     */
+    protected final Set<Long> getAllDeviceItemsUnsafe(long deviceId) {
+        return deviceItemsWithGroups.getOrDefault(deviceId, Collections.emptySet());
+    }
+
+    /**
+     * Returns device items including group items for all devices without copying, caller must hold the read lock.
+     * Refresh replaces the item sets instead of modifying them.
+     */
+    protected final Map<Long, Set<Long>> getAllDeviceItemsUnsafe() {
+        return Collections.unmodifiableMap(deviceItemsWithGroups);
+    }
+
     @Override
     public void removeItem(long itemId) throws SQLException {
         super.removeItem(itemId);
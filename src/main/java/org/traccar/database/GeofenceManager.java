@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2017 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,51 +16,313 @@
 package org.traccar.database;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
 
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.STRtree;
 import org.traccar.Context;
+import org.traccar.geofence.GeofenceGeometry;
+import org.traccar.geofence.GeofenceIndex;
 import org.traccar.model.Device;
 import org.traccar.model.Geofence;
 import org.traccar.model.Position;
 
 public class GeofenceManager extends ExtendedObjectManager<Geofence> {
 
+    private static final int INDEX_THRESHOLD = 16;
+
+    private volatile GeofenceIndex index;
+    private volatile long version;
+    private Map<Long, Envelope> changedGeofences;
+    private volatile boolean recalculated;
+
     public GeofenceManager(DataManager dataManager) {
         super(dataManager, Geofence.class);
     }
 
     @Override
     public final void refreshExtendedPermissions() {
+        if (getDataManager() == null) {
+            return;
+        }
+        Map<Long, Set<Long>> previousItems;
+        try {
+            readLock();
+            previousItems = new HashMap<>(getAllDeviceItemsUnsafe());
+        } finally {
+            readUnlock();
+        }
         super.refreshExtendedPermissions();
-        recalculateDevicesGeofences();
+        Map<Long, Envelope> changed;
+        try {
+            writeLock();
+            version += 1;
+            changed = changedGeofences;
+            changedGeofences = null;
+        } finally {
+            writeUnlock();
+        }
+        if (recalculated) {
+            recalculateDevicesGeofences(previousItems, changed != null ? changed : Collections.emptyMap());
+        } else {
+            recalculateDevicesGeofences();
+            recalculated = true;
+        }
     }
 
-    public List<Long> getCurrentDeviceGeofences(Position position) {
-        List<Long> result = new ArrayList<>();
-        for (long geofenceId : getAllDeviceItems(position.getDeviceId())) {
-            Geofence geofence = getById(geofenceId);
-            if (geofence != null && geofence.getGeometry()
-                    .containsPoint(position.getLatitude(), position.getLongitude())) {
-                result.add(geofenceId);
+    /**
+     * Returns counter that changes whenever geofences or their device links change.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Invalidates cached data and records envelope of the previous geofence geometry, so devices inside the old
+     * geofence area are recalculated as well. Caller must hold the write lock.
+     */
+    private void invalidate(long geofenceId, Geofence previous) {
+        index = null;
+        version += 1;
+        if (changedGeofences == null) {
+            changedGeofences = new HashMap<>();
+        }
+        Envelope envelope = changedGeofences.computeIfAbsent(geofenceId, key -> new Envelope());
+        if (previous != null && previous.getGeometry() != null) {
+            envelope.expandToInclude(previous.getGeometry().getEnvelope());
+        }
+    }
+
+    @Override
+    protected void addNewItem(Geofence item) {
+        try {
+            writeLock();
+            super.addNewItem(item);
+            invalidate(item.getId(), null);
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    @Override
+    protected void updateCachedItem(Geofence item) {
+        try {
+            writeLock();
+            Geofence previous = getById(item.getId());
+            super.updateCachedItem(item);
+            if (previous != null && Objects.equals(previous.getArea(), item.getArea())
+                    && previous.getDouble("polylineDistance") == item.getDouble("polylineDistance")) {
+                index = null; // same geometry, only release replaced item
+            } else {
+                invalidate(item.getId(), previous);
             }
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    @Override
+    protected void removeCachedItem(long itemId) {
+        try {
+            writeLock();
+            Geofence previous = getById(itemId);
+            super.removeCachedItem(itemId);
+            invalidate(itemId, previous);
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    /**
+     * Returns spatial index of all geofences, caller must hold the read lock. Index is invalidated under the write
+     * lock, so a rebuilt index always matches current items.
+     */
+    private GeofenceIndex getIndex() {
+        GeofenceIndex result = index;
+        if (result == null) {
+            result = new GeofenceIndex(getItems(getAllItems()));
+            index = result;
         }
         return result;
     }
 
-    public void recalculateDevicesGeofences() {
-        for (Device device : Context.getDeviceManager().getAllDevices()) {
-            List<Long> deviceGeofenceIds = device.getGeofenceIds();
-            if (deviceGeofenceIds == null) {
-                deviceGeofenceIds = new ArrayList<>();
-            } else {
-                deviceGeofenceIds.clear();
+    public List<Long> getCurrentDeviceGeofences(Position position) {
+        double latitude = position.getLatitude();
+        double longitude = position.getLongitude();
+        try {
+            readLock();
+            Set<Long> deviceGeofences = getAllDeviceItemsUnsafe(position.getDeviceId());
+            if (deviceGeofences.size() >= INDEX_THRESHOLD) {
+                return getIndex().getContaining(latitude, longitude, deviceGeofences::contains);
+            }
+            List<Long> result = new ArrayList<>();
+            for (long geofenceId : deviceGeofences) {
+                Geofence geofence = getById(geofenceId);
+                if (geofence != null) {
+                    GeofenceGeometry geometry = geofence.getGeometry();
+                    if (geometry.getEnvelope().contains(longitude, latitude)
+                            && geometry.containsPoint(latitude, longitude)) {
+                        result.add(geofenceId);
+                    }
+                }
+            }
+            return result;
+        } finally {
+            readUnlock();
+        }
+    }
+
+    /**
+     * Returns distance in meters the device can move from the position without changing the result of
+     * {@link #getCurrentDeviceGeofences}, limited by maxDistance.
+     */
+    public double getBoundaryDistance(Position position, double maxDistance) {
+        double latitude = position.getLatitude();
+        double longitude = position.getLongitude();
+        try {
+            readLock();
+            Set<Long> deviceGeofences = getAllDeviceItemsUnsafe(position.getDeviceId());
+            if (deviceGeofences.size() >= INDEX_THRESHOLD) {
+                return getIndex().getBoundaryDistance(latitude, longitude, maxDistance, deviceGeofences::contains);
             }
-            Position lastPosition = Context.getIdentityManager().getLastPosition(device.getId());
-            if (lastPosition != null && getAllDeviceItems(device.getId()) != null) {
-                deviceGeofenceIds.addAll(getCurrentDeviceGeofences(lastPosition));
+            double result = maxDistance;
+            for (long geofenceId : deviceGeofences) {
+                Geofence geofence = getById(geofenceId);
+                if (geofence != null) {
+                    result = Math.min(result, geofence.getGeometry().getBoundaryDistance(
+                            latitude, longitude, maxDistance));
+                }
             }
-            device.setGeofenceIds(deviceGeofenceIds);
+            return result;
+        } finally {
+            readUnlock();
+        }
+    }
+
+    private List<Long> calculateDeviceGeofences(Device device) {
+        Position lastPosition = Context.getIdentityManager().getLastPosition(device.getId());
+        if (lastPosition != null) {
+            return getCurrentDeviceGeofences(lastPosition);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Calculates geofences of devices in parallel on the common fork-join pool. Each device gets a new list after all
+     * calculations finish, so lists are never observed partially filled.
+     */
+    private void recalculateDevicesGeofences(Collection<Device> devices) {
+        try {
+            readLock();
+            getIndex();
+        } finally {
+            readUnlock();
+        }
+        List<Device> deviceList = new ArrayList<>(devices);
+        List<List<Long>> results = deviceList.parallelStream()
+                .map(this::calculateDeviceGeofences)
+                .collect(Collectors.toList());
+        for (int i = 0; i < deviceList.size(); i++) {
+            deviceList.get(i).setGeofenceIds(results.get(i));
+        }
+    }
+
+    private static boolean isLinked(Set<Long> previous, Set<Long> current, long geofenceId) {
+        return previous != null && previous.contains(geofenceId) || current != null && current.contains(geofenceId);
+    }
+
+    private Set<Long> getAffectedDevices(Map<Long, Set<Long>> previousItems, Map<Long, Envelope> changed) {
+        try {
+            readLock();
+            return getAffectedDevices(
+                    previousItems, getAllDeviceItemsUnsafe(), changed, Context.getIdentityManager()::getLastPosition);
+        } finally {
+            readUnlock();
         }
     }
 
+    /**
+     * Returns devices with changed geofence links and linked devices with last position inside the old or new area of
+     * a changed geofence. Last positions of candidate devices are indexed, so each changed geofence is one lookup.
+     */
+    Set<Long> getAffectedDevices(
+            Map<Long, Set<Long>> previousItems, Map<Long, Set<Long>> currentItems,
+            Map<Long, Envelope> changed, LongFunction<Position> lastPositions) {
+        Set<Long> result = new HashSet<>();
+        try {
+            readLock();
+            Set<Long> deviceIds = new HashSet<>(previousItems.keySet());
+            deviceIds.addAll(currentItems.keySet());
+            for (long deviceId : deviceIds) {
+                if (!Objects.equals(previousItems.get(deviceId), currentItems.get(deviceId))) {
+                    result.add(deviceId);
+                }
+            }
+            if (changed.isEmpty()) {
+                return result;
+            }
+
+            STRtree positions = new STRtree();
+            for (long deviceId : deviceIds) {
+                if (!result.contains(deviceId)) {
+                    Set<Long> previous = previousItems.get(deviceId);
+                    Set<Long> current = currentItems.get(deviceId);
+                    for (long geofenceId : changed.keySet()) {
+                        if (isLinked(previous, current, geofenceId)) {
+                            Position position = lastPositions.apply(deviceId);
+                            if (position != null) {
+                                positions.insert(new Envelope(
+                                        position.getLongitude(), position.getLongitude(),
+                                        position.getLatitude(), position.getLatitude()), deviceId);
+                            }
+                            break;
+                        }
+                    }
+                }
+            }
+            for (Map.Entry<Long, Envelope> entry : changed.entrySet()) {
+                Envelope area = new Envelope(entry.getValue());
+                Geofence geofence = getById(entry.getKey());
+                if (geofence != null && geofence.getGeometry() != null) {
+                    area.expandToInclude(geofence.getGeometry().getEnvelope());
+                }
+                if (!area.isNull()) {
+                    for (Object item : positions.query(area)) {
+                        long deviceId = (Long) item;
+                        if (isLinked(previousItems.get(deviceId), currentItems.get(deviceId), entry.getKey())) {
+                            result.add(deviceId);
+                        }
+                    }
+                }
+            }
+        } finally {
+            readUnlock();
+        }
+        return result;
+    }
+
+    private void recalculateDevicesGeofences(Map<Long, Set<Long>> previousItems, Map<Long, Envelope> changed) {
+        List<Device> devices = new ArrayList<>();
+        for (long deviceId : getAffectedDevices(previousItems, changed)) {
+            Device device = Context.getDeviceManager().getById(deviceId);
+            if (device != null) {
+                devices.add(device);
+            }
+        }
+        recalculateDevicesGeofences(devices);
+    }
+
+    public void recalculateDevicesGeofences() {
+        recalculateDevicesGeofences(Context.getDeviceManager().getAllDevices());
+    }
+
 }
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.Context;
+import org.traccar.model.ExtendedModel;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accessors of a model class resolved once into method handles. Used by {@link QueryBuilder} to bind object
+ * properties to query parameters and to map result set rows to objects without per row reflection.
+ */
+final class ModelBinder<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModelBinder.class);
+
+    private static final ClassValue<ModelBinder<?>> BINDERS = new ClassValue<>() {
+        @Override
+        protected ModelBinder<?> computeValue(Class<?> type) {
+            return new ModelBinder<>(type);
+        }
+    };
+
+    interface ParameterBinder {
+        void bind(QueryBuilder builder, Object object) throws Throwable;
+    }
+
+    /**
+     * Parameter and column holding {@link ExtendedModel} attributes in {@link AttributeCodec} form.
+     */
+    static final String BINARY_ATTRIBUTES = "binaryattributes";
+
+    private final Class<T> clazz;
+    private final boolean extended;
+    private final MethodHandle constructor;
+    private final List<ParameterBinder> parameterBinders = new ArrayList<>();
+    private final Map<String, Class<?>> setterTypes = new HashMap<>();
+    private final Map<String, MethodHandle> setters = new HashMap<>();
+
+    @SuppressWarnings("unchecked")
+    static <T> ModelBinder<T> of(Class<T> clazz) {
+        return (ModelBinder<T>) BINDERS.get(clazz);
+    }
+
+    private ModelBinder(Class<T> clazz) {
+        this.clazz = clazz;
+        extended = ExtendedModel.class.isAssignableFrom(clazz);
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        try {
+            constructor = lookup.findConstructor(clazz, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            for (Method method : clazz.getMethods()) {
+                if (method.getDeclaringClass() == Object.class || Modifier.isStatic(method.getModifiers())
+                        || method.isAnnotationPresent(QueryIgnore.class) || method.getName().length() <= 3) {
+                    continue;
+                }
+                String name = method.getName().substring(3).toLowerCase();
+                if (method.getName().startsWith("get") && method.getParameterCount() == 0) {
+                    parameterBinders.add(createParameterBinder(
+                            name, method.getName().endsWith("Id"), method.getReturnType(), lookup.unreflect(method)));
+                } else if (method.getName().startsWith("set") && method.getParameterCount() == 1) {
+                    Class<?> type = method.getParameterTypes()[0];
+                    Class<?> handleType = type.isPrimitive()
+                            || type == String.class || type == Date.class || type == byte[].class ? type : Object.class;
+                    setterTypes.put(name, type);
+                    setters.put(name, lookup.unreflect(method)
+                            .asType(MethodType.methodType(void.class, Object.class, handleType)));
+                }
+            }
+            if (extended) {
+                parameterBinders.add((builder, object) -> {
+                    if (builder.hasParameter(BINARY_ATTRIBUTES)) {
+                        builder.setBlob(BINARY_ATTRIBUTES, AttributeCodec.encode(
+                                Context.getObjectMapper(), ((ExtendedModel) object).getAttributes()));
+                    }
+                });
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static ParameterBinder createParameterBinder(
+            String name, boolean nullIfZero, Class<?> type, MethodHandle handle) {
+        if (type == boolean.class) {
+            MethodHandle getter = handle.asType(MethodType.methodType(boolean.class, Object.class));
+            return (builder, object) -> builder.setBoolean(name, (boolean) getter.invokeExact(object));
+        } else if (type == int.class) {
+            MethodHandle getter = handle.asType(MethodType.methodType(int.class, Object.class));
+            return (builder, object) -> builder.setInteger(name, (int) getter.invokeExact(object));
+        } else if (type == long.class) {
+            MethodHandle getter = handle.asType(MethodType.methodType(long.class, Object.class));
+            return (builder, object) -> builder.setLong(name, (long) getter.invokeExact(object), nullIfZero);
+        } else if (type == double.class) {
+            MethodHandle getter = handle.asType(MethodType.methodType(double.class, Object.class));
+            return (builder, object) -> builder.setDouble(name, (double) getter.invokeExact(object));
+        } else if (type == String.class) {
+            MethodHandle getter = handle.asType(MethodType.methodType(String.class, Object.class));
+            return (builder, object) -> builder.setString(name, (String) getter.invokeExact(object));
+        } else if (type == Date.class) {
+            MethodHandle getter = handle.asType(MethodType.methodType(Date.class, Object.class));
+            return (builder, object) -> builder.setDate(name, (Date) getter.invokeExact(object));
+        } else if (type == byte[].class) {
+            MethodHandle getter = handle.asType(MethodType.methodType(byte[].class, Object.class));
+            return (builder, object) -> builder.setBlob(name, (byte[]) getter.invokeExact(object));
+        } else {
+            MethodHandle getter = handle.asType(MethodType.methodType(Object.class, Object.class));
+            return (builder, object) -> {
+                if (builder.hasParameter(name)) {
+                    builder.setString(
+                            name, Context.getObjectMapper().writeValueAsString((Object) getter.invokeExact(object)));
+                }
+            };
+        }
+    }
+
+    void bind(QueryBuilder builder, Object object) throws SQLException {
+        for (ParameterBinder parameterBinder : parameterBinders) {
+            try {
+                parameterBinder.bind(builder, object);
+            } catch (SQLException error) {
+                throw error;
+            } catch (Throwable error) {
+                LOGGER.warn("Get property error", error);
+            }
+        }
+    }
+
+    T newInstance() {
+        try {
+            return clazz.cast((Object) constructor.invokeExact());
+        } catch (Throwable error) {
+            throw new IllegalArgumentException(error);
+        }
+    }
+
+    /**
+     * Row processors for the columns present in the result set. Values are read by column index.
+     */
+    List<QueryBuilder.ResultSetProcessor<T>> createProcessors(ResultSetMetaData metaData) throws SQLException {
+        List<QueryBuilder.ResultSetProcessor<T>> processors = new ArrayList<>();
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            columns.putIfAbsent(metaData.getColumnLabel(i).toLowerCase(), i);
+        }
+        for (Map.Entry<String, Integer> column : columns.entrySet()) {
+            MethodHandle setter = setters.get(column.getKey());
+            if (extended && column.getKey().equals(BINARY_ATTRIBUTES)) {
+                int index = column.getValue();
+                processors.add(wrap((object, resultSet) -> {
+                    byte[] value = resultSet.getBytes(index);
+                    if (value != null) {
+                        ((ExtendedModel) object).setAttributes(AttributeCodec.decode(Context.getObjectMapper(), value));
+                    }
+                }));
+            } else if (setter != null) {
+                processors.add(createProcessor(setterTypes.get(column.getKey()), setter, column.getValue()));
+            }
+        }
+        return processors;
+    }
+
+    private interface RowSetter<T> {
+        void set(T object, ResultSet resultSet) throws Throwable;
+    }
+
+    private static <T> QueryBuilder.ResultSetProcessor<T> wrap(RowSetter<T> rowSetter) {
+        return (object, resultSet) -> {
+            try {
+                rowSetter.set(object, resultSet);
+            } catch (SQLException error) {
+                throw error;
+            } catch (Throwable error) {
+                LOGGER.warn("Set property error", error);
+            }
+        };
+    }
+
+    private QueryBuilder.ResultSetProcessor<T> createProcessor(Class<?> type, MethodHandle setter, int index) {
+        if (type == boolean.class) {
+            return wrap((object, resultSet) -> {
+                setter.invokeExact((Object) object, resultSet.getBoolean(index));
+            });
+        } else if (type == int.class) {
+            return wrap((object, resultSet) -> {
+                setter.invokeExact((Object) object, resultSet.getInt(index));
+            });
+        } else if (type == long.class) {
+            return wrap((object, resultSet) -> {
+                setter.invokeExact((Object) object, resultSet.getLong(index));
+            });
+        } else if (type == double.class) {
+            return wrap((object, resultSet) -> {
+                setter.invokeExact((Object) object, resultSet.getDouble(index));
+            });
+        } else if (type == String.class) {
+            return wrap((object, resultSet) -> {
+                setter.invokeExact((Object) object, resultSet.getString(index));
+            });
+        } else if (type == Date.class) {
+            return wrap((object, resultSet) -> {
+                Timestamp timestamp = resultSet.getTimestamp(index);
+                if (timestamp != null) {
+                    setter.invokeExact((Object) object, new Date(timestamp.getTime()));
+                }
+            });
+        } else if (type == byte[].class) {
+            return wrap((object, resultSet) -> {
+                setter.invokeExact((Object) object, resultSet.getBytes(index));
+            });
+        } else {
+            return wrap((object, resultSet) -> {
+                String value = resultSet.getString(index);
+                if (value != null && !value.isEmpty()) {
+                    setter.invokeExact((Object) object, (Object) Context.getObjectMapper().readValue(value, type));
+                }
+            });
+        }
+    }
+
+}
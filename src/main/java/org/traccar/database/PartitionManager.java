@@ -0,0 +1,225 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import liquibase.Contexts;
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.LiquibaseException;
+import liquibase.resource.FileSystemResourceAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps positions and events in monthly tables (for example tc_positions_202210). Tables are created from the
+ * partition changelog and each one gets its own id range, so ids stay unique across all tables and the table can be
+ * found from the id alone.
+ * <p>
+ * Tables are only created by the maintenance task, never on insert. Data with time in a month that has no table
+ * goes to the original unsuffixed tables: data stored before partitioning was enabled (including earlier days of the
+ * month when it was enabled), data received late for a month the server was down and data more than a day in the
+ * future, whose table is created later. Because of that the original tables can hold rows of any month and range
+ * queries always read them too. With the device and time index this costs one index lookup per query.
+ */
+public class PartitionManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionManager.class);
+
+    public static final long ID_RANGE = 10_000_000_000L;
+
+    private static final int BASE_YEAR = 1970;
+
+    private static final DateTimeFormatter SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final Pattern TABLE_PATTERN = Pattern.compile("tc_positions_(\\d{6})", Pattern.CASE_INSENSITIVE);
+    private static final Pattern QUERY_PATTERN = Pattern.compile("\\b(tc_positions|tc_events)\\b");
+
+    private final DataSource dataSource;
+    private final String changelog;
+    private final int retention;
+
+    private final NavigableSet<YearMonth> partitions = new ConcurrentSkipListSet<>();
+
+    PartitionManager(Collection<YearMonth> partitions) {
+        dataSource = null;
+        changelog = null;
+        retention = 0;
+        this.partitions.addAll(partitions);
+    }
+
+    public PartitionManager(Config config, DataSource dataSource) throws SQLException {
+        this.dataSource = dataSource;
+        changelog = config.getString(Keys.DATABASE_PARTITION_CHANGELOG);
+        retention = config.getInteger(Keys.DATABASE_PARTITION_RETENTION);
+
+        try (Connection connection = dataSource.getConnection();
+             ResultSet tables = connection.getMetaData().getTables(null, null, "%", new String[] {"TABLE"})) {
+            while (tables.next()) {
+                Matcher matcher = TABLE_PATTERN.matcher(tables.getString("TABLE_NAME"));
+                if (matcher.matches()) {
+                    partitions.add(YearMonth.parse(matcher.group(1), SUFFIX_FORMAT));
+                }
+            }
+        }
+    }
+
+    public static YearMonth getPartition(Date time) {
+        YearMonth partition = YearMonth.from(time.toInstant().atZone(ZoneOffset.UTC));
+        return partition.getYear() < BASE_YEAR ? YearMonth.of(BASE_YEAR, 1) : partition;
+    }
+
+    /**
+     * Partition that contains given id or null for ids from the original tables.
+     */
+    public static YearMonth getPartition(long id) {
+        long index = id / ID_RANGE;
+        if (index <= 0) {
+            return null;
+        }
+        return YearMonth.of(BASE_YEAR, 1).plusMonths(index - 1);
+    }
+
+    public static long getIdStart(YearMonth partition) {
+        return ((partition.getYear() - BASE_YEAR) * 12L + partition.getMonthValue()) * ID_RANGE;
+    }
+
+    /**
+     * Replace position and event table names in the query with the partition tables.
+     */
+    public static String formatQuery(String query, YearMonth partition) {
+        if (query == null || partition == null) {
+            return query;
+        }
+        return QUERY_PATTERN.matcher(query).replaceAll("$1_" + partition.format(SUFFIX_FORMAT));
+    }
+
+    /**
+     * Partitions overlapping given period in chronological order. Null stands for the original tables, which are
+     * always included first, because they can hold rows of any month.
+     */
+    public List<YearMonth> getPartitions(Date from, Date to) {
+        List<YearMonth> result = new ArrayList<>();
+        YearMonth first = getPartition(from);
+        YearMonth last = getPartition(to);
+        if (first.isAfter(last)) {
+            return result;
+        }
+        result.add(null);
+        result.addAll(partitions.subSet(first, true, last, true));
+        return result;
+    }
+
+    /**
+     * Partitions that can contain data before given time. Original tables come first, followed by partitions in
+     * reverse chronological order.
+     */
+    public List<YearMonth> getPartitionsBefore(Date time) {
+        List<YearMonth> result = new ArrayList<>();
+        result.add(null);
+        result.addAll(partitions.headSet(getPartition(time), true).descendingSet());
+        return result;
+    }
+
+    public List<YearMonth> getPartitions() {
+        List<YearMonth> result = new ArrayList<>();
+        result.add(null);
+        result.addAll(partitions);
+        return result;
+    }
+
+    /**
+     * Partition for new data with given time or null for the original tables, if the month has no table.
+     */
+    public YearMonth getInsertPartition(Date time) {
+        YearMonth partition = getPartition(time);
+        return partitions.contains(partition) ? partition : null;
+    }
+
+    /**
+     * Create partition for given time if it does not exist yet. Runs schema update, so it is only called at startup
+     * and from the maintenance task.
+     */
+    public YearMonth ensurePartition(Date time) throws SQLException {
+        YearMonth partition = getPartition(time);
+        if (!partitions.contains(partition)) {
+            synchronized (this) {
+                if (!partitions.contains(partition)) {
+                    createPartition(partition);
+                    partitions.add(partition);
+                }
+            }
+        }
+        return partition;
+    }
+
+    private void createPartition(YearMonth partition) throws SQLException {
+        LOGGER.info("Creating partition {}", partition);
+        try (Connection connection = dataSource.getConnection()) {
+            Database database = DatabaseFactory.getInstance()
+                    .findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            Liquibase liquibase = new Liquibase(
+                    changelog, new FileSystemResourceAccessor(new File(".")), database);
+            liquibase.setChangeLogParameter("suffix", partition.format(SUFFIX_FORMAT));
+            liquibase.setChangeLogParameter("idStart", String.valueOf(getIdStart(partition)));
+            liquibase.clearCheckSums();
+            liquibase.update(new Contexts());
+        } catch (LiquibaseException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * Drop partitions older than the configured retention period.
+     */
+    public void removeExpiredPartitions() throws SQLException {
+        if (retention <= 0) {
+            return;
+        }
+        YearMonth threshold = YearMonth.now(ZoneOffset.UTC).minusMonths(retention);
+        for (YearMonth partition : partitions.headSet(threshold, false)) {
+            LOGGER.info("Removing partition {}", partition);
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute(formatQuery("DROP TABLE tc_events", partition));
+                statement.execute(formatQuery("DROP TABLE tc_positions", partition));
+            }
+            partitions.remove(partition);
+        }
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Position;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves old positions from the database into per device and per day {@link ArchiveSegment} files. Files are stored
+ * as {@code <path>/<deviceId>/<yyyyMMdd>.seg}, days are in UTC.
+ */
+public class PositionArchive {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PositionArchive.class);
+
+    private static final String EXTENSION = ".seg";
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final ObjectMapper objectMapper;
+    private final Path root;
+    private final long age;
+
+    public PositionArchive(Config config, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        root = Paths.get(config.getString(Keys.DATABASE_ARCHIVE_PATH));
+        age = TimeUnit.DAYS.toMillis(config.getInteger(Keys.DATABASE_ARCHIVE_AGE));
+    }
+
+    private static LocalDate getDay(Date time) {
+        return time.toInstant().atZone(ZoneOffset.UTC).toLocalDate();
+    }
+
+    private static Date getStart(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+
+    private Path getFile(long deviceId, LocalDate day) {
+        return root.resolve(String.valueOf(deviceId)).resolve(day.format(DAY_FORMAT) + EXTENSION);
+    }
+
+    /**
+     * Archived days of the device overlapping given period in chronological order.
+     */
+    public List<LocalDate> getDays(long deviceId, Date from, Date to) throws IOException {
+        Path directory = root.resolve(String.valueOf(deviceId));
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        LocalDate first = getDay(from);
+        LocalDate last = getDay(to);
+        List<LocalDate> result = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    LocalDate day = LocalDate.parse(name.substring(0, name.length() - EXTENSION.length()), DAY_FORMAT);
+                    if (!day.isBefore(first) && !day.isAfter(last)) {
+                        result.add(day);
+                    }
+                } catch (DateTimeParseException e) {
+                    LOGGER.warn("Unexpected archive file {}", file);
+                }
+            }
+        }
+        result.sort(Comparator.naturalOrder());
+        return result;
+    }
+
+    /**
+     * Read archived positions lazily. Each day file is mapped only when iteration reaches it.
+     */
+    public Iterable<Position> getPositions(long deviceId, Date from, Date to) throws IOException {
+        List<LocalDate> days = getDays(deviceId, from, to);
+        return () -> new Iterator<>() {
+
+            private final Iterator<LocalDate> remaining = days.iterator();
+            private Iterator<Position> current = Collections.emptyIterator();
+            private Position next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (current.hasNext()) {
+                        Position position = current.next();
+                        if (!position.getFixTime().before(from) && !position.getFixTime().after(to)) {
+                            next = position;
+                        }
+                    } else if (remaining.hasNext()) {
+                        try {
+                            current = ArchiveSegment.read(objectMapper, getFile(deviceId, remaining.next()));
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    } else {
+                        break;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Position next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Position result = next;
+                next = null;
+                return result;
+            }
+
+        };
+    }
+
+    /**
+     * Latest archived position with fix time within given period. Days are read starting from the most recent one,
+     * so usually only a single file is mapped.
+     */
+    public Position getPrecedingPosition(long deviceId, Date from, Date to) throws IOException {
+        List<LocalDate> days = getDays(deviceId, from, to);
+        for (int i = days.size() - 1; i >= 0; i--) {
+            Position result = null;
+            Iterator<Position> positions = ArchiveSegment.read(objectMapper, getFile(deviceId, days.get(i)));
+            while (positions.hasNext()) {
+                Position position = positions.next();
+                if (!position.getFixTime().before(from) && !position.getFixTime().after(to)
+                        && (result == null || !position.getFixTime().before(result.getFixTime()))) {
+                    result = position;
+                }
+            }
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private void writeDay(long deviceId, LocalDate day, List<Position> positions) throws IOException {
+        Path file = getFile(deviceId, day);
+        Files.createDirectories(file.getParent());
+        if (Files.exists(file)) {
+            Map<Long, Position> merged = new LinkedHashMap<>();
+            Iterator<Position> existing = ArchiveSegment.read(objectMapper, file);
+            existing.forEachRemaining(position -> merged.put(position.getId(), position));
+            for (Position position : positions) {
+                merged.put(position.getId(), position);
+            }
+            positions = new ArrayList<>(merged.values());
+            positions.sort(Comparator.comparing(Position::getFixTime));
+        }
+        ArchiveSegment.write(objectMapper, file, positions);
+    }
+
+    /**
+     * Move positions older than the configured age into archive files. Days are written first and removed from
+     * the database only after the files are complete, so interrupted run is repeated safely next time. Only the
+     * archived rows are deleted, positions of an archived day inserted later are merged into its file on the next
+     * run.
+     *
+     * @param lastPosition latest position of the device, its day is never archived
+     */
+    public void archiveDevice(
+            DataManager dataManager, long deviceId, Position lastPosition) throws SQLException, IOException {
+
+        LocalDate threshold = getDay(new Date(System.currentTimeMillis() - age));
+        if (lastPosition != null && getDay(lastPosition.getFixTime()).isBefore(threshold)) {
+            threshold = getDay(lastPosition.getFixTime());
+        }
+        Date to = new Date(getStart(threshold).getTime() - 1);
+
+        List<LocalDate> archived = new ArrayList<>();
+        List<long[]> archivedIds = new ArrayList<>();
+        try (QueryCursor<Position> cursor = dataManager.getDatabasePositionsCursor(deviceId, new Date(0), to, false)) {
+            LocalDate day = null;
+            List<Position> positions = new ArrayList<>();
+            for (Position position : cursor) {
+                LocalDate positionDay = getDay(position.getFixTime());
+                if (day != null && !positionDay.equals(day)) {
+                    writeDay(deviceId, day, positions);
+                    archived.add(day);
+                    archivedIds.add(positions.stream().mapToLong(Position::getId).toArray());
+                    positions.clear();
+                }
+                day = positionDay;
+                positions.add(position);
+            }
+            if (day != null) {
+                writeDay(deviceId, day, positions);
+                archived.add(day);
+                archivedIds.add(positions.stream().mapToLong(Position::getId).toArray());
+            }
+        }
+
+        for (long[] ids : archivedIds) {
+            dataManager.deletePositions(ids);
+        }
+        if (!archived.isEmpty()) {
+            LOGGER.info("Archived {} days of device {}", archived.size(), deviceId);
+        }
+    }
+
+}
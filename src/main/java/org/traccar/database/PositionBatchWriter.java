@@ -0,0 +1,195 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.FlowController;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Position;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class PositionBatchWriter implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PositionBatchWriter.class);
+
+    private final DataManager dataManager;
+    private final StatisticsManager statisticsManager;
+    private final PositionSpool spool;
+    private final FlowController.Source flowSource;
+
+    private final int batchSize;
+    private final long batchDelay;
+
+    private final BlockingQueue<Entry> queue;
+
+    private volatile int lastBatchSize;
+    private volatile long lastFlushTime;
+
+    private static final class Entry {
+
+        private final Position position;
+        private final Consumer<Position> callback;
+
+        private Entry(Position position, Consumer<Position> callback) {
+            this.position = position;
+            this.callback = callback;
+        }
+
+    }
+
+    public PositionBatchWriter(
+            Config config, DataManager dataManager, StatisticsManager statisticsManager, PositionSpool spool,
+            FlowController flowController) {
+        this.dataManager = dataManager;
+        this.statisticsManager = statisticsManager;
+        this.spool = spool;
+        flowSource = flowController != null ? flowController.createSource() : null;
+        batchSize = config.getInteger(Keys.DATABASE_BATCH_SIZE);
+        batchDelay = config.getLong(Keys.DATABASE_BATCH_DELAY);
+        queue = new ArrayBlockingQueue<>(config.getInteger(Keys.DATABASE_BATCH_QUEUE_SIZE));
+
+        Thread thread = new Thread(this, "position-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public long getLastFlushTime() {
+        return lastFlushTime;
+    }
+
+    private void spool(Position position) {
+        try {
+            spool.write(position);
+        } catch (Exception error) {
+            LOGGER.warn("Failed to spool position", error);
+        }
+    }
+
+    /**
+     * Queue position for storage. Callback is invoked from the writer thread once the position has its generated id.
+     * If the queue is full, position is spooled or, without spool, stored synchronously on the calling thread. While
+     * the spool has pending positions, new ones are appended to it to keep the order.
+     */
+    public void write(Position position, Consumer<Position> callback) {
+        if (spool != null && spool.isActive()) {
+            spool(position);
+            callback.accept(position);
+        } else if (queue.offer(new Entry(position, callback))) {
+            if (flowSource != null) {
+                flowSource.update(queue.size());
+            }
+        } else {
+            if (spool != null) {
+                spool(position);
+            } else {
+                try {
+                    dataManager.addObject(position);
+                } catch (Exception error) {
+                    LOGGER.warn("Failed to store position", error);
+                }
+            }
+            callback.accept(position);
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchDelay);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Entry entry = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (entry == null) {
+                        break;
+                    }
+                    batch.add(entry);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Position writer error", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Entry> batch) {
+        long startTime = System.currentTimeMillis();
+
+        List<Position> positions = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            positions.add(entry.position);
+        }
+
+        try {
+            dataManager.addObjects(positions);
+        } catch (SQLException batchError) {
+            LOGGER.warn("Failed to store positions batch", batchError);
+            if (spool != null) {
+                positions.forEach(this::spool);
+            } else {
+                for (Position position : positions) {
+                    try {
+                        dataManager.addObject(position);
+                    } catch (Exception error) {
+                        LOGGER.warn("Failed to store position", error);
+                    }
+                }
+            }
+        }
+
+        lastBatchSize = batch.size();
+        lastFlushTime = System.currentTimeMillis() - startTime;
+        if (statisticsManager != null) {
+            statisticsManager.registerStorageBatch(lastBatchSize, lastFlushTime, queue.size());
+        }
+
+        for (Entry entry : batch) {
+            entry.callback.accept(entry.position);
+        }
+
+        if (flowSource != null) {
+            flowSource.update(queue.size());
+        }
+    }
+
+}
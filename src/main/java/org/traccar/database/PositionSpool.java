@@ -0,0 +1,378 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.Context;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Position;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append only journal for positions that could not be stored in the database. Positions are written to memory
+ * mapped segment files as length prefixed JSON records and replayed into the database in the original order by a
+ * background thread once it is available again. Each segment header keeps the replay offset, so replay continues
+ * from the same place after restart. Segments are removed when fully replayed. Records that can't be decoded
+ * are logged and skipped, so they don't block the rest of the spool.
+ */
+public class PositionSpool implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PositionSpool.class);
+
+    private static final int MAGIC = 0x54435331; // TCS1
+    private static final int HEADER_SIZE = 8;
+    private static final int READ_OFFSET_POSITION = 4;
+
+    private static final String PREFIX = "spool-";
+    private static final String EXTENSION = ".dat";
+
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(5);
+    private static final long IDLE_DELAY = TimeUnit.SECONDS.toMillis(1);
+
+    private final DataManager dataManager;
+    private final StatisticsManager statisticsManager;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader objectReader;
+
+    private final Path root;
+    private final int segmentSize;
+    private final long maxSegments;
+    private final int batchSize;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long nextSequence;
+    private int pendingCount;
+    private boolean dirty;
+
+    private volatile long replayedCount;
+
+    private static final class Segment {
+
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private int readOffset;
+        private int writeOffset;
+
+        private Segment(Path file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+    }
+
+    private static final class Batch {
+
+        private final Segment segment;
+        private final List<Position> positions = new ArrayList<>();
+        private int count;
+        private int endOffset;
+
+        private Batch(Segment segment) {
+            this.segment = segment;
+        }
+
+    }
+
+    public PositionSpool(
+            Config config, DataManager dataManager, StatisticsManager statisticsManager,
+            ObjectMapper objectMapper) throws IOException {
+        this.dataManager = dataManager;
+        this.statisticsManager = statisticsManager;
+        this.objectMapper = objectMapper;
+        objectReader = objectMapper.readerFor(Position.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        root = Paths.get(config.getString(Keys.DATABASE_SPOOL_PATH));
+        segmentSize = config.getInteger(Keys.DATABASE_SPOOL_SEGMENT_SIZE);
+        maxSegments = Math.max(1, config.getLong(Keys.DATABASE_SPOOL_MAX_SIZE) / segmentSize);
+        batchSize = config.getInteger(Keys.DATABASE_BATCH_SIZE);
+
+        Files.createDirectories(root);
+        open();
+
+        Thread thread = new Thread(this, "position-spool");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private Path getFile(long sequence) {
+        return root.resolve(String.format("%s%016d%s", PREFIX, sequence, EXTENSION));
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+                file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private void open() throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, PREFIX + "*" + EXTENSION)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(
+                            name.substring(PREFIX.length(), name.length() - EXTENSION.length())), file);
+                } catch (NumberFormatException e) {
+                    LOGGER.warn("Unexpected spool file {}", file);
+                }
+            }
+        }
+        for (var entry : files.entrySet()) {
+            nextSequence = entry.getKey() + 1;
+            int size = (int) Files.size(entry.getValue());
+            Segment segment = new Segment(entry.getValue(), map(entry.getValue(), size));
+            if (size < HEADER_SIZE || segment.buffer.getInt(0) != MAGIC) {
+                LOGGER.warn("Invalid spool file {}", entry.getValue());
+                continue;
+            }
+            segment.readOffset = segment.buffer.getInt(READ_OFFSET_POSITION);
+            segment.writeOffset = HEADER_SIZE;
+            while (segment.writeOffset + Integer.BYTES <= size) {
+                int length = segment.buffer.getInt(segment.writeOffset);
+                if (length <= 0 || segment.writeOffset + Integer.BYTES + length > size) {
+                    break;
+                }
+                if (segment.writeOffset >= segment.readOffset) {
+                    pendingCount += 1;
+                }
+                segment.writeOffset += Integer.BYTES + length;
+            }
+            segments.addLast(segment);
+        }
+        if (pendingCount > 0) {
+            LOGGER.info("Spool contains {} positions to replay", pendingCount);
+        }
+    }
+
+    private Segment createSegment() throws IOException {
+        Path file = getFile(nextSequence++);
+        Segment segment = new Segment(file, map(file, segmentSize));
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putInt(READ_OFFSET_POSITION, HEADER_SIZE);
+        segment.readOffset = HEADER_SIZE;
+        segment.writeOffset = HEADER_SIZE;
+        segments.addLast(segment);
+        return segment;
+    }
+
+    private void removeSegment(Segment segment) {
+        segments.remove(segment);
+        try {
+            Files.delete(segment.file);
+        } catch (IOException e) {
+            LOGGER.warn("Spool file removal error", e);
+        }
+    }
+
+    /**
+     * True if there are positions waiting for replay. New positions should go to the spool as well while it is not
+     * empty to keep the original order and to avoid waiting for an unavailable database.
+     */
+    public synchronized boolean isActive() {
+        return pendingCount > 0;
+    }
+
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    public synchronized long getSize() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.writeOffset - segment.readOffset;
+        }
+        return size;
+    }
+
+    public long getReplayedCount() {
+        return replayedCount;
+    }
+
+    public void write(Position position) throws IOException {
+        byte[] data = objectMapper.writeValueAsBytes(position);
+        int recordSize = Integer.BYTES + data.length;
+        if (HEADER_SIZE + recordSize > segmentSize) {
+            throw new IOException("Position is larger than spool segment");
+        }
+        int count;
+        synchronized (this) {
+            Segment segment = segments.peekLast();
+            if (segment == null || segment.writeOffset + recordSize > segmentSize) {
+                if (segments.size() >= maxSegments) {
+                    throw new IOException("Spool is full");
+                }
+                segment = createSegment();
+            }
+            ByteBuffer view = segment.buffer.duplicate();
+            view.position(segment.writeOffset + Integer.BYTES);
+            view.put(data);
+            segment.buffer.putInt(segment.writeOffset, data.length);
+            segment.writeOffset += recordSize;
+            pendingCount += 1;
+            dirty = true;
+            count = pendingCount;
+        }
+        if (statisticsManager != null) {
+            statisticsManager.registerSpoolWrite(count);
+        }
+    }
+
+    private synchronized Batch read(int limit) throws IOException {
+        Segment segment = segments.peekFirst();
+        while (segment != null && segment.readOffset >= segment.writeOffset && segment != segments.peekLast()) {
+            removeSegment(segment);
+            segment = segments.peekFirst();
+        }
+        if (segment == null || segment.readOffset >= segment.writeOffset) {
+            return null;
+        }
+        Batch batch = new Batch(segment);
+        ByteBuffer view = segment.buffer.duplicate();
+        view.position(segment.readOffset);
+        while (view.position() < segment.writeOffset && batch.positions.size() < limit) {
+            int offset = view.position();
+            byte[] data = new byte[view.getInt()];
+            view.get(data);
+            batch.count += 1;
+            try {
+                batch.positions.add(objectReader.readValue(data));
+            } catch (IOException e) {
+                LOGGER.warn("Skipping corrupted spool record at {} in {}", offset, segment.file, e);
+            }
+        }
+        batch.endOffset = view.position();
+        return batch;
+    }
+
+    private synchronized void commit(Batch batch) {
+        Segment segment = batch.segment;
+        segment.readOffset = batch.endOffset;
+        segment.buffer.putInt(READ_OFFSET_POSITION, segment.readOffset);
+        pendingCount -= batch.count;
+        dirty = true;
+        if (segment.readOffset >= segment.writeOffset && segment != segments.peekLast()) {
+            removeSegment(segment);
+        }
+    }
+
+    private synchronized void force() {
+        if (dirty) {
+            for (Segment segment : segments) {
+                segment.buffer.force();
+            }
+            dirty = false;
+        }
+    }
+
+    private static boolean isTransient(SQLException error) {
+        return error instanceof SQLTransientException || error instanceof SQLRecoverableException
+                || error instanceof SQLNonTransientConnectionException;
+    }
+
+    /**
+     * Store a batch of spooled positions. Returns false if the database is still unavailable.
+     */
+    private boolean replay(List<Position> positions) {
+        try {
+            dataManager.addObjects(positions);
+        } catch (SQLException batchError) {
+            if (isTransient(batchError)) {
+                return false;
+            }
+            LOGGER.warn("Failed to replay positions batch", batchError);
+            for (Position position : positions) {
+                try {
+                    dataManager.addObject(position);
+                } catch (SQLException error) {
+                    if (isTransient(error)) {
+                        return false;
+                    }
+                    LOGGER.warn("Dropping spooled position", error);
+                }
+            }
+        }
+        DeviceManager deviceManager = Context.getDeviceManager();
+        if (deviceManager != null) {
+            for (Position position : positions) {
+                try {
+                    deviceManager.updateLatestPosition(position);
+                } catch (SQLException error) {
+                    LOGGER.warn("Failed to update latest position", error);
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                force();
+                Batch batch = read(batchSize);
+                if (batch == null) {
+                    Thread.sleep(IDLE_DELAY);
+                } else if (batch.positions.isEmpty() || replay(batch.positions)) {
+                    commit(batch);
+                    replayedCount += batch.positions.size();
+                    if (statisticsManager != null) {
+                        statisticsManager.registerSpoolReplay(batch.positions.size());
+                    }
+                    if (!isActive()) {
+                        LOGGER.info("Spool replay completed, {} positions replayed in total", replayedCount);
+                    }
+                } else {
+                    Thread.sleep(RETRY_DELAY);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Position spool error", e);
+                try {
+                    Thread.sleep(RETRY_DELAY);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+}
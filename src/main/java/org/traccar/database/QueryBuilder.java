@@ -15,16 +15,9 @@
  */
 package org.traccar.database;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.traccar.Context;
 import org.traccar.model.Permission;
 
 import javax.sql.DataSource;
-import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -33,6 +26,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -40,12 +34,15 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class QueryBuilder {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(QueryBuilder.class);
+    private static final int[] EMPTY_INDEXES = new int[0];
+    private static final int PARSED_QUERIES_LIMIT = 1000;
+    private static final Map<String, ParsedQuery> PARSED_QUERIES = new ConcurrentHashMap<>();
 
-    private final Map<String, List<Integer>> indexMap = new HashMap<>();
+    private ParsedQuery parsedQuery;
     private Connection connection;
     private PreparedStatement statement;
     private final String query;
@@ -56,12 +53,12 @@ public final class QueryBuilder {
         this.returnGeneratedKeys = returnGeneratedKeys;
         if (query != null) {
             connection = dataSource.getConnection();
-            String parsedQuery = parse(query.trim(), indexMap);
+            parsedQuery = getParsedQuery(query);
             try {
                 if (returnGeneratedKeys) {
-                    statement = connection.prepareStatement(parsedQuery, Statement.RETURN_GENERATED_KEYS);
+                    statement = connection.prepareStatement(parsedQuery.getSql(), Statement.RETURN_GENERATED_KEYS);
                 } else {
-                    statement = connection.prepareStatement(parsedQuery);
+                    statement = connection.prepareStatement(parsedQuery.getSql());
                 }
             } catch (SQLException error) {
                 connection.close();
@@ -70,7 +67,47 @@ public final class QueryBuilder {
         }
     }
 
-    private static String parse(String query, Map<String, List<Integer>> paramMap) {
+    /**
+     * Parsed form of a query with named parameters replaced by positional ones.
+     */
+    static final class ParsedQuery {
+
+        private final String sql;
+        private final Map<String, int[]> indexMap;
+
+        private ParsedQuery(String sql, Map<String, int[]> indexMap) {
+            this.sql = sql;
+            this.indexMap = indexMap;
+        }
+
+        String getSql() {
+            return sql;
+        }
+
+        int[] getIndexes(String name) {
+            return indexMap.getOrDefault(name, EMPTY_INDEXES);
+        }
+
+    }
+
+    /**
+     * Parsed query for the given SQL string. Set of queries is small and fixed, so templates are parsed once and
+     * shared between all builders.
+     */
+    static ParsedQuery getParsedQuery(String query) {
+        ParsedQuery parsedQuery = PARSED_QUERIES.get(query);
+        if (parsedQuery == null) {
+            parsedQuery = parse(query.trim());
+            if (PARSED_QUERIES.size() < PARSED_QUERIES_LIMIT) {
+                PARSED_QUERIES.putIfAbsent(query, parsedQuery);
+            }
+        }
+        return parsedQuery;
+    }
+
+    static ParsedQuery parse(String query) {
+
+        Map<String, List<Integer>> paramMap = new HashMap<>();
 
         int length = query.length();
         StringBuilder parsedQuery = new StringBuilder(length);
@@ -113,7 +150,7 @@ public final class QueryBuilder {
                     name = name.toLowerCase();
 
                     // Add to list
-                    List<Integer> indexList = paramMap.computeIfAbsent(name, k -> new LinkedList<>());
+                    List<Integer> indexList = paramMap.computeIfAbsent(name, k -> new ArrayList<>());
                     indexList.add(index);
 
                     index++;
@@ -123,7 +160,11 @@ public final class QueryBuilder {
             parsedQuery.append(c);
         }
 
-        return parsedQuery.toString();
+        Map<String, int[]> indexMap = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : paramMap.entrySet()) {
+            indexMap.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        return new ParsedQuery(parsedQuery.toString(), indexMap);
     }
 
     public static QueryBuilder create(DataSource dataSource, String query) throws SQLException {
@@ -135,13 +176,15 @@ public final class QueryBuilder {
         return new QueryBuilder(dataSource, query, returnGeneratedKeys);
     }
 
-    private List<Integer> indexes(String name) {
-        name = name.toLowerCase();
-        List<Integer> result = indexMap.get(name);
-        if (result == null) {
-            result = new LinkedList<>();
+    public boolean hasParameter(String name) {
+        return indexes(name).length > 0;
+    }
+
+    private int[] indexes(String name) {
+        if (parsedQuery == null) {
+            return EMPTY_INDEXES;
         }
-        return result;
+        return parsedQuery.getIndexes(name.toLowerCase());
     }
 
     public QueryBuilder setBoolean(String name, boolean value) throws SQLException {
@@ -256,41 +299,11 @@ public final class QueryBuilder {
     }
 
     public QueryBuilder setObject(Object object) throws SQLException {
-
-        Method[] methods = object.getClass().getMethods();
-
-        for (Method method : methods) {
-            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0
-                    && !method.isAnnotationPresent(QueryIgnore.class)) {
-                String name = method.getName().substring(3);
-                try {
-                    if (method.getReturnType().equals(boolean.class)) {
-                        setBoolean(name, (Boolean) method.invoke(object));
-                    } else if (method.getReturnType().equals(int.class)) {
-                        setInteger(name, (Integer) method.invoke(object));
-                    } else if (method.getReturnType().equals(long.class)) {
-                        setLong(name, (Long) method.invoke(object), name.endsWith("Id"));
-                    } else if (method.getReturnType().equals(double.class)) {
-                        setDouble(name, (Double) method.invoke(object));
-                    } else if (method.getReturnType().equals(String.class)) {
-                        setString(name, (String) method.invoke(object));
-                    } else if (method.getReturnType().equals(Date.class)) {
-                        setDate(name, (Date) method.invoke(object));
-                    } else if (method.getReturnType().equals(byte[].class)) {
-                        setBlob(name, (byte[]) method.invoke(object));
-                    } else {
-                        setString(name, Context.getObjectMapper().writeValueAsString(method.invoke(object)));
-                    }
-                } catch (IllegalAccessException | InvocationTargetException | JsonProcessingException error) {
-                    LOGGER.warn("Get property error", error);
-                }
-            }
-        }
-
+        ModelBinder.of(object.getClass()).bind(this, object);
         return this;
     }
 
-    private interface ResultSetProcessor<T> {
+    interface ResultSetProcessor<T> {
         void process(T object, ResultSet resultSet) throws SQLException;
     }
 
@@ -303,81 +316,18 @@ public final class QueryBuilder {
         }
     }
 
-    private <T> void addProcessors(
-            List<ResultSetProcessor<T>> processors,
-            final Class<?> parameterType, final Method method, final String name) {
+    private <T> List<ResultSetProcessor<T>> createProcessors(
+            Class<T> clazz, ResultSetMetaData resultMetaData) throws SQLException {
+        return ModelBinder.of(clazz).createProcessors(resultMetaData);
+    }
 
-        if (parameterType.equals(boolean.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getBoolean(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(int.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getInt(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(long.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getLong(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(double.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getDouble(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(String.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getString(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(Date.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    Timestamp timestamp = resultSet.getTimestamp(name);
-                    if (timestamp != null) {
-                        method.invoke(object, new Date(timestamp.getTime()));
-                    }
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(byte[].class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getBytes(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else {
-            processors.add((object, resultSet) -> {
-                String value = resultSet.getString(name);
-                if (value != null && !value.isEmpty()) {
-                    try {
-                        method.invoke(object, Context.getObjectMapper().readValue(value, parameterType));
-                    } catch (InvocationTargetException | IllegalAccessException | IOException error) {
-                        LOGGER.warn("Set property error", error);
-                    }
-                }
-            });
+    static <T> T createObject(
+            Class<T> clazz, List<ResultSetProcessor<T>> processors, ResultSet resultSet) throws SQLException {
+        T object = ModelBinder.of(clazz).newInstance();
+        for (ResultSetProcessor<T> processor : processors) {
+            processor.process(object, resultSet);
         }
+        return object;
     }
 
     public <T> Collection<T> executeQuery(Class<T> clazz) throws SQLException {
@@ -389,44 +339,10 @@ public final class QueryBuilder {
 
                 try (ResultSet resultSet = statement.executeQuery()) {
 
-                    ResultSetMetaData resultMetaData = resultSet.getMetaData();
-
-                    List<ResultSetProcessor<T>> processors = new LinkedList<>();
-
-                    Method[] methods = clazz.getMethods();
-
-                    for (final Method method : methods) {
-                        if (method.getName().startsWith("set") && method.getParameterTypes().length == 1
-                                && !method.isAnnotationPresent(QueryIgnore.class)) {
-
-                            final String name = method.getName().substring(3);
-
-                            // Check if column exists
-                            boolean column = false;
-                            for (int i = 1; i <= resultMetaData.getColumnCount(); i++) {
-                                if (name.equalsIgnoreCase(resultMetaData.getColumnLabel(i))) {
-                                    column = true;
-                                    break;
-                                }
-                            }
-                            if (!column) {
-                                continue;
-                            }
-
-                            addProcessors(processors, method.getParameterTypes()[0], method, name);
-                        }
-                    }
+                    List<ResultSetProcessor<T>> processors = createProcessors(clazz, resultSet.getMetaData());
 
                     while (resultSet.next()) {
-                        try {
-                            T object = clazz.getDeclaredConstructor().newInstance();
-                            for (ResultSetProcessor<T> processor : processors) {
-                                processor.process(object, resultSet);
-                            }
-                            result.add(object);
-                        } catch (ReflectiveOperationException e) {
-                            throw new IllegalArgumentException();
-                        }
+                        result.add(createObject(clazz, processors, resultSet));
                     }
                 }
 
@@ -439,6 +355,30 @@ public final class QueryBuilder {
         return result;
     }
 
+    /**
+     * Execute query and return forward-only cursor over the results. Statement and connection stay open until the
+     * cursor is closed, so callers have to use it in try-with-resources block.
+     */
+    public <T> QueryCursor<T> executeQueryCursor(Class<T> clazz, int fetchSize) throws SQLException {
+
+        if (query == null) {
+            return new QueryCursor<>(null, null, null, clazz, null);
+        }
+
+        try {
+            // PostgreSQL only uses server side cursor outside of auto-commit mode
+            connection.setAutoCommit(false);
+            statement.setFetchSize(fetchSize);
+            ResultSet resultSet = statement.executeQuery();
+            return new QueryCursor<>(
+                    connection, statement, resultSet, clazz, createProcessors(clazz, resultSet.getMetaData()));
+        } catch (SQLException error) {
+            statement.close();
+            connection.close();
+            throw error;
+        }
+    }
+
     public long executeUpdate() throws SQLException {
 
         if (query != null) {
@@ -458,6 +398,51 @@ public final class QueryBuilder {
         return 0;
     }
 
+    public QueryBuilder addBatch() throws SQLException {
+        if (query != null) {
+            try {
+                statement.addBatch();
+            } catch (SQLException error) {
+                statement.close();
+                connection.close();
+                throw error;
+            }
+        }
+        return this;
+    }
+
+    public long[] executeBatch() throws SQLException {
+        List<Long> result = new ArrayList<>();
+        if (query != null) {
+            try {
+                connection.setAutoCommit(false);
+                try {
+                    int count = statement.executeBatch().length;
+                    if (returnGeneratedKeys) {
+                        try (ResultSet resultSet = statement.getGeneratedKeys()) {
+                            while (resultSet.next()) {
+                                result.add(resultSet.getLong(1));
+                            }
+                        }
+                        if (result.size() != count) {
+                            throw new SQLException("Generated keys are not returned for batch");
+                        }
+                    }
+                    connection.commit();
+                } catch (SQLException error) {
+                    connection.rollback();
+                    throw error;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } finally {
+                statement.close();
+                connection.close();
+            }
+        }
+        return result.stream().mapToLong(Long::longValue).toArray();
+    }
+
     public Collection<Permission> executePermissionsQuery() throws SQLException, ClassNotFoundException {
         List<Permission> result = new LinkedList<>();
         if (query != null) {
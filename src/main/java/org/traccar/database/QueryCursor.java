@@ -0,0 +1,249 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Forward-only view of query results. Objects are mapped from the result set one by one while iterating, so only a
+ * single fetch block is kept in memory. Can be iterated only once.
+ */
+public class QueryCursor<T> implements Iterable<T>, AutoCloseable {
+
+    private final Connection connection;
+    private final Statement statement;
+    private final ResultSet resultSet;
+    private final Class<T> clazz;
+    private final List<QueryBuilder.ResultSetProcessor<T>> processors;
+
+    private boolean iterated;
+
+    interface CursorFactory<T> {
+        QueryCursor<T> open() throws SQLException;
+    }
+
+    QueryCursor(
+            Connection connection, Statement statement, ResultSet resultSet,
+            Class<T> clazz, List<QueryBuilder.ResultSetProcessor<T>> processors) {
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.clazz = clazz;
+        this.processors = processors;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("Cursor can only be iterated once");
+        }
+        iterated = true;
+        return new Iterator<>() {
+
+            private T next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && resultSet != null) {
+                    try {
+                        if (resultSet.next()) {
+                            next = QueryBuilder.createObject(clazz, processors, resultSet);
+                        }
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T result = next;
+                next = null;
+                return result;
+            }
+
+        };
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (connection != null) {
+            try {
+                resultSet.close();
+                statement.close();
+                connection.setAutoCommit(true);
+            } finally {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Expose objects that are not read from the database through the cursor interface.
+     */
+    static <T> QueryCursor<T> of(Iterable<T> iterable) {
+        return new QueryCursor<>(null, null, null, null, null) {
+            @Override
+            public Iterator<T> iterator() {
+                return iterable.iterator();
+            }
+        };
+    }
+
+    /**
+     * Combine results of several queries. Each query is executed only after the previous cursor is exhausted and
+     * closed, so only one connection is used at a time.
+     */
+    static <T> QueryCursor<T> concat(List<CursorFactory<T>> factories) {
+        return new ChainedCursor<>(factories);
+    }
+
+    /**
+     * Merge two cursors that are both sorted by the comparator. Equal objects are taken from the first cursor first.
+     */
+    static <T> QueryCursor<T> merge(QueryCursor<T> first, QueryCursor<T> second, Comparator<T> comparator) {
+        return new MergedCursor<>(first, second, comparator);
+    }
+
+    private static final class MergedCursor<T> extends QueryCursor<T> {
+
+        private final QueryCursor<T> first;
+        private final QueryCursor<T> second;
+        private final Comparator<T> comparator;
+
+        private MergedCursor(QueryCursor<T> first, QueryCursor<T> second, Comparator<T> comparator) {
+            super(null, null, null, null, null);
+            this.first = first;
+            this.second = second;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            Iterator<T> firstIterator = first.iterator();
+            Iterator<T> secondIterator = second.iterator();
+            return new Iterator<>() {
+
+                private T firstNext;
+                private T secondNext;
+
+                @Override
+                public boolean hasNext() {
+                    if (firstNext == null && firstIterator.hasNext()) {
+                        firstNext = firstIterator.next();
+                    }
+                    if (secondNext == null && secondIterator.hasNext()) {
+                        secondNext = secondIterator.next();
+                    }
+                    return firstNext != null || secondNext != null;
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    T result;
+                    if (secondNext == null || firstNext != null && comparator.compare(firstNext, secondNext) <= 0) {
+                        result = firstNext;
+                        firstNext = null;
+                    } else {
+                        result = secondNext;
+                        secondNext = null;
+                    }
+                    return result;
+                }
+
+            };
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                first.close();
+            } finally {
+                second.close();
+            }
+        }
+
+    }
+
+    private static final class ChainedCursor<T> extends QueryCursor<T> {
+
+        private final Iterator<CursorFactory<T>> factories;
+        private QueryCursor<T> current;
+
+        private ChainedCursor(List<CursorFactory<T>> factories) {
+            super(null, null, null, null, null);
+            this.factories = factories.iterator();
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<>() {
+
+                private Iterator<T> iterator = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    try {
+                        while (!iterator.hasNext() && factories.hasNext()) {
+                            if (current != null) {
+                                current.close();
+                            }
+                            current = factories.next().open();
+                            iterator = current.iterator();
+                        }
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return iterator.next();
+                }
+
+            };
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+
+    }
+
+}
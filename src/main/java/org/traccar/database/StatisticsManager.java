@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -32,34 +32,82 @@ import java.sql.SQLException;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 
+/**
+ * Usage and performance counters aggregated per day. Counters are striped {@link LongAdder} accumulators, so
+ * registering an event doesn't take a lock. At the end of each day all counters of the finished period are stored as
+ * {@link Statistics} and a new period starts. The finished period is stored after a short grace period, so updates
+ * from threads that picked it up right before the switch are still counted. Registered gauges (queue sizes) and the
+ * message rate are sampled every second by a background thread started with {@link #start()}, which also handles the
+ * daily switch, and their maximum values are recorded.
+ */
 public class StatisticsManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StatisticsManager.class);
 
     private static final int SPLIT_MODE = Calendar.DAY_OF_MONTH;
 
+    private static final long SAMPLE_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+    private static final long SPLIT_GRACE = TimeUnit.SECONDS.toMillis(1);
+
     private final Config config;
     private final DataManager dataManager;
     private final Client client;
     private final ObjectMapper objectMapper;
 
-    private final AtomicInteger lastUpdate = new AtomicInteger(Calendar.getInstance().get(SPLIT_MODE));
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    private volatile Period period = new Period();
+    private volatile long nextSplit = getNextSplit(System.currentTimeMillis());
+    private long lastReceived;
+
+    private Thread thread;
+
+    private static final class Period {
 
-    private final Set<Long> users = new HashSet<>();
-    private final Map<Long, String> deviceProtocols = new HashMap<>();
+        private final long startTime = System.currentTimeMillis();
 
-    private int requests;
-    private int messagesReceived;
-    private int messagesStored;
-    private int mailSent;
-    private int smsSent;
-    private int geocoderRequests;
-    private int geolocationRequests;
+        private final Set<Long> users = ConcurrentHashMap.newKeySet();
+        private final Map<Long, String> deviceProtocols = new ConcurrentHashMap<>();
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder messagesReceived = new LongAdder();
+        private final LongAdder messagesStored = new LongAdder();
+        private final LongAdder mailSent = new LongAdder();
+        private final LongAdder smsSent = new LongAdder();
+        private final LongAdder geocoderRequests = new LongAdder();
+        private final LongAdder geolocationRequests = new LongAdder();
+        private final LongAdder messageLatency = new LongAdder();
+        private final LongAccumulator messageLatencyMax = new LongAccumulator(Long::max, 0);
+        private final LongAccumulator messageRateMax = new LongAccumulator(Long::max, 0);
+        private final LongAdder storageBatches = new LongAdder();
+        private final LongAdder storageBatchPositions = new LongAdder();
+        private final LongAdder storageBatchTime = new LongAdder();
+        private final LongAccumulator storageQueueMax = new LongAccumulator(Long::max, 0);
+        private final LongAdder spoolWritten = new LongAdder();
+        private final LongAdder spoolReplayed = new LongAdder();
+        private final LongAccumulator spoolPendingMax = new LongAccumulator(Long::max, 0);
+        private final LongAdder processingTasks = new LongAdder();
+        private final LongAdder processingQueueTime = new LongAdder();
+        private final LongAccumulator processingQueueTimeMax = new LongAccumulator(Long::max, 0);
+        private final LongAdder processingRunTime = new LongAdder();
+        private final LongAdder backpressurePauses = new LongAdder();
+        private final LongAdder backpressureTime = new LongAdder();
+        private final LongAccumulator backpressureChannelsMax = new LongAccumulator(Long::max, 0);
+        private final LongAdder detectionHits = new LongAdder();
+        private final LongAdder detectionMisses = new LongAdder();
+        private final LongAdder geofenceChecks = new LongAdder();
+        private final LongAdder geofenceSkipped = new LongAdder();
+        private final Map<String, LongAccumulator> gaugeMax = new ConcurrentHashMap<>();
+
+    }
 
     @Inject
     public StatisticsManager(Config config, DataManager dataManager, Client client, ObjectMapper objectMapper) {
@@ -69,115 +117,309 @@ public class StatisticsManager {
         this.objectMapper = objectMapper;
     }
 
-    private void checkSplit() {
-        int currentUpdate = Calendar.getInstance().get(SPLIT_MODE);
-        if (lastUpdate.getAndSet(currentUpdate) != currentUpdate) {
-            Statistics statistics = new Statistics();
-
-            synchronized (this) {
-                statistics.setCaptureTime(new Date());
-                statistics.setActiveUsers(users.size());
-                statistics.setActiveDevices(deviceProtocols.size());
-                statistics.setRequests(requests);
-                statistics.setMessagesReceived(messagesReceived);
-                statistics.setMessagesStored(messagesStored);
-                statistics.setMailSent(mailSent);
-                statistics.setSmsSent(smsSent);
-                statistics.setGeocoderRequests(geocoderRequests);
-                statistics.setGeolocationRequests(geolocationRequests);
-                if (!deviceProtocols.isEmpty()) {
-                    Map<String, Integer> protocols = new HashMap<>();
-                    for (String protocol : deviceProtocols.values()) {
-                        protocols.compute(protocol, (key, count) -> count != null ? count + 1 : 1);
-                    }
-                    statistics.setProtocols(protocols);
+    public synchronized void start() {
+        if (thread == null) {
+            thread = new Thread(this::sample, "statistics");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    private static long getNextSplit(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(SPLIT_MODE, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    private void sample() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(SAMPLE_INTERVAL);
+                checkSplit();
+                Period current = period;
+                long received = current.messagesReceived.sum();
+                current.messageRateMax.accumulate(Math.max(0, received - lastReceived));
+                lastReceived = received;
+                for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+                    current.gaugeMax.computeIfAbsent(entry.getKey(), key -> new LongAccumulator(Long::max, 0))
+                            .accumulate(entry.getValue().getAsLong());
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Statistics sampling error", e);
+            }
+        }
+    }
 
-                users.clear();
-                deviceProtocols.clear();
-                requests = 0;
-                messagesReceived = 0;
-                messagesStored = 0;
-                mailSent = 0;
-                smsSent = 0;
-                geocoderRequests = 0;
-                geolocationRequests = 0;
+    private void checkSplit() {
+        if (System.currentTimeMillis() >= nextSplit) {
+            split();
+        }
+    }
+
+    private static void setAverage(Statistics statistics, String key, long total, long count, double scale) {
+        if (count > 0) {
+            statistics.set(key, total / scale / count);
+        }
+    }
+
+    private void split() {
+        Period finished;
+        synchronized (this) {
+            long currentTime = System.currentTimeMillis();
+            if (currentTime < nextSplit) {
+                return;
             }
+            nextSplit = getNextSplit(currentTime);
+            finished = period;
+            period = new Period();
+            lastReceived = 0;
+        }
 
-            try {
-                dataManager.addObject(statistics);
-            } catch (SQLException e) {
-                LOGGER.warn("Error saving statistics", e);
+        try {
+            Thread.sleep(SPLIT_GRACE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Statistics statistics = new Statistics();
+        statistics.setCaptureTime(new Date());
+        statistics.setActiveUsers(finished.users.size());
+        statistics.setActiveDevices(finished.deviceProtocols.size());
+        statistics.setRequests(finished.requests.intValue());
+        statistics.setMessagesReceived(finished.messagesReceived.intValue());
+        statistics.setMessagesStored(finished.messagesStored.intValue());
+        statistics.setMailSent(finished.mailSent.intValue());
+        statistics.setSmsSent(finished.smsSent.intValue());
+        statistics.setGeocoderRequests(finished.geocoderRequests.intValue());
+        statistics.setGeolocationRequests(finished.geolocationRequests.intValue());
+
+        long duration = System.currentTimeMillis() - finished.startTime;
+        long received = finished.messagesReceived.sum();
+        if (received > 0 && duration > 0) {
+            statistics.set(Statistics.KEY_MESSAGE_RATE, received * 1000.0 / duration);
+            statistics.set(Statistics.KEY_MESSAGE_RATE_MAX, finished.messageRateMax.get());
+        }
+        long stored = finished.messagesStored.sum();
+        if (stored > 0) {
+            setAverage(statistics, Statistics.KEY_MESSAGE_LATENCY, finished.messageLatency.sum(), stored, 1);
+            statistics.set(Statistics.KEY_MESSAGE_LATENCY_MAX, finished.messageLatencyMax.get());
+        }
+        long storageBatches = finished.storageBatches.sum();
+        if (storageBatches > 0) {
+            statistics.set(Statistics.KEY_STORAGE_BATCHES, storageBatches);
+            setAverage(statistics, Statistics.KEY_STORAGE_BATCH_SIZE,
+                    finished.storageBatchPositions.sum(), storageBatches, 1);
+            setAverage(statistics, Statistics.KEY_STORAGE_FLUSH_TIME,
+                    finished.storageBatchTime.sum(), storageBatches, 1);
+            statistics.set(Statistics.KEY_STORAGE_QUEUE_MAX, finished.storageQueueMax.get());
+        }
+        long spoolWritten = finished.spoolWritten.sum();
+        long spoolReplayed = finished.spoolReplayed.sum();
+        if (spoolWritten > 0 || spoolReplayed > 0) {
+            statistics.set(Statistics.KEY_SPOOL_WRITTEN, spoolWritten);
+            statistics.set(Statistics.KEY_SPOOL_REPLAYED, spoolReplayed);
+            statistics.set(Statistics.KEY_SPOOL_PENDING_MAX, finished.spoolPendingMax.get());
+        }
+        long processingTasks = finished.processingTasks.sum();
+        if (processingTasks > 0) {
+            statistics.set(Statistics.KEY_PROCESSING_TASKS, processingTasks);
+            setAverage(statistics, Statistics.KEY_PROCESSING_QUEUE_TIME,
+                    finished.processingQueueTime.sum(), processingTasks, 1e6);
+            statistics.set(Statistics.KEY_PROCESSING_QUEUE_TIME_MAX, finished.processingQueueTimeMax.get() / 1e6);
+            setAverage(statistics, Statistics.KEY_PROCESSING_RUN_TIME,
+                    finished.processingRunTime.sum(), processingTasks, 1e6);
+        }
+        long backpressurePauses = finished.backpressurePauses.sum();
+        if (backpressurePauses > 0) {
+            statistics.set(Statistics.KEY_BACKPRESSURE_PAUSES, backpressurePauses);
+            statistics.set(Statistics.KEY_BACKPRESSURE_TIME, finished.backpressureTime.sum());
+            statistics.set(Statistics.KEY_BACKPRESSURE_CHANNELS_MAX, finished.backpressureChannelsMax.get());
+        }
+        long detectionHits = finished.detectionHits.sum();
+        long detectionMisses = finished.detectionMisses.sum();
+        if (detectionHits > 0 || detectionMisses > 0) {
+            statistics.set(Statistics.KEY_DETECTION_HITS, detectionHits);
+            statistics.set(Statistics.KEY_DETECTION_MISSES, detectionMisses);
+        }
+        long geofenceChecks = finished.geofenceChecks.sum();
+        long geofenceSkipped = finished.geofenceSkipped.sum();
+        if (geofenceChecks > 0 || geofenceSkipped > 0) {
+            statistics.set(Statistics.KEY_GEOFENCE_CHECKS, geofenceChecks);
+            statistics.set(Statistics.KEY_GEOFENCE_SKIPPED, geofenceSkipped);
+            setAverage(statistics, Statistics.KEY_GEOFENCE_SKIP_RATIO,
+                    geofenceSkipped, geofenceChecks + geofenceSkipped, 1);
+        }
+        for (Map.Entry<String, LongAccumulator> entry : finished.gaugeMax.entrySet()) {
+            if (entry.getValue().get() > 0) {
+                statistics.set(entry.getKey(), entry.getValue().get());
+            }
+        }
+        if (!finished.deviceProtocols.isEmpty()) {
+            Map<String, Integer> protocols = new HashMap<>();
+            for (String protocol : finished.deviceProtocols.values()) {
+                protocols.compute(protocol, (key, count) -> count != null ? count + 1 : 1);
             }
+            statistics.setProtocols(protocols);
+        }
 
-            String url = config.getString(Keys.SERVER_STATISTICS);
-            if (url != null) {
-                String time = DateUtil.formatDate(statistics.getCaptureTime());
-
-                Form form = new Form();
-                form.param("version", getClass().getPackage().getImplementationVersion());
-                form.param("captureTime", time);
-                form.param("activeUsers", String.valueOf(statistics.getActiveUsers()));
-                form.param("activeDevices", String.valueOf(statistics.getActiveDevices()));
-                form.param("requests", String.valueOf(statistics.getRequests()));
-                form.param("messagesReceived", String.valueOf(statistics.getMessagesReceived()));
-                form.param("messagesStored", String.valueOf(statistics.getMessagesStored()));
-                form.param("mailSent", String.valueOf(statistics.getMailSent()));
-                form.param("smsSent", String.valueOf(statistics.getSmsSent()));
-                form.param("geocoderRequests", String.valueOf(statistics.getGeocoderRequests()));
-                form.param("geolocationRequests", String.valueOf(statistics.getGeolocationRequests()));
-                if (statistics.getProtocols() != null) {
-                    try {
-                        form.param("protocols", objectMapper.writeValueAsString(statistics.getProtocols()));
-                    } catch (JsonProcessingException e) {
-                        LOGGER.warn("Failed to serialize protocols", e);
-                    }
-                }
+        try {
+            dataManager.addObject(statistics);
+        } catch (SQLException e) {
+            LOGGER.warn("Error saving statistics", e);
+        }
 
-                client.target(url).request().async().post(Entity.form(form));
+        String url = config.getString(Keys.SERVER_STATISTICS);
+        if (url != null) {
+            String time = DateUtil.formatDate(statistics.getCaptureTime());
+
+            Form form = new Form();
+            form.param("version", getClass().getPackage().getImplementationVersion());
+            form.param("captureTime", time);
+            form.param("activeUsers", String.valueOf(statistics.getActiveUsers()));
+            form.param("activeDevices", String.valueOf(statistics.getActiveDevices()));
+            form.param("requests", String.valueOf(statistics.getRequests()));
+            form.param("messagesReceived", String.valueOf(statistics.getMessagesReceived()));
+            form.param("messagesStored", String.valueOf(statistics.getMessagesStored()));
+            form.param("mailSent", String.valueOf(statistics.getMailSent()));
+            form.param("smsSent", String.valueOf(statistics.getSmsSent()));
+            form.param("geocoderRequests", String.valueOf(statistics.getGeocoderRequests()));
+            form.param("geolocationRequests", String.valueOf(statistics.getGeolocationRequests()));
+            if (statistics.getProtocols() != null) {
+                try {
+                    form.param("protocols", objectMapper.writeValueAsString(statistics.getProtocols()));
+                } catch (JsonProcessingException e) {
+                    LOGGER.warn("Failed to serialize protocols", e);
+                }
             }
+
+            client.target(url).request().async().post(Entity.form(form));
         }
     }
 
-    public synchronized void registerRequest(long userId) {
-        checkSplit();
-        requests += 1;
+    /**
+     * Register a gauge sampled every second. Maximum value for the day is stored under the given statistics key.
+     */
+    public void registerGauge(String key, LongSupplier supplier) {
+        gauges.put(key, supplier);
+    }
+
+    public void registerRequest(long userId) {
+        Period current = period;
+        current.requests.increment();
         if (userId != 0) {
-            users.add(userId);
+            current.users.add(userId);
         }
     }
 
-    public synchronized void registerMessageReceived() {
-        checkSplit();
-        messagesReceived += 1;
+    public void registerMessageReceived() {
+        period.messagesReceived.increment();
     }
 
-    public synchronized void registerMessageStored(long deviceId, String protocol) {
-        checkSplit();
-        messagesStored += 1;
-        if (deviceId != 0) {
-            deviceProtocols.put(deviceId, protocol);
+    /**
+     * @param latency time since the message was received in milliseconds
+     */
+    public void registerMessageStored(long deviceId, String protocol, long latency) {
+        Period current = period;
+        current.messagesStored.increment();
+        current.messageLatency.add(latency);
+        current.messageLatencyMax.accumulate(latency);
+        if (deviceId != 0 && protocol != null && !protocol.equals(current.deviceProtocols.get(deviceId))) {
+            current.deviceProtocols.put(deviceId, protocol);
         }
     }
 
-    public synchronized void registerMail() {
-        checkSplit();
-        mailSent += 1;
+    public void registerMail() {
+        period.mailSent.increment();
+    }
+
+    public void registerSms() {
+        period.smsSent.increment();
+    }
+
+    public void registerGeocoderRequest() {
+        period.geocoderRequests.increment();
+    }
+
+    public void registerGeolocationRequest() {
+        period.geolocationRequests.increment();
+    }
+
+    public void registerStorageBatch(int size, long time, int queueSize) {
+        Period current = period;
+        current.storageBatches.increment();
+        current.storageBatchPositions.add(size);
+        current.storageBatchTime.add(time);
+        current.storageQueueMax.accumulate(queueSize);
+    }
+
+    public void registerSpoolWrite(int pendingCount) {
+        Period current = period;
+        current.spoolWritten.increment();
+        current.spoolPendingMax.accumulate(pendingCount);
     }
 
-    public synchronized void registerSms() {
-        checkSplit();
-        smsSent += 1;
+    public void registerSpoolReplay(int count) {
+        period.spoolReplayed.add(count);
     }
 
-    public synchronized void registerGeocoderRequest() {
-        checkSplit();
-        geocoderRequests += 1;
+    /**
+     * Register a task completed by the processing executor.
+     *
+     * @param queueTime time waiting in the queue in nanoseconds
+     * @param runTime processing time in nanoseconds
+     */
+    public void registerProcessing(long queueTime, long runTime) {
+        Period current = period;
+        current.processingTasks.increment();
+        current.processingQueueTime.add(queueTime);
+        current.processingQueueTimeMax.accumulate(queueTime);
+        current.processingRunTime.add(runTime);
     }
 
-    public synchronized void registerGeolocationRequest() {
-        checkSplit();
-        geolocationRequests += 1;
+    public void registerBackpressurePause(int channels) {
+        Period current = period;
+        current.backpressurePauses.increment();
+        current.backpressureChannelsMax.accumulate(channels);
+    }
+
+    /**
+     * @param duration time reading was paused in milliseconds
+     */
+    public void registerBackpressureResume(long duration) {
+        period.backpressureTime.add(duration);
+    }
+
+    public void registerDetection(boolean detected) {
+        if (detected) {
+            period.detectionHits.increment();
+        } else {
+            period.detectionMisses.increment();
+        }
+    }
+
+    /**
+     * @param skipped containment reused from the previous evaluation instead of a full check
+     */
+    public void registerGeofenceCheck(boolean skipped) {
+        if (skipped) {
+            period.geofenceSkipped.increment();
+        } else {
+            period.geofenceChecks.increment();
+        }
     }
 
 }
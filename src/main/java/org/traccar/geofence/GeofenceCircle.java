@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.traccar.geofence;
 import java.text.DecimalFormat;
 import java.text.ParseException;
 
+import org.locationtech.jts.geom.Envelope;
 import org.traccar.helper.DistanceCalculator;
 
 public class GeofenceCircle extends GeofenceGeometry {
@@ -48,6 +49,16 @@ public class GeofenceCircle extends GeofenceGeometry {
         return distanceFromCenter(latitude, longitude) <= radius;
     }
 
+    @Override
+    protected double calculateBoundaryDistance(double latitude, double longitude) {
+        return Math.abs(distanceFromCenter(latitude, longitude) - radius);
+    }
+
+    @Override
+    protected Envelope calculateEnvelope() {
+        return createEnvelope(centerLatitude, centerLongitude, centerLatitude, centerLongitude, radius);
+    }
+
     @Override
     public double calculateArea() {
         return Math.PI * radius * radius;
@@ -99,5 +110,6 @@ public class GeofenceCircle extends GeofenceGeometry {
         } catch (NumberFormatException e) {
             throw new ParseException(commaTokens[1] + " is not a double", 0);
         }
+        resetEnvelope();
     }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,12 +15,92 @@
  */
 package org.traccar.geofence;
 
+import org.locationtech.jts.geom.Envelope;
+
 import java.text.ParseException;
 
 public abstract class GeofenceGeometry {
 
+    private static final double EARTH_RADIUS = 6378137;
+    private static final double DISTANCE_MARGIN = 1.1;
+
+    private Envelope envelope;
+
     public abstract boolean containsPoint(double latitude, double longitude);
 
+    /**
+     * Bounding box with longitude as x and latitude as y. It can be larger than the geometry, but it always includes
+     * every point accepted by {@link #containsPoint}.
+     */
+    public Envelope getEnvelope() {
+        if (envelope == null) {
+            envelope = calculateEnvelope();
+        }
+        return envelope;
+    }
+
+    protected abstract Envelope calculateEnvelope();
+
+    /**
+     * Lower bound of the distance in meters from the point to the geometry boundary. Moving the point by less than
+     * that distance does not change {@link #containsPoint} result.
+     */
+    protected abstract double calculateBoundaryDistance(double latitude, double longitude);
+
+    /**
+     * Returns boundary distance limited by maxDistance. Exact calculation is skipped if the envelope is further away.
+     */
+    public double getBoundaryDistance(double latitude, double longitude, double maxDistance) {
+        if (!getEnvelope().intersects(createEnvelope(latitude, longitude, latitude, longitude, maxDistance))) {
+            return maxDistance;
+        }
+        return Math.min(calculateBoundaryDistance(latitude, longitude), maxDistance);
+    }
+
+    /**
+     * Converts planar distance in degrees around the point into a distance in meters that can't move the point
+     * further than that in latitude and longitude coordinates.
+     */
+    protected static double degreesToDistance(double latitude, double degrees) {
+        double angle = Math.min(Math.toRadians(degrees), 0.1);
+        double maxLatitude = Math.abs(latitude) + Math.toDegrees(angle);
+        if (maxLatitude >= 90) {
+            return 0;
+        }
+        return angle * Math.cos(Math.toRadians(maxLatitude)) / 2 * EARTH_RADIUS;
+    }
+
+    protected void resetEnvelope() {
+        envelope = null;
+    }
+
+    /**
+     * Creates envelope for a coordinate range extended by distance in meters. Longitude range is not extended across
+     * the antimeridian, full range is used instead.
+     */
+    protected static Envelope createEnvelope(
+            double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, double distance) {
+        double angle = distance * DISTANCE_MARGIN / EARTH_RADIUS;
+        double deltaLatitude = Math.toDegrees(angle);
+        minLatitude -= deltaLatitude;
+        maxLatitude += deltaLatitude;
+        if (minLatitude <= -90 || maxLatitude >= 90) {
+            return new Envelope(-180, 180, Math.max(minLatitude, -90), Math.min(maxLatitude, 90));
+        }
+        double maxCos = Math.cos(Math.toRadians(Math.max(Math.abs(minLatitude), Math.abs(maxLatitude))));
+        double sin = Math.sin(angle) / maxCos;
+        if (sin >= 1) {
+            return new Envelope(-180, 180, minLatitude, maxLatitude);
+        }
+        double deltaLongitude = Math.toDegrees(Math.asin(sin));
+        minLongitude -= deltaLongitude;
+        maxLongitude += deltaLongitude;
+        if (minLongitude < -180 || maxLongitude > 180) {
+            return new Envelope(-180, 180, minLatitude, maxLatitude);
+        }
+        return new Envelope(minLongitude, maxLongitude, minLatitude, maxLatitude);
+    }
+
     public abstract double calculateArea();
 
     public abstract String toWkt();
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.geofence;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.traccar.model.Geofence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * Immutable R-tree of geofence bounding boxes. Lookups check exact geometry only for geofences whose box contains
+ * the point, so cost depends on the number of nearby geofences instead of the total number.
+ */
+public class GeofenceIndex {
+
+    private final STRtree tree = new STRtree();
+    private final int size;
+
+    public GeofenceIndex(Collection<Geofence> geofences) {
+        int count = 0;
+        for (Geofence geofence : geofences) {
+            if (geofence.getGeometry() != null) {
+                tree.insert(geofence.getGeometry().getEnvelope(), geofence);
+                count += 1;
+            }
+        }
+        tree.build();
+        size = count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<Long> getContaining(double latitude, double longitude, LongPredicate filter) {
+        List<Long> result = new ArrayList<>();
+        tree.query(new Envelope(longitude, longitude, latitude, latitude), item -> {
+            Geofence geofence = (Geofence) item;
+            if (filter.test(geofence.getId()) && geofence.getGeometry().containsPoint(latitude, longitude)) {
+                result.add(geofence.getId());
+            }
+        });
+        return result;
+    }
+
+    public double getBoundaryDistance(double latitude, double longitude, double maxDistance, LongPredicate filter) {
+        Envelope area = GeofenceGeometry.createEnvelope(latitude, longitude, latitude, longitude, maxDistance);
+        double[] result = {maxDistance};
+        tree.query(area, item -> {
+            Geofence geofence = (Geofence) item;
+            if (filter.test(geofence.getId())) {
+                double distance = geofence.getGeometry().calculateBoundaryDistance(latitude, longitude);
+                result[0] = Math.min(result[0], distance);
+            }
+        });
+        return result[0];
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,6 +15,7 @@
  */
 package org.traccar.geofence;
 
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.spatial4j.context.SpatialContext;
 import org.locationtech.spatial4j.context.jts.JtsSpatialContextFactory;
 import org.locationtech.spatial4j.shape.ShapeFactory;
@@ -114,6 +115,41 @@ public class GeofencePolygon extends GeofenceGeometry {
         return oddNodes;
     }
 
+    private static double segmentDistance(double x, double y, Coordinate start, Coordinate end) {
+        double dx = end.getLon() - start.getLon();
+        double dy = end.getLat() - start.getLat();
+        double t = 0;
+        if (dx != 0 || dy != 0) {
+            t = ((x - start.getLon()) * dx + (y - start.getLat()) * dy) / (dx * dx + dy * dy);
+            t = Math.max(0, Math.min(1, t));
+        }
+        return Math.hypot(x - start.getLon() - t * dx, y - start.getLat() - t * dy);
+    }
+
+    @Override
+    protected double calculateBoundaryDistance(double latitude, double longitude) {
+        if (needNormalize) {
+            return 0;
+        }
+        double result = Double.MAX_VALUE;
+        for (int i = 0, j = coordinates.size() - 1; i < coordinates.size(); j = i++) {
+            result = Math.min(result, segmentDistance(longitude, latitude, coordinates.get(j), coordinates.get(i)));
+        }
+        return degreesToDistance(latitude, result);
+    }
+
+    @Override
+    protected Envelope calculateEnvelope() {
+        Envelope envelope = new Envelope();
+        for (Coordinate coordinate : coordinates) {
+            envelope.expandToInclude(coordinate.getLon(), coordinate.getLat());
+        }
+        if (needNormalize) {
+            envelope.init(-180, 180, envelope.getMinY(), envelope.getMaxY());
+        }
+        return envelope;
+    }
+
     @Override
     public double calculateArea() {
         JtsShapeFactory jtsShapeFactory = new JtsSpatialContextFactory().newSpatialContext().getShapeFactory();
@@ -177,6 +213,7 @@ public class GeofencePolygon extends GeofenceGeometry {
         }
 
         preCalculate();
+        resetEnvelope();
     }
 
 }
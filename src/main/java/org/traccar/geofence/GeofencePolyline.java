@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2022 Anton Tananaev (anton@traccar.org)
  * Copyright 2016 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -19,6 +19,7 @@ package org.traccar.geofence;
 import java.text.ParseException;
 import java.util.ArrayList;
 
+import org.locationtech.jts.geom.Envelope;
 import org.traccar.helper.DistanceCalculator;
 
 public class GeofencePolyline extends GeofenceGeometry {
@@ -46,6 +47,68 @@ public class GeofencePolyline extends GeofenceGeometry {
         return false;
     }
 
+    private static double[] toVector(Coordinate coordinate) {
+        double latitude = Math.toRadians(coordinate.getLat());
+        double longitude = Math.toRadians(coordinate.getLon());
+        return new double[] {
+                Math.cos(latitude) * Math.cos(longitude), Math.cos(latitude) * Math.sin(longitude), Math.sin(latitude)};
+    }
+
+    private static double[] cross(double[] a, double[] b) {
+        return new double[] {a[1] * b[2] - a[2] * b[1], a[2] * b[0] - a[0] * b[2], a[0] * b[1] - a[1] * b[0]};
+    }
+
+    private static double dot(double[] a, double[] b) {
+        return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+    }
+
+    /**
+     * Extends envelope to include points where great circle arc between coordinates bulges towards a pole.
+     */
+    private static void expandToVertex(Envelope envelope, Coordinate start, Coordinate end) {
+        double[] a = toVector(start);
+        double[] b = toVector(end);
+        double[] normal = cross(a, b);
+        double length = Math.sqrt(dot(normal, normal));
+        if (length < 1e-12) {
+            return;
+        }
+        double latitude = Math.toDegrees(Math.acos(Math.min(1, Math.abs(normal[2]) / length)));
+        double[] vertex = {-normal[0] * normal[2], -normal[1] * normal[2], length * length - normal[2] * normal[2]};
+        if (dot(cross(a, vertex), normal) >= 0 && dot(cross(vertex, b), normal) >= 0) {
+            envelope.expandToInclude(end.getLon(), latitude);
+        }
+        double[] opposite = {-vertex[0], -vertex[1], -vertex[2]};
+        if (dot(cross(a, opposite), normal) >= 0 && dot(cross(opposite, b), normal) >= 0) {
+            envelope.expandToInclude(end.getLon(), -latitude);
+        }
+    }
+
+    @Override
+    protected double calculateBoundaryDistance(double latitude, double longitude) {
+        return 0; // triangle based line distance is not bounded by point movement
+    }
+
+    @Override
+    protected Envelope calculateEnvelope() {
+        Envelope envelope = new Envelope();
+        boolean antimeridian = false;
+        for (int i = 0; i < coordinates.size(); i++) {
+            Coordinate coordinate = coordinates.get(i);
+            envelope.expandToInclude(coordinate.getLon(), coordinate.getLat());
+            if (i > 0) {
+                Coordinate previous = coordinates.get(i - 1);
+                antimeridian |= Math.abs(coordinate.getLon() - previous.getLon()) > 180;
+                expandToVertex(envelope, previous, coordinate);
+            }
+        }
+        if (antimeridian) {
+            envelope.init(-180, 180, envelope.getMinY(), envelope.getMaxY());
+        }
+        return createEnvelope(
+                envelope.getMinY(), envelope.getMinX(), envelope.getMaxY(), envelope.getMaxX(), distance);
+    }
+
     @Override
     public double calculateArea() {
         return 0;
@@ -103,10 +166,12 @@ public class GeofencePolyline extends GeofenceGeometry {
             coordinates.add(coordinate);
         }
 
+        resetEnvelope();
     }
 
     public void setDistance(double distance) {
         this.distance = distance;
+        resetEnvelope();
     }
 
 }
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.geofence;
+
+import org.locationtech.jts.algorithm.locate.PointOnGeometryLocator;
+import org.locationtech.jts.geom.CoordinateFilter;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Location;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedPolygon;
+import org.locationtech.jts.operation.distance.IndexedFacetDistance;
+import org.locationtech.spatial4j.context.SpatialContext;
+import org.locationtech.spatial4j.context.jts.JtsSpatialContextFactory;
+import org.locationtech.spatial4j.shape.jts.JtsShapeFactory;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.locationtech.spatial4j.distance.DistanceUtils.DEG_TO_KM;
+
+/**
+ * Polygon backed by a prepared JTS geometry, which locates points using an interval index of the edges instead of
+ * testing every edge. Supports holes and multipolygons. Polygon type is selected by {@link #isPreferred}.
+ */
+public class GeofencePreparedPolygon extends GeofenceGeometry {
+
+    public static final int VERTEX_THRESHOLD = 64;
+
+    private static final Pattern RING_SEPARATOR = Pattern.compile("\\)\\s*,");
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    private static final CoordinateFilter NORMALIZE_LONGITUDE = coordinate -> {
+        if (coordinate.x < -90) {
+            coordinate.x += 360;
+        }
+    };
+
+    private Geometry geometry; // longitude as x and latitude as y
+    private boolean needNormalize;
+    private PointOnGeometryLocator locator;
+    private IndexedFacetDistance facetDistance;
+
+    public GeofencePreparedPolygon() {
+    }
+
+    public GeofencePreparedPolygon(String wkt) throws ParseException {
+        fromWkt(wkt);
+    }
+
+    /**
+     * Returns true for multipolygons, polygons with holes and polygons with more than {@link #VERTEX_THRESHOLD}
+     * vertices. Other polygons are faster with plain {@link GeofencePolygon}.
+     */
+    public static boolean isPreferred(String wkt) {
+        if (wkt.startsWith("MULTIPOLYGON") || RING_SEPARATOR.matcher(wkt).find()) {
+            return true;
+        }
+        int vertices = 1;
+        for (int i = 0; i < wkt.length(); i++) {
+            if (wkt.charAt(i) == ',') {
+                vertices += 1;
+                if (vertices > VERTEX_THRESHOLD) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static org.locationtech.jts.geom.Coordinate[] parseRing(String content) throws ParseException {
+        String[] commaTokens = content.split(",");
+        if (commaTokens.length < 3) {
+            throw new ParseException("Not valid content", 0);
+        }
+        List<org.locationtech.jts.geom.Coordinate> coordinates = new ArrayList<>();
+        for (String commaToken : commaTokens) {
+            String[] tokens = commaToken.trim().split("\\s+");
+            if (tokens.length != 2) {
+                throw new ParseException("Here must be two coordinates: " + commaToken, 0);
+            }
+            double latitude;
+            double longitude;
+            try {
+                latitude = Double.parseDouble(tokens[0]);
+            } catch (NumberFormatException e) {
+                throw new ParseException(tokens[0] + " is not a double", 0);
+            }
+            try {
+                longitude = Double.parseDouble(tokens[1]);
+            } catch (NumberFormatException e) {
+                throw new ParseException(tokens[1] + " is not a double", 0);
+            }
+            coordinates.add(new org.locationtech.jts.geom.Coordinate(longitude, latitude));
+        }
+        if (!coordinates.get(0).equals2D(coordinates.get(coordinates.size() - 1))) {
+            coordinates.add(coordinates.get(0).copy());
+        }
+        return coordinates.toArray(new org.locationtech.jts.geom.Coordinate[0]);
+    }
+
+    private static Geometry parse(String wkt, boolean multi) throws ParseException {
+        List<Polygon> polygons = new ArrayList<>();
+        List<LinearRing> rings = new ArrayList<>();
+        int ringDepth = multi ? 3 : 2;
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < wkt.length(); i++) {
+            char c = wkt.charAt(i);
+            if (c == '(') {
+                depth += 1;
+                start = i + 1;
+            } else if (c == ')') {
+                if (depth == ringDepth) {
+                    rings.add(GEOMETRY_FACTORY.createLinearRing(parseRing(wkt.substring(start, i))));
+                } else if (depth == ringDepth - 1 && !rings.isEmpty()) {
+                    polygons.add(GEOMETRY_FACTORY.createPolygon(
+                            rings.get(0), rings.subList(1, rings.size()).toArray(new LinearRing[0])));
+                    rings.clear();
+                }
+                depth -= 1;
+            }
+        }
+        if (polygons.isEmpty()) {
+            throw new ParseException("No content", 0);
+        }
+        if (multi) {
+            return GEOMETRY_FACTORY.createMultiPolygon(polygons.toArray(new Polygon[0]));
+        }
+        return polygons.get(0);
+    }
+
+    private void prepare() {
+        boolean hasPositive = false;
+        boolean hasNegative = false;
+        for (org.locationtech.jts.geom.Coordinate coordinate : geometry.getCoordinates()) {
+            if (coordinate.x > 90) {
+                hasPositive = true;
+            } else if (coordinate.x < -90) {
+                hasNegative = true;
+            }
+        }
+        needNormalize = hasPositive && hasNegative;
+
+        Geometry normalized = geometry;
+        if (needNormalize) {
+            normalized = geometry.copy();
+            normalized.apply(NORMALIZE_LONGITUDE);
+            normalized.geometryChanged();
+        }
+        locator = ((PreparedPolygon) PreparedGeometryFactory.prepare(normalized)).getPointLocator();
+        facetDistance = new IndexedFacetDistance(normalized);
+    }
+
+    @Override
+    public boolean containsPoint(double latitude, double longitude) {
+        if (needNormalize && longitude < -90) {
+            longitude += 360;
+        }
+        return locator.locate(new org.locationtech.jts.geom.Coordinate(longitude, latitude)) != Location.EXTERIOR;
+    }
+
+    @Override
+    protected double calculateBoundaryDistance(double latitude, double longitude) {
+        if (needNormalize) {
+            return 0;
+        }
+        Point point = GEOMETRY_FACTORY.createPoint(new org.locationtech.jts.geom.Coordinate(longitude, latitude));
+        double degrees = facetDistance.distance(point);
+        return degreesToDistance(latitude, degrees);
+    }
+
+    @Override
+    protected Envelope calculateEnvelope() {
+        Envelope envelope = geometry.getEnvelopeInternal();
+        if (needNormalize) {
+            return new Envelope(-180, 180, envelope.getMinY(), envelope.getMaxY());
+        }
+        return new Envelope(envelope);
+    }
+
+    @Override
+    public double calculateArea() {
+        JtsShapeFactory jtsShapeFactory = new JtsSpatialContextFactory().newSpatialContext().getShapeFactory();
+        return jtsShapeFactory.makeShapeFromGeometry(geometry).getArea(SpatialContext.GEO) * DEG_TO_KM * DEG_TO_KM;
+    }
+
+    private static void appendRing(StringBuilder buf, LineString ring) {
+        buf.append('(');
+        for (int i = 0; i < ring.getNumPoints(); i++) {
+            if (i > 0) {
+                buf.append(", ");
+            }
+            buf.append(ring.getCoordinateN(i).y).append(' ').append(ring.getCoordinateN(i).x);
+        }
+        buf.append(')');
+    }
+
+    private static void appendPolygon(StringBuilder buf, Polygon polygon) {
+        buf.append('(');
+        appendRing(buf, polygon.getExteriorRing());
+        for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+            buf.append(", ");
+            appendRing(buf, polygon.getInteriorRingN(i));
+        }
+        buf.append(')');
+    }
+
+    @Override
+    public String toWkt() {
+        StringBuilder buf = new StringBuilder();
+        if (geometry instanceof Polygon) {
+            buf.append("POLYGON ");
+            appendPolygon(buf, (Polygon) geometry);
+        } else {
+            buf.append("MULTIPOLYGON (");
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                if (i > 0) {
+                    buf.append(", ");
+                }
+                appendPolygon(buf, (Polygon) geometry.getGeometryN(i));
+            }
+            buf.append(')');
+        }
+        return buf.toString();
+    }
+
+    @Override
+    public void fromWkt(String wkt) throws ParseException {
+        if (!wkt.startsWith("POLYGON") && !wkt.startsWith("MULTIPOLYGON")) {
+            throw new ParseException("Mismatch geometry type", 0);
+        }
+        geometry = parse(wkt, wkt.startsWith("MULTIPOLYGON"));
+        prepare();
+        resetEnvelope();
+    }
+
+}
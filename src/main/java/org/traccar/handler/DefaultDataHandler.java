@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2019 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,10 +16,15 @@
 package org.traccar.handler;
 
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.concurrent.EventExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.BaseDataHandler;
+import org.traccar.ProcessingExecutor;
 import org.traccar.database.DataManager;
+import org.traccar.database.PositionBatchWriter;
+import org.traccar.database.PositionSpool;
 import org.traccar.model.Position;
 
 @ChannelHandler.Sharable
@@ -28,21 +33,60 @@ public class DefaultDataHandler extends BaseDataHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultDataHandler.class);
 
     private final DataManager dataManager;
+    private final PositionBatchWriter batchWriter;
+    private final PositionSpool spool;
 
-    public DefaultDataHandler(DataManager dataManager) {
+    public DefaultDataHandler(DataManager dataManager, PositionBatchWriter batchWriter, PositionSpool spool) {
         this.dataManager = dataManager;
+        this.batchWriter = batchWriter;
+        this.spool = spool;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (batchWriter != null && msg instanceof Position) {
+            batchWriter.write((Position) msg, position -> {
+                EventExecutor executor = ctx.executor();
+                if (executor.inEventLoop()) {
+                    ctx.fireChannelRead(position);
+                } else if (executor instanceof ProcessingExecutor) {
+                    ((ProcessingExecutor) executor).execute(
+                            position.getDeviceId(), () -> ctx.fireChannelRead(position));
+                } else {
+                    executor.execute(() -> ctx.fireChannelRead(position));
+                }
+            });
+        } else {
+            super.channelRead(ctx, msg);
+        }
     }
 
     @Override
     protected Position handlePosition(Position position) {
 
+        if (spool != null && spool.isActive()) {
+            spool(position);
+            return position;
+        }
+
         try {
             dataManager.addObject(position);
         } catch (Exception error) {
             LOGGER.warn("Failed to store position", error);
+            if (spool != null) {
+                spool(position);
+            }
         }
 
         return position;
     }
 
+    private void spool(Position position) {
+        try {
+            spool.write(position);
+        } catch (Exception error) {
+            LOGGER.warn("Failed to spool position", error);
+        }
+    }
+
 }
@@ -17,20 +17,26 @@ package org.traccar.handler;
 
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
+import org.traccar.FlowController;
 import org.traccar.TrackerConnector;
 
 public class OpenChannelHandler extends ChannelDuplexHandler {
 
     private final TrackerConnector connector;
+    private final FlowController flowController;
 
-    public OpenChannelHandler(TrackerConnector connector) {
+    public OpenChannelHandler(TrackerConnector connector, FlowController flowController) {
         this.connector = connector;
+        this.flowController = flowController;
     }
 
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         super.channelActive(ctx);
         connector.getChannelGroup().add(ctx.channel());
+        if (flowController != null) {
+            flowController.addChannel(ctx.channel());
+        }
     }
 
     @Override
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.handler;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.traccar.ProcessingExecutor;
+import org.traccar.model.Position;
+
+/**
+ * Hands decoded positions over to the {@link ProcessingExecutor} keyed by device, so handlers running on the
+ * executor see positions of each device in the original order. Other messages and channel events are keyed by
+ * channel.
+ */
+@ChannelHandler.Sharable
+public class ProcessingHandler extends ChannelInboundHandlerAdapter {
+
+    private final ProcessingExecutor executor;
+
+    public ProcessingHandler(ProcessingExecutor executor) {
+        this.executor = executor;
+    }
+
+    private static long getChannelKey(ChannelHandlerContext ctx) {
+        return ctx.channel().id().hashCode();
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+        executor.execute(getChannelKey(ctx), ctx::fireChannelActive);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        executor.execute(getChannelKey(ctx), ctx::fireChannelInactive);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof Position) {
+            executor.execute(((Position) msg).getDeviceId(), () -> ctx.fireChannelRead(msg));
+        } else {
+            executor.execute(getChannelKey(ctx), () -> ctx.fireChannelRead(msg));
+        }
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+        executor.execute(getChannelKey(ctx), () -> ctx.fireUserEventTriggered(evt));
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        executor.execute(getChannelKey(ctx), () -> ctx.fireExceptionCaught(cause));
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2021 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,12 +19,17 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.netty.channel.ChannelHandler;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
 import org.traccar.database.CalendarManager;
 import org.traccar.database.ConnectionManager;
 import org.traccar.database.GeofenceManager;
 import org.traccar.database.IdentityManager;
+import org.traccar.database.StatisticsManager;
+import org.traccar.helper.DistanceCalculator;
 import org.traccar.model.Calendar;
 import org.traccar.model.Device;
 import org.traccar.model.Event;
@@ -37,14 +42,68 @@ public class GeofenceEventHandler extends BaseEventHandler {
     private final GeofenceManager geofenceManager;
     private final CalendarManager calendarManager;
     private final ConnectionManager connectionManager;
+    private final StatisticsManager statisticsManager;
+    private final double incrementalDistance;
+
+    private final Map<Long, Evaluation> evaluations = new ConcurrentHashMap<>();
+
+    /**
+     * Last full containment check of a device. Containment can't change while the device stays closer than
+     * safeDistance to the evaluated location, unless geofences change, which is detected by the version.
+     */
+    private static final class Evaluation {
+
+        private final long version;
+        private final double latitude;
+        private final double longitude;
+        private final double safeDistance;
+        private final List<Long> geofences;
+
+        private Evaluation(long version, Position position, double safeDistance, List<Long> geofences) {
+            this.version = version;
+            this.latitude = position.getLatitude();
+            this.longitude = position.getLongitude();
+            this.safeDistance = safeDistance;
+            this.geofences = geofences;
+        }
+
+    }
 
     public GeofenceEventHandler(
-            IdentityManager identityManager, GeofenceManager geofenceManager, CalendarManager calendarManager,
-            ConnectionManager connectionManager) {
+            Config config, IdentityManager identityManager, GeofenceManager geofenceManager,
+            CalendarManager calendarManager, ConnectionManager connectionManager,
+            StatisticsManager statisticsManager) {
         this.identityManager = identityManager;
         this.geofenceManager = geofenceManager;
         this.calendarManager = calendarManager;
         this.connectionManager = connectionManager;
+        this.statisticsManager = statisticsManager;
+        this.incrementalDistance = config.getDouble(Keys.GEOFENCE_INCREMENTAL_DISTANCE);
+    }
+
+    private List<Long> getCurrentGeofences(Position position) {
+        if (incrementalDistance <= 0) {
+            return geofenceManager.getCurrentDeviceGeofences(position);
+        }
+
+        long version = geofenceManager.getVersion();
+        Evaluation evaluation = evaluations.get(position.getDeviceId());
+        if (evaluation != null && evaluation.version == version && DistanceCalculator.distance(
+                evaluation.latitude, evaluation.longitude, position.getLatitude(), position.getLongitude())
+                < evaluation.safeDistance) {
+            if (statisticsManager != null) {
+                statisticsManager.registerGeofenceCheck(true);
+            }
+            return new ArrayList<>(evaluation.geofences);
+        }
+
+        List<Long> result = geofenceManager.getCurrentDeviceGeofences(position);
+        double safeDistance = geofenceManager.getBoundaryDistance(position, incrementalDistance);
+        evaluations.put(position.getDeviceId(), new Evaluation(version, position, safeDistance, List.copyOf(result)));
+        if (statisticsManager != null) {
+            statisticsManager.registerGeofenceCheck(false);
+        }
+        return result;
     }
 
     @Override
@@ -57,7 +116,7 @@ public class GeofenceEventHandler extends BaseEventHandler {
             return null;
         }
 
-        List<Long> currentGeofences = geofenceManager.getCurrentDeviceGeofences(position);
+        List<Long> currentGeofences = getCurrentGeofences(position);
         List<Long> oldGeofences = new ArrayList<>();
         if (device.getGeofenceIds() != null) {
             oldGeofences.addAll(device.getGeofenceIds());
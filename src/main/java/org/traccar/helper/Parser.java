@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2017 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,23 +22,60 @@ import java.util.regex.Pattern;
 
 public class Parser {
 
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
     private int position;
+    private final String input;
     private final Matcher matcher;
+    private final PatternScanner scanner;
+    private final PatternScanner.State state;
 
     public Parser(Pattern pattern, String input) {
+        this.input = input;
         matcher = pattern.matcher(input);
+        scanner = null;
+        state = null;
+    }
+
+    public Parser(PatternScanner scanner, String input) {
+        this.input = input;
+        if (scanner.isCompiled() && PatternScanner.isSupported(input)) {
+            this.scanner = scanner;
+            state = scanner.newState(input);
+            matcher = null;
+        } else {
+            this.scanner = null;
+            state = null;
+            matcher = scanner.getPattern().matcher(input);
+        }
     }
 
     public boolean matches() {
         position = 1;
+        if (scanner != null) {
+            return scanner.matches(state);
+        }
         return matcher.matches();
     }
 
     public boolean find() {
         position = 1;
+        if (scanner != null) {
+            return scanner.find(state);
+        }
         return matcher.find();
     }
 
+    private int start(int group) {
+        return state != null ? state.start(group) : matcher.start(group);
+    }
+
+    private int end(int group) {
+        return state != null ? state.end(group) : matcher.end(group);
+    }
+
     public void skip(int number) {
         position += number;
     }
@@ -48,8 +85,8 @@ public class Parser {
     }
 
     public boolean hasNext(int number) {
-        String value = matcher.group(position);
-        if (value != null && !value.isEmpty()) {
+        int start = start(position);
+        if (start >= 0 && end(position) > start) {
             return true;
         } else {
             position += number;
@@ -58,12 +95,60 @@ public class Parser {
     }
 
     public String next() {
-        return matcher.group(position++);
+        int start = start(position);
+        int end = end(position++);
+        return start >= 0 ? input.substring(start, end) : null;
+    }
+
+    private int parseInt(int radix) {
+        int start = start(position);
+        return Integer.parseInt(input, start, end(position++), radix);
+    }
+
+    private long parseLong(int radix) {
+        int start = start(position);
+        return Long.parseLong(input, start, end(position++), radix);
+    }
+
+    /**
+     * Parses plain decimal values without allocation, other values are passed to {@link Double#parseDouble}.
+     */
+    private double parseDouble() {
+        int start = start(position);
+        int end = end(position++);
+        int index = start;
+        boolean negative = false;
+        if (input.charAt(index) == '-' || input.charAt(index) == '+') {
+            negative = input.charAt(index) == '-';
+            index += 1;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; index < end; index++) {
+            char c = input.charAt(index);
+            if (c >= '0' && c <= '9' && mantissa < 1L << 49) {
+                mantissa = mantissa * 10 + c - '0';
+                digits += 1;
+                if (scale >= 0) {
+                    scale += 1;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+        if (index < end || digits == 0 || scale >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(input.substring(start, end));
+        }
+        double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
     }
 
     public Integer nextInt() {
         if (hasNext()) {
-            return Integer.parseInt(next());
+            return parseInt(10);
         } else {
             return null;
         }
@@ -71,7 +156,7 @@ public class Parser {
 
     public int nextInt(int defaultValue) {
         if (hasNext()) {
-            return Integer.parseInt(next());
+            return parseInt(10);
         } else {
             return defaultValue;
         }
@@ -79,7 +164,7 @@ public class Parser {
 
     public Integer nextHexInt() {
         if (hasNext()) {
-            return Integer.parseInt(next(), 16);
+            return parseInt(16);
         } else {
             return null;
         }
@@ -87,7 +172,7 @@ public class Parser {
 
     public int nextHexInt(int defaultValue) {
         if (hasNext()) {
-            return Integer.parseInt(next(), 16);
+            return parseInt(16);
         } else {
             return defaultValue;
         }
@@ -95,7 +180,7 @@ public class Parser {
 
     public Integer nextBinInt() {
         if (hasNext()) {
-            return Integer.parseInt(next(), 2);
+            return parseInt(2);
         } else {
             return null;
         }
@@ -103,7 +188,7 @@ public class Parser {
 
     public int nextBinInt(int defaultValue) {
         if (hasNext()) {
-            return Integer.parseInt(next(), 2);
+            return parseInt(2);
         } else {
             return defaultValue;
         }
@@ -111,7 +196,7 @@ public class Parser {
 
     public Long nextLong() {
         if (hasNext()) {
-            return Long.parseLong(next());
+            return parseLong(10);
         } else {
             return null;
         }
@@ -119,7 +204,7 @@ public class Parser {
 
     public Long nextHexLong() {
         if (hasNext()) {
-            return Long.parseLong(next(), 16);
+            return parseLong(16);
         } else {
             return null;
         }
@@ -131,7 +216,7 @@ public class Parser {
 
     public long nextLong(int radix, long defaultValue) {
         if (hasNext()) {
-            return Long.parseLong(next(), radix);
+            return parseLong(radix);
         } else {
             return defaultValue;
         }
@@ -139,7 +224,7 @@ public class Parser {
 
     public Double nextDouble() {
         if (hasNext()) {
-            return Double.parseDouble(next());
+            return parseDouble();
         } else {
             return null;
         }
@@ -147,7 +232,7 @@ public class Parser {
 
     public double nextDouble(double defaultValue) {
         if (hasNext()) {
-            return Double.parseDouble(next());
+            return parseDouble();
         } else {
             return defaultValue;
         }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -86,6 +86,10 @@ public class PatternBuilder {
         return Pattern.compile(toString(), Pattern.DOTALL);
     }
 
+    public PatternScanner compileScanner() {
+        return new PatternScanner(compile());
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
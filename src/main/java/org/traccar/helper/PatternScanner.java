@@ -0,0 +1,893 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Field scanner compiled from the regular expression subset generated by {@link PatternBuilder}: literals, character
+ * classes, greedy and lazy quantifiers on single characters, capturing and non-capturing groups, repeated groups,
+ * alternation and end of input. A quantifier is matched possessively when no character it accepts can start the rest
+ * of the pattern, which is the common case for delimited fields, so typical messages are scanned in one pass. Other
+ * quantifiers give characters back in the same order as {@link java.util.regex.Matcher}, so group boundaries are
+ * always identical to the regular expression. Patterns using anything else fall back to the regular expression.
+ */
+public final class PatternScanner {
+
+    private final Pattern pattern;
+    private final Node root;
+    private int groupCount;
+    private int loopCount;
+
+    PatternScanner(Pattern pattern) {
+        this.pattern = pattern;
+        Node node;
+        try {
+            node = new Compiler(pattern).compile();
+        } catch (UnsupportedOperationException e) {
+            node = null;
+        }
+        root = node;
+    }
+
+    public String pattern() {
+        return pattern.pattern();
+    }
+
+    Pattern getPattern() {
+        return pattern;
+    }
+
+    public boolean isCompiled() {
+        return root != null;
+    }
+
+    /**
+     * Scanner only handles characters from the basic multilingual plane, other input has to be matched by the
+     * regular expression.
+     */
+    static boolean isSupported(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if (Character.isSurrogate(input.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    State newState(String input) {
+        return new State(input, groupCount, loopCount);
+    }
+
+    /**
+     * Matches the whole input.
+     */
+    boolean matches(State state) {
+        state.reset();
+        state.anywhere = false;
+        if (root.match(state, 0)) {
+            state.groups[0] = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds next match starting after the previous one, same as {@link java.util.regex.Matcher#find()}.
+     */
+    boolean find(State state) {
+        int from = state.from;
+        state.reset();
+        state.anywhere = true;
+        int length = state.input.length();
+        for (int i = from; i <= length; i++) {
+            if (root.nullable || i < length && root.first.contains(state.input.charAt(i))) {
+                if (root.match(state, i)) {
+                    state.groups[0] = i;
+                    state.from = state.groups[1] == i ? i + 1 : state.groups[1];
+                    return true;
+                }
+            }
+        }
+        state.from = length + 1;
+        return false;
+    }
+
+    static final class State {
+
+        private final String input;
+        private final int[] groups;
+        private final int[] loops;
+        private boolean anywhere;
+        private int from;
+
+        private State(String input, int groupCount, int loopCount) {
+            this.input = input;
+            this.groups = new int[(groupCount + 1) * 2];
+            this.loops = new int[loopCount];
+        }
+
+        private void reset() {
+            for (int i = 0; i < groups.length; i++) {
+                groups[i] = -1;
+            }
+        }
+
+        String input() {
+            return input;
+        }
+
+        int start(int group) {
+            int start = groups[group * 2];
+            return groups[group * 2 + 1] >= 0 ? start : -1;
+        }
+
+        int end(int group) {
+            return groups[group * 2 + 1];
+        }
+
+        private char charAt(int index) {
+            return input.charAt(index);
+        }
+
+    }
+
+    private static final class CharSet {
+
+        private final long[] bits = new long[4];
+        private boolean other;
+
+        static CharSet of(char... values) {
+            CharSet set = new CharSet();
+            for (char c : values) {
+                set.add(c);
+            }
+            return set;
+        }
+
+        static CharSet all() {
+            CharSet set = new CharSet();
+            set.addRange((char) 0, (char) 255);
+            set.other = true;
+            return set;
+        }
+
+        void add(char c) {
+            if (c >= 256) {
+                throw new UnsupportedOperationException("Character out of range");
+            }
+            bits[c >> 6] |= 1L << c;
+        }
+
+        void addRange(char from, char to) {
+            for (char c = from; c <= to; c++) {
+                add(c);
+            }
+        }
+
+        void addAll(CharSet set) {
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] |= set.bits[i];
+            }
+            other |= set.other;
+        }
+
+        CharSet negate() {
+            CharSet set = new CharSet();
+            for (int i = 0; i < bits.length; i++) {
+                set.bits[i] = ~bits[i];
+            }
+            set.other = !other;
+            return set;
+        }
+
+        boolean intersects(CharSet set) {
+            for (int i = 0; i < bits.length; i++) {
+                if ((bits[i] & set.bits[i]) != 0) {
+                    return true;
+                }
+            }
+            return other && set.other;
+        }
+
+        int size() {
+            int size = 0;
+            for (long value : bits) {
+                size += Long.bitCount(value);
+            }
+            return other ? Integer.MAX_VALUE : size;
+        }
+
+        char single() {
+            for (int i = 0; i < bits.length; i++) {
+                if (bits[i] != 0) {
+                    return (char) (i * 64 + Long.numberOfTrailingZeros(bits[i]));
+                }
+            }
+            throw new IllegalStateException();
+        }
+
+        boolean contains(char c) {
+            if (c < 256) {
+                return (bits[c >> 6] & 1L << c) != 0;
+            }
+            return other;
+        }
+
+    }
+
+    private abstract static class Node {
+
+        private final CharSet first;
+        private final boolean nullable;
+
+        Node(CharSet first, boolean nullable) {
+            this.first = first;
+            this.nullable = nullable;
+        }
+
+        abstract boolean match(State state, int index);
+
+    }
+
+    private static final class Accept extends Node {
+
+        Accept() {
+            super(new CharSet(), true);
+        }
+
+        @Override
+        boolean match(State state, int index) {
+            if (state.anywhere || index == state.input.length()) {
+                state.groups[1] = index;
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+    private static final class Text extends Node {
+
+        private final String text;
+        private final Node next;
+
+        Text(String text, Node next) {
+            super(CharSet.of(text.charAt(0)), false);
+            this.text = text;
+            this.next = next;
+        }
+
+        @Override
+        boolean match(State state, int index) {
+            return state.input.startsWith(text, index) && next.match(state, index + text.length());
+        }
+
+    }
+
+    private static final class Repeat extends Node {
+
+        private final CharSet set;
+        private final int min;
+        private final int max;
+        private final boolean lazy;
+        private final boolean possessive;
+        private final Node next;
+
+        Repeat(CharSet set, int min, int max, boolean lazy, Node next) {
+            super(firstOf(set, min, next), min == 0 && next.nullable);
+            this.set = set;
+            this.min = min;
+            this.max = max;
+            this.lazy = lazy;
+            this.possessive = min == max || !lazy && !set.intersects(next.first);
+            this.next = next;
+        }
+
+        private static CharSet firstOf(CharSet set, int min, Node next) {
+            CharSet first = new CharSet();
+            first.addAll(set);
+            if (min == 0) {
+                first.addAll(next.first);
+            }
+            return first;
+        }
+
+        @Override
+        boolean match(State state, int index) {
+            int limit = (int) Math.min(state.input.length(), (long) index + max);
+            int end = index;
+            while (end < limit && set.contains(state.charAt(end))) {
+                end += 1;
+            }
+            if (end - index < min) {
+                return false;
+            }
+            if (possessive) {
+                return next.match(state, end);
+            }
+            if (lazy) {
+                for (int i = index + min; i <= end; i++) {
+                    if (next.match(state, i)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            for (; end >= index + min; end--) {
+                if (next.match(state, end)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+    private static final class GroupStart extends Node {
+
+        private final int slot;
+        private final Node next;
+
+        GroupStart(int group, Node next) {
+            super(next.first, next.nullable);
+            this.slot = group * 2;
+            this.next = next;
+        }
+
+        @Override
+        boolean match(State state, int index) {
+            int saved = state.groups[slot];
+            state.groups[slot] = index;
+            if (next.match(state, index)) {
+                return true;
+            }
+            state.groups[slot] = saved;
+            return false;
+        }
+
+    }
+
+    private static final class GroupEnd extends Node {
+
+        private final int slot;
+        private final Node next;
+
+        GroupEnd(int group, Node next) {
+            super(next.first, next.nullable);
+            this.slot = group * 2 + 1;
+            this.next = next;
+        }
+
+        @Override
+        boolean match(State state, int index) {
+            int saved = state.groups[slot];
+            state.groups[slot] = index;
+            if (next.match(state, index)) {
+                return true;
+            }
+            state.groups[slot] = saved;
+            return false;
+        }
+
+    }
+
+    private static final class Branch extends Node {
+
+        private final Node[] alternatives;
+
+        Branch(Node[] alternatives) {
+            super(firstOf(alternatives), nullableOf(alternatives));
+            this.alternatives = alternatives;
+        }
+
+        private static CharSet firstOf(Node[] alternatives) {
+            CharSet first = new CharSet();
+            for (Node alternative : alternatives) {
+                first.addAll(alternative.first);
+            }
+            return first;
+        }
+
+        private static boolean nullableOf(Node[] alternatives) {
+            for (Node alternative : alternatives) {
+                if (alternative.nullable) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        boolean match(State state, int index) {
+            for (Node alternative : alternatives) {
+                if (alternative.match(state, index)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+    private static final class Loop extends Node {
+
+        private final int slot;
+        private final int min;
+        private final int max;
+        private final Node next;
+        private Node body;
+
+        Loop(int slot, int min, int max, CharSet bodyFirst, Node next) {
+            super(firstOf(bodyFirst, min, next), min == 0 && next.nullable);
+            this.slot = slot;
+            this.min = min;
+            this.max = max;
+            this.next = next;
+        }
+
+        private static CharSet firstOf(CharSet bodyFirst, int min, Node next) {
+            CharSet first = new CharSet();
+            first.addAll(bodyFirst);
+            if (min == 0) {
+                first.addAll(next.first);
+            }
+            return first;
+        }
+
+        @Override
+        boolean match(State state, int index) {
+            int saved = state.loops[slot];
+            state.loops[slot] = 0;
+            boolean result = iterate(state, index);
+            state.loops[slot] = saved;
+            return result;
+        }
+
+        boolean iterate(State state, int index) {
+            int count = state.loops[slot];
+            if (count < max) {
+                state.loops[slot] = count + 1;
+                if (body.match(state, index)) {
+                    return true;
+                }
+                state.loops[slot] = count;
+            }
+            return count >= min && next.match(state, index);
+        }
+
+    }
+
+    private static final class LoopTail extends Node {
+
+        private Loop loop;
+
+        LoopTail(CharSet first, boolean nullable) {
+            super(first, nullable);
+        }
+
+        @Override
+        boolean match(State state, int index) {
+            return loop.iterate(state, index);
+        }
+
+    }
+
+    private static final class Dollar extends Node {
+
+        private final Node next;
+
+        Dollar(Node next) {
+            super(firstOf(next), next.nullable);
+            this.next = next;
+        }
+
+        private static CharSet firstOf(Node next) {
+            CharSet first = CharSet.of('\n', '\r', '\u0085');
+            first.other = true;
+            first.addAll(next.first);
+            return first;
+        }
+
+        @Override
+        boolean match(State state, int index) {
+            String input = state.input;
+            int length = input.length();
+            if (index == length - 2) {
+                if (input.charAt(index) != '\r' || input.charAt(index + 1) != '\n') {
+                    return false;
+                }
+            } else if (index == length - 1) {
+                char c = input.charAt(index);
+                if (c == '\n') {
+                    if (index > 0 && input.charAt(index - 1) == '\r') {
+                        return false;
+                    }
+                } else if (c != '\r' && c != '\u0085' && (c | 1) != '\u2029') {
+                    return false;
+                }
+            } else if (index != length) {
+                return false;
+            }
+            return next.match(state, index);
+        }
+
+    }
+
+    private interface Term {
+        Node compile(Node next);
+    }
+
+    private static final class CharTerm implements Term {
+
+        private final CharSet set;
+        private final int min;
+        private final int max;
+        private final boolean lazy;
+
+        CharTerm(CharSet set, int min, int max, boolean lazy) {
+            this.set = set;
+            this.min = min;
+            this.max = max;
+            this.lazy = lazy;
+        }
+
+        boolean isLiteral() {
+            return min == 1 && max == 1 && set.size() == 1;
+        }
+
+        @Override
+        public Node compile(Node next) {
+            return new Repeat(set, min, max, lazy, next);
+        }
+
+    }
+
+    private static final class GroupTerm implements Term {
+
+        private final int index;
+        private final List<List<Term>> alternatives = new ArrayList<>();
+        private int min = 1;
+        private int max = 1;
+        private int loop = -1;
+
+        GroupTerm(int index) {
+            this.index = index;
+        }
+
+        private Node compileBody(Node next) {
+            Node end = index > 0 ? new GroupEnd(index, next) : next;
+            Node[] nodes = new Node[alternatives.size()];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = compileSequence(alternatives.get(i), end);
+            }
+            Node node = nodes.length == 1 ? nodes[0] : new Branch(nodes);
+            return index > 0 ? new GroupStart(index, node) : node;
+        }
+
+        @Override
+        public Node compile(Node next) {
+            if (loop >= 0) {
+                Node empty = compileBody(new Accept());
+                if (empty.nullable) {
+                    throw new UnsupportedOperationException("Empty loop");
+                }
+                CharSet bodyFirst = empty.first;
+                Loop node = new Loop(loop, min, max, bodyFirst, next);
+                CharSet tailFirst = new CharSet();
+                tailFirst.addAll(bodyFirst);
+                tailFirst.addAll(next.first);
+                LoopTail tail = new LoopTail(tailFirst, next.nullable);
+                tail.loop = node;
+                node.body = compileBody(tail);
+                return node;
+            }
+            Node node = compileBody(next);
+            return min == 0 ? new Branch(new Node[] {node, next}) : node;
+        }
+
+    }
+
+    private static Node compileSequence(List<Term> terms, Node next) {
+        Node node = next;
+        int i = terms.size() - 1;
+        while (i >= 0) {
+            Term term = terms.get(i);
+            if (term instanceof CharTerm && ((CharTerm) term).isLiteral()) {
+                StringBuilder text = new StringBuilder();
+                while (i >= 0 && terms.get(i) instanceof CharTerm && ((CharTerm) terms.get(i)).isLiteral()) {
+                    text.append(((CharTerm) terms.get(i)).set.single());
+                    i -= 1;
+                }
+                node = new Text(text.reverse().toString(), node);
+            } else {
+                node = term.compile(node);
+                i -= 1;
+            }
+        }
+        return node;
+    }
+
+    private final class Compiler {
+
+        private final String regex;
+        private int index;
+
+        Compiler(Pattern pattern) {
+            if (pattern.flags() != Pattern.DOTALL) {
+                throw new UnsupportedOperationException("Flags");
+            }
+            this.regex = pattern.pattern();
+        }
+
+        Node compile() {
+            GroupTerm root = new GroupTerm(0);
+            parseAlternatives(root);
+            if (index < regex.length()) {
+                throw new UnsupportedOperationException("Unbalanced group");
+            }
+            return root.compile(new Accept());
+        }
+
+        private boolean hasMore() {
+            return index < regex.length();
+        }
+
+        private char peek() {
+            return regex.charAt(index);
+        }
+
+        private void parseAlternatives(GroupTerm group) {
+            List<Term> terms = new ArrayList<>();
+            group.alternatives.add(terms);
+            while (hasMore() && peek() != ')') {
+                char c = peek();
+                if (c == '|') {
+                    index += 1;
+                    terms = new ArrayList<>();
+                    group.alternatives.add(terms);
+                } else if (c == '(') {
+                    index += 1;
+                    GroupTerm child;
+                    if (regex.startsWith("?:", index)) {
+                        index += 2;
+                        child = new GroupTerm(-1);
+                    } else if (hasMore() && peek() == '?') {
+                        throw new UnsupportedOperationException("Special group");
+                    } else {
+                        groupCount += 1;
+                        child = new GroupTerm(groupCount);
+                    }
+                    parseAlternatives(child);
+                    if (!hasMore()) {
+                        throw new UnsupportedOperationException("Unbalanced group");
+                    }
+                    index += 1;
+                    int[] quantifier = parseQuantifier();
+                    child.min = quantifier[0];
+                    child.max = quantifier[1];
+                    if (child.max > 1) {
+                        child.loop = loopCount++;
+                    }
+                    checkQuantifierEnd();
+                    terms.add(child);
+                } else if (c == '$') {
+                    index += 1;
+                    checkQuantifierEnd();
+                    terms.add(Dollar::new);
+                } else {
+                    CharSet set = parseAtom();
+                    int[] quantifier = parseQuantifier();
+                    boolean lazy = hasMore() && peek() == '?';
+                    if (lazy) {
+                        index += 1;
+                    }
+                    checkQuantifierEnd();
+                    terms.add(new CharTerm(set, quantifier[0], quantifier[1], lazy));
+                }
+            }
+        }
+
+        private void checkQuantifierEnd() {
+            if (hasMore() && "?*+{".indexOf(peek()) >= 0) {
+                throw new UnsupportedOperationException("Quantifier");
+            }
+        }
+
+        private int[] parseQuantifier() {
+            int min = 1;
+            int max = 1;
+            if (hasMore()) {
+                switch (peek()) {
+                    case '?':
+                        min = 0;
+                        index += 1;
+                        break;
+                    case '*':
+                        min = 0;
+                        max = Integer.MAX_VALUE;
+                        index += 1;
+                        break;
+                    case '+':
+                        max = Integer.MAX_VALUE;
+                        index += 1;
+                        break;
+                    case '{':
+                        int end = regex.indexOf('}', index);
+                        if (end < 0) {
+                            throw new UnsupportedOperationException("Quantifier");
+                        }
+                        String[] values = regex.substring(index + 1, end).split(",", -1);
+                        try {
+                            min = Integer.parseInt(values[0]);
+                            if (values.length == 1) {
+                                max = min;
+                            } else if (values.length == 2) {
+                                max = values[1].isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(values[1]);
+                            } else {
+                                throw new UnsupportedOperationException("Quantifier");
+                            }
+                        } catch (NumberFormatException e) {
+                            throw new UnsupportedOperationException("Quantifier");
+                        }
+                        index = end + 1;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return new int[] {min, max};
+        }
+
+        private CharSet parseAtom() {
+            char c = regex.charAt(index++);
+            switch (c) {
+                case '.':
+                    return CharSet.all();
+                case '[':
+                    return parseClass();
+                case '\\':
+                    return parseEscape();
+                case '^':
+                case '{':
+                case '*':
+                case '+':
+                case '?':
+                    throw new UnsupportedOperationException("Special character");
+                default:
+                    return CharSet.of(c);
+            }
+        }
+
+        private CharSet parseEscape() {
+            if (!hasMore()) {
+                throw new UnsupportedOperationException("Escape");
+            }
+            char c = regex.charAt(index++);
+            CharSet set = new CharSet();
+            switch (c) {
+                case 'd':
+                case 'D':
+                    set.addRange('0', '9');
+                    return c == 'd' ? set : set.negate();
+                case 's':
+                case 'S':
+                    set = CharSet.of(' ', '\t', '\n', '\u000B', '\f', '\r');
+                    return c == 's' ? set : set.negate();
+                case 'w':
+                case 'W':
+                    set.addRange('a', 'z');
+                    set.addRange('A', 'Z');
+                    set.addRange('0', '9');
+                    set.add('_');
+                    return c == 'w' ? set : set.negate();
+                case 't':
+                    return CharSet.of('\t');
+                case 'n':
+                    return CharSet.of('\n');
+                case 'r':
+                    return CharSet.of('\r');
+                case 'f':
+                    return CharSet.of('\f');
+                case '0':
+                    return CharSet.of(parseOctal());
+                case 'x':
+                    return CharSet.of(parseHex(2));
+                case 'u':
+                    return CharSet.of(parseHex(4));
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        throw new UnsupportedOperationException("Escape");
+                    }
+                    return CharSet.of(c);
+            }
+        }
+
+        private char parseOctal() {
+            int length = hasMore() && peek() <= '3' ? 3 : 2;
+            int value = 0;
+            int digits = 0;
+            while (digits < length && hasMore() && peek() >= '0' && peek() <= '7') {
+                value = value * 8 + regex.charAt(index++) - '0';
+                digits += 1;
+            }
+            if (digits == 0) {
+                throw new UnsupportedOperationException("Escape");
+            }
+            return (char) value;
+        }
+
+        private char parseHex(int length) {
+            int value = 0;
+            for (int i = 0; i < length; i++) {
+                int digit = hasMore() ? Character.digit(regex.charAt(index++), 16) : -1;
+                if (digit < 0) {
+                    throw new UnsupportedOperationException("Escape");
+                }
+                value = value * 16 + digit;
+            }
+            return (char) value;
+        }
+
+        private CharSet parseClass() {
+            boolean negate = hasMore() && peek() == '^';
+            if (negate) {
+                index += 1;
+            }
+            CharSet set = new CharSet();
+            boolean first = true;
+            while (true) {
+                if (!hasMore()) {
+                    throw new UnsupportedOperationException("Class");
+                }
+                char c = regex.charAt(index++);
+                if (c == ']') {
+                    if (first) {
+                        throw new UnsupportedOperationException("Class");
+                    }
+                    break;
+                }
+                first = false;
+                CharSet item;
+                if (c == '\\') {
+                    item = parseEscape();
+                    if (regex.startsWith("-", index) && !regex.startsWith("-]", index)) {
+                        throw new UnsupportedOperationException("Class");
+                    }
+                } else if (c == '[' || c == '&' && hasMore() && peek() == '&') {
+                    throw new UnsupportedOperationException("Class");
+                } else if (hasMore() && peek() == '-' && index + 1 < regex.length()
+                        && regex.charAt(index + 1) != ']') {
+                    char to = regex.charAt(index + 1);
+                    if (to == '\\' || to == '[' || to < c) {
+                        throw new UnsupportedOperationException("Class");
+                    }
+                    index += 2;
+                    item = new CharSet();
+                    item.addRange(c, to);
+                } else {
+                    item = CharSet.of(c);
+                }
+                set.addAll(item);
+            }
+            return negate ? set.negate() : set;
+        }
+
+    }
+
+}
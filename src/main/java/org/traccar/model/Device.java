@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -88,7 +88,7 @@ public class Device extends GroupedModel {
         this.positionId = positionId;
     }
 
-    private List<Long> geofenceIds;
+    private volatile List<Long> geofenceIds;
 
     @QueryIgnore
     public List<Long> getGeofenceIds() {
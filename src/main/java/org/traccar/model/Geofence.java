@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -23,6 +23,7 @@ import org.traccar.database.QueryIgnore;
 import org.traccar.geofence.GeofenceCircle;
 import org.traccar.geofence.GeofenceGeometry;
 import org.traccar.geofence.GeofencePolygon;
+import org.traccar.geofence.GeofencePreparedPolygon;
 import org.traccar.geofence.GeofencePolyline;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -63,8 +64,12 @@ public class Geofence extends ScheduledModel {
 
         if (area.startsWith("CIRCLE")) {
             geometry = new GeofenceCircle(area);
-        } else if (area.startsWith("POLYGON")) {
-            geometry = new GeofencePolygon(area);
+        } else if (area.startsWith("POLYGON") || area.startsWith("MULTIPOLYGON")) {
+            if (GeofencePreparedPolygon.isPreferred(area)) {
+                geometry = new GeofencePreparedPolygon(area);
+            } else {
+                geometry = new GeofencePolygon(area);
+            }
         } else if (area.startsWith("LINESTRING")) {
             final double distance = getDouble("polylineDistance");
             geometry = new GeofencePolyline(area, distance > 0 ? distance
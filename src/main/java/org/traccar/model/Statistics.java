@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2017 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,31 @@ import java.util.Map;
 
 public class Statistics extends ExtendedModel {
 
+    public static final String KEY_STORAGE_BATCHES = "storageBatches";
+    public static final String KEY_STORAGE_BATCH_SIZE = "storageBatchSize";
+    public static final String KEY_STORAGE_FLUSH_TIME = "storageFlushTime";
+    public static final String KEY_STORAGE_QUEUE_MAX = "storageQueueMax";
+    public static final String KEY_SPOOL_WRITTEN = "spoolWritten";
+    public static final String KEY_SPOOL_REPLAYED = "spoolReplayed";
+    public static final String KEY_SPOOL_PENDING_MAX = "spoolPendingMax";
+    public static final String KEY_PROCESSING_TASKS = "processingTasks";
+    public static final String KEY_PROCESSING_QUEUE_TIME = "processingQueueTime";
+    public static final String KEY_PROCESSING_QUEUE_TIME_MAX = "processingQueueTimeMax";
+    public static final String KEY_PROCESSING_RUN_TIME = "processingRunTime";
+    public static final String KEY_BACKPRESSURE_PAUSES = "backpressurePauses";
+    public static final String KEY_BACKPRESSURE_TIME = "backpressureTime";
+    public static final String KEY_BACKPRESSURE_CHANNELS_MAX = "backpressureChannelsMax";
+    public static final String KEY_DETECTION_HITS = "detectionHits";
+    public static final String KEY_DETECTION_MISSES = "detectionMisses";
+    public static final String KEY_GEOFENCE_CHECKS = "geofenceChecks";
+    public static final String KEY_GEOFENCE_SKIPPED = "geofenceSkipped";
+    public static final String KEY_GEOFENCE_SKIP_RATIO = "geofenceSkipRatio";
+    public static final String KEY_MESSAGE_RATE = "messageRate";
+    public static final String KEY_MESSAGE_RATE_MAX = "messageRateMax";
+    public static final String KEY_MESSAGE_LATENCY = "messageLatency";
+    public static final String KEY_MESSAGE_LATENCY_MAX = "messageLatencyMax";
+    public static final String KEY_PROCESSING_PENDING_MAX = "processingPendingMax";
+
     private Date captureTime;
 
     public Date getCaptureTime() {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2019 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@ package org.traccar.protocol;
 
 import org.traccar.BaseProtocol;
 import org.traccar.PipelineBuilder;
+import org.traccar.ProtocolSignature;
 import org.traccar.TrackerServer;
 import org.traccar.model.Command;
 
@@ -31,6 +32,9 @@ public class Gl200Protocol extends BaseProtocol {
                 Command.TYPE_ENGINE_RESUME,
                 Command.TYPE_IDENTIFICATION,
                 Command.TYPE_REBOOT_DEVICE);
+        addSignature(ProtocolSignature.textPrefix(
+                "+RESP:", "+BUFF:", "+ACK", "+RSP", "+BSP", "+EVT", "+BVT", "+INF", "+BNF", "+HBD", "+CRD", "+BRD",
+                "+LGN"));
         addServer(new TrackerServer(false, getName()) {
             @Override
             protected void addProtocolHandlers(PipelineBuilder pipeline) {
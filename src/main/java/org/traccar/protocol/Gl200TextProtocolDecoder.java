@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2021 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,6 +24,7 @@ import org.traccar.config.Keys;
 import org.traccar.helper.BitUtil;
 import org.traccar.helper.Parser;
 import org.traccar.helper.PatternBuilder;
+import org.traccar.helper.PatternScanner;
 import org.traccar.helper.UnitsConverter;
 import org.traccar.model.CellTower;
 import org.traccar.model.Network;
@@ -53,7 +54,7 @@ public class Gl200TextProtocolDecoder extends BaseProtocolDecoder {
         ignoreFixTime = Context.getConfig().getBoolean(Keys.PROTOCOL_IGNORE_FIX_TIME.withPrefix(getProtocolName()));
     }
 
-    private static final Pattern PATTERN_ACK = new PatternBuilder()
+    private static final PatternScanner PATTERN_ACK = new PatternBuilder()
             .text("+ACK:GT")
             .expression("...,")                  // type
             .number("([0-9A-Z]{2}xxxx),")        // protocol version
@@ -63,9 +64,9 @@ public class Gl200TextProtocolDecoder extends BaseProtocolDecoder {
             .number("(dd)(dd)(dd),")             // time (hhmmss)
             .number("(xxxx)")                    // counter
             .text("$").optional()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_INF = new PatternBuilder()
+    private static final PatternScanner PATTERN_INF = new PatternBuilder()
             .text("+").expression("(?:RESP|BUFF):GTINF,")
             .number("[0-9A-Z]{2}xxxx,")          // protocol version
             .number("(d{15}|x{14}),")            // imei
@@ -104,9 +105,9 @@ public class Gl200TextProtocolDecoder extends BaseProtocolDecoder {
             .number("(dd)(dd)(dd),")             // time (hhmmss)
             .number("(xxxx)")                    // counter
             .text("$").optional()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_VER = new PatternBuilder()
+    private static final PatternScanner PATTERN_VER = new PatternBuilder()
             .text("+").expression("(?:RESP|BUFF):GTVER,")
             .number("[0-9A-Z]{2}xxxx,")          // protocol version
             .number("(d{15}|x{14}),")            // imei
@@ -118,9 +119,9 @@ public class Gl200TextProtocolDecoder extends BaseProtocolDecoder {
             .number("(dd)(dd)(dd),")             // time (hhmmss)
             .number("(xxxx)")                    // counter
             .text("$").optional()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_LOCATION = new PatternBuilder()
+    private static final PatternScanner PATTERN_LOCATION = new PatternBuilder()
             .number("(d{1,2}.?d?)?,")            // hdop
             .number("(d{1,3}.d)?,")              // speed
             .number("(d{1,3}.?d?)?,")            // course
@@ -140,9 +141,9 @@ public class Gl200TextProtocolDecoder extends BaseProtocolDecoder {
             .number("(x+)?,")                    // cid
             .groupEnd()
             .number("(?:d+|(d+.d))?,")           // rssi / odometer
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_OBD = new PatternBuilder()
+    private static final PatternScanner PATTERN_OBD = new PatternBuilder()
             .text("+RESP:GTOBD,")
             .number("[0-9A-Z]{2}xxxx,")          // protocol version
             .number("(d{15}|x{14}),")            // imei
@@ -175,9 +176,9 @@ public class Gl200TextProtocolDecoder extends BaseProtocolDecoder {
             .text(",")
             .number("(xxxx)")                    // count number
             .text("$").optional()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_FRI = new PatternBuilder()
+    private static final PatternScanner PATTERN_FRI = new PatternBuilder()
             .text("+").expression("(?:RESP|BUFF):GT...,")
             .number("(?:[0-9A-Z]{2}xxxx)?,")     // protocol version
             .number("(d{15}|x{14}),")            // imei
@@ -220,9 +221,9 @@ public class Gl200TextProtocolDecoder extends BaseProtocolDecoder {
             .text(",")
             .number("(xxxx)")                    // count number
             .text("$").optional()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_ERI = new PatternBuilder()
+    private static final PatternScanner PATTERN_ERI = new PatternBuilder()
             .text("+").expression("(?:RESP|BUFF):GTERI,")
             .number("(?:[0-9A-Z]{2}xxxx)?,")     // protocol version
             .number("(d{15}|x{14}),")            // imei
@@ -258,9 +259,9 @@ public class Gl200TextProtocolDecoder extends BaseProtocolDecoder {
             .text(",")
             .number("(xxxx)")                    // count number
             .text("$").optional()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_IGN = new PatternBuilder()
+    private static final PatternScanner PATTERN_IGN = new PatternBuilder()
             .text("+").expression("(?:RESP|BUFF):GTIG[NF],")
             .number("(?:[0-9A-Z]{2}xxxx)?,")     // protocol version
             .number("(d{15}|x{14}),")            // imei
@@ -274,9 +275,9 @@ public class Gl200TextProtocolDecoder extends BaseProtocolDecoder {
             .text(",")
             .number("(xxxx)")                    // count number
             .text("$").optional()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_LSW = new PatternBuilder()
+    private static final PatternScanner PATTERN_LSW = new PatternBuilder()
             .text("+RESP:").expression("GT[LT]SW,")
             .number("(?:[0-9A-Z]{2}xxxx)?,")     // protocol version
             .number("(d{15}|x{14}),")            // imei
@@ -289,9 +290,9 @@ public class Gl200TextProtocolDecoder extends BaseProtocolDecoder {
             .text(",")
             .number("(xxxx)")                    // count number
             .text("$").optional()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_IDA = new PatternBuilder()
+    private static final PatternScanner PATTERN_IDA = new PatternBuilder()
             .text("+RESP:GTIDA,")
             .number("(?:[0-9A-Z]{2}xxxx)?,")     // protocol version
             .number("(d{15}|x{14}),")            // imei
@@ -307,9 +308,9 @@ public class Gl200TextProtocolDecoder extends BaseProtocolDecoder {
             .text(",")
             .number("(xxxx)")                    // count number
             .text("$").optional()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_WIF = new PatternBuilder()
+    private static final PatternScanner PATTERN_WIF = new PatternBuilder()
             .text("+RESP:GTWIF,")
             .number("(?:[0-9A-Z]{2}xxxx)?,")     // protocol version
             .number("(d{15}|x{14}),")            // imei
@@ -322,9 +323,9 @@ public class Gl200TextProtocolDecoder extends BaseProtocolDecoder {
             .text(",")
             .number("(xxxx)")                    // count number
             .text("$").optional()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_GSM = new PatternBuilder()
+    private static final PatternScanner PATTERN_GSM = new PatternBuilder()
             .text("+RESP:GTGSM,")
             .number("(?:[0-9A-Z]{2}xxxx)?,")     // protocol version
             .number("(d{15}|x{14}),")            // imei
@@ -335,9 +336,9 @@ public class Gl200TextProtocolDecoder extends BaseProtocolDecoder {
             .text(",")
             .number("(xxxx)")                    // count number
             .text("$").optional()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_PNA = new PatternBuilder()
+    private static final PatternScanner PATTERN_PNA = new PatternBuilder()
             .text("+RESP:GT").expression("P[NF]A,")
             .number("(?:[0-9A-Z]{2}xxxx)?,")     // protocol version
             .number("(d{15}|x{14}),")            // imei
@@ -347,9 +348,9 @@ public class Gl200TextProtocolDecoder extends BaseProtocolDecoder {
             .text(",")
             .number("(xxxx)")                    // count number
             .text("$").optional()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN = new PatternBuilder()
+    private static final PatternScanner PATTERN = new PatternBuilder()
             .text("+").expression("(?:RESP|BUFF):GT...,")
             .number("(?:[0-9A-Z]{2}xxxx)?,")     // protocol version
             .number("(d{15}|x{14}),")            // imei
@@ -369,9 +370,9 @@ public class Gl200TextProtocolDecoder extends BaseProtocolDecoder {
             .text(",")
             .number("(xxxx)")                    // count number
             .text("$").optional()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_BASIC = new PatternBuilder()
+    private static final PatternScanner PATTERN_BASIC = new PatternBuilder()
             .text("+").expression("(?:RESP|BUFF)").text(":")
             .expression("GT...,")
             .number("(?:[0-9A-Z]{2}xxxx)?,").optional() // protocol version
@@ -396,7 +397,7 @@ public class Gl200TextProtocolDecoder extends BaseProtocolDecoder {
             .text(",")
             .number("(xxxx)")                    // count number
             .text("$").optional()
-            .compile();
+            .compileScanner();
 
     private Object decodeAck(Channel channel, SocketAddress remoteAddress, String sentence, String type) {
         Parser parser = new Parser(PATTERN_ACK, sentence);
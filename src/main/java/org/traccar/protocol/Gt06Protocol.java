@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2019 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@ package org.traccar.protocol;
 
 import org.traccar.BaseProtocol;
 import org.traccar.PipelineBuilder;
+import org.traccar.ProtocolSignature;
 import org.traccar.TrackerServer;
 import org.traccar.model.Command;
 
@@ -27,6 +28,7 @@ public class Gt06Protocol extends BaseProtocol {
                 Command.TYPE_ENGINE_STOP,
                 Command.TYPE_ENGINE_RESUME,
                 Command.TYPE_CUSTOM);
+        addSignature(ProtocolSignature.hexPrefix("7878", "7979"));
         addServer(new TrackerServer(false, getName()) {
             @Override
             protected void addProtocolHandlers(PipelineBuilder pipeline) {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -29,6 +29,7 @@ import org.traccar.helper.BitUtil;
 import org.traccar.helper.DateBuilder;
 import org.traccar.helper.Parser;
 import org.traccar.helper.PatternBuilder;
+import org.traccar.helper.PatternScanner;
 import org.traccar.model.CellTower;
 import org.traccar.model.Network;
 import org.traccar.model.Position;
@@ -39,7 +40,6 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.TimeZone;
-import java.util.regex.Pattern;
 
 public class H02ProtocolDecoder extends BaseProtocolDecoder {
 
@@ -159,7 +159,7 @@ public class H02ProtocolDecoder extends BaseProtocolDecoder {
         return position;
     }
 
-    private static final Pattern PATTERN = new PatternBuilder()
+    private static final PatternScanner PATTERN = new PatternBuilder()
             .text("*")
             .expression("..,")                   // manufacturer
             .number("(d+)?,")                    // imei
@@ -213,9 +213,9 @@ public class H02ProtocolDecoder extends BaseProtocolDecoder {
             .or()
             .groupEnd()
             .text("#")
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_NBR = new PatternBuilder()
+    private static final PatternScanner PATTERN_NBR = new PatternBuilder()
             .text("*")
             .expression("..,")                   // manufacturer
             .number("(d+),")                     // imei
@@ -229,9 +229,9 @@ public class H02ProtocolDecoder extends BaseProtocolDecoder {
             .number("(dd)(dd)(dd),")             // date (ddmmyy)
             .number("(x{8})")                    // status
             .any()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_LINK = new PatternBuilder()
+    private static final PatternScanner PATTERN_LINK = new PatternBuilder()
             .text("*")
             .expression("..,")                   // manufacturer
             .number("(d+),")                     // imei
@@ -245,9 +245,9 @@ public class H02ProtocolDecoder extends BaseProtocolDecoder {
             .number("(dd)(dd)(dd),")             // date (ddmmyy)
             .number("(x{8})")                    // status
             .any()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_V3 = new PatternBuilder()
+    private static final PatternScanner PATTERN_V3 = new PatternBuilder()
             .text("*")
             .expression("..,")                   // manufacturer
             .number("(d+),")                     // imei
@@ -263,9 +263,9 @@ public class H02ProtocolDecoder extends BaseProtocolDecoder {
             .number("(dd)(dd)(dd),")             // date (ddmmyy)
             .number("(x{8})")                    // status
             .text("#").optional()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_VP1 = new PatternBuilder()
+    private static final PatternScanner PATTERN_VP1 = new PatternBuilder()
             .text("*hq,")
             .number("(d{15}),")                  // imei
             .text("VP1,")
@@ -285,15 +285,15 @@ public class H02ProtocolDecoder extends BaseProtocolDecoder {
             .number("(dd)(dd)(dd)")              // date (ddmmyy)
             .groupEnd()
             .any()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_HTBT = new PatternBuilder()
+    private static final PatternScanner PATTERN_HTBT = new PatternBuilder()
             .text("*HQ,")
             .number("(d{15}),")                  // imei
             .text("HTBT,")
             .number("(d+)")                      // battery
             .any()
-            .compile();
+            .compileScanner();
 
     private void sendResponse(Channel channel, SocketAddress remoteAddress, String id, String type) {
         if (channel != null && id != null) {
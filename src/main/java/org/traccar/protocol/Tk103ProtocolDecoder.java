@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2021 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -26,13 +26,13 @@ import org.traccar.helper.BitUtil;
 import org.traccar.helper.DateBuilder;
 import org.traccar.helper.Parser;
 import org.traccar.helper.PatternBuilder;
+import org.traccar.helper.PatternScanner;
 import org.traccar.model.CellTower;
 import org.traccar.model.Network;
 import org.traccar.model.Position;
 import org.traccar.model.WifiAccessPoint;
 
 import java.net.SocketAddress;
-import java.util.regex.Pattern;
 
 public class Tk103ProtocolDecoder extends BaseProtocolDecoder {
 
@@ -43,7 +43,7 @@ public class Tk103ProtocolDecoder extends BaseProtocolDecoder {
         decodeLow = Context.getConfig().getBoolean(Keys.PROTOCOL_DECODE_LOW.withPrefix(getProtocolName()));
     }
 
-    private static final Pattern PATTERN = new PatternBuilder()
+    private static final PatternScanner PATTERN = new PatternBuilder()
             .text("(").optional()
             .groupBegin()
             .expression("(.{12})")               // device id
@@ -81,9 +81,9 @@ public class Tk103ProtocolDecoder extends BaseProtocolDecoder {
             .any()
             .number("([+-]ddd.d)?")              // temperature
             .text(")").optional()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_BATTERY = new PatternBuilder()
+    private static final PatternScanner PATTERN_BATTERY = new PatternBuilder()
             .text("(").optional()
             .number("(d+),")                     // device id
             .text("ZC20,")
@@ -94,9 +94,9 @@ public class Tk103ProtocolDecoder extends BaseProtocolDecoder {
             .number("(d+),")                     // power voltage
             .number("d+")                        // installed
             .any()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_NETWORK = new PatternBuilder()
+    private static final PatternScanner PATTERN_NETWORK = new PatternBuilder()
             .text("(").optional()
             .number("(d{12})")                   // device id
             .text("BZ00,")
@@ -105,9 +105,9 @@ public class Tk103ProtocolDecoder extends BaseProtocolDecoder {
             .number("(x+),")                     // lac
             .number("(x+),")                     // cid
             .any()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_LBSWIFI = new PatternBuilder()
+    private static final PatternScanner PATTERN_LBSWIFI = new PatternBuilder()
             .text("(").optional()
             .number("(d+),")                     // device id
             .expression("(.{4}),")               // command
@@ -120,9 +120,9 @@ public class Tk103ProtocolDecoder extends BaseProtocolDecoder {
             .number("(dd)(dd)(dd),")             // date (ddmmyy)
             .number("(dd)(dd)(dd)")              // time (hhmmss)
             .any()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_COMMAND_RESULT = new PatternBuilder()
+    private static final PatternScanner PATTERN_COMMAND_RESULT = new PatternBuilder()
             .text("(").optional()
             .number("(d+),")                     // device id
             .expression(".{4},")                 // command
@@ -130,15 +130,15 @@ public class Tk103ProtocolDecoder extends BaseProtocolDecoder {
             .number("(dd)(dd)(dd),")             // time (hhmmss)
             .expression("\\$([\\s\\S]*?)(?:\\$|$)") // message
             .any()
-            .compile();
+            .compileScanner();
 
-    private static final Pattern PATTERN_VIN = new PatternBuilder()
+    private static final PatternScanner PATTERN_VIN = new PatternBuilder()
             .text("(")
             .number("(d+)")                      // device id
             .expression("BV00")                  // command
             .expression("(.{17})")               // vin
             .text(")")
-            .compile();
+            .compileScanner();
 
     private String decodeAlarm(int value) {
         switch (value) {
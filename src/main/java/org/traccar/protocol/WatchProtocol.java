@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2019 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@ package org.traccar.protocol;
 
 import org.traccar.BaseProtocol;
 import org.traccar.PipelineBuilder;
+import org.traccar.ProtocolSignature;
 import org.traccar.TrackerServer;
 import org.traccar.model.Command;
 
@@ -40,6 +41,22 @@ public class WatchProtocol extends BaseProtocol {
                 Command.TYPE_VOICE_MESSAGE,
                 Command.TYPE_SET_TIMEZONE,
                 Command.TYPE_SET_INDICATOR);
+        addSignature(buf -> {
+            int length = Math.min(buf.readableBytes(), 5);
+            for (int i = 0; i < length; i++) {
+                byte b = buf.getByte(buf.readerIndex() + i);
+                if (i == 0) {
+                    if (b != '[') {
+                        return ProtocolSignature.Result.MISMATCH;
+                    }
+                } else if (b == '*') {
+                    return i > 1 ? ProtocolSignature.Result.MATCH : ProtocolSignature.Result.MISMATCH;
+                } else if (!Character.isLetterOrDigit(b)) {
+                    return ProtocolSignature.Result.MISMATCH;
+                }
+            }
+            return length < 5 ? ProtocolSignature.Result.MORE : ProtocolSignature.Result.MISMATCH;
+        });
         addServer(new TrackerServer(false, getName()) {
             @Override
             protected void addProtocolHandlers(PipelineBuilder pipeline) {
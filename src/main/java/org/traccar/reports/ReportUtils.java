@@ -48,6 +48,7 @@ import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -170,18 +171,7 @@ public final class ReportUtils {
     }
 
     private static TripReport calculateTrip(
-            ArrayList<Position> positions, int startIndex, int endIndex, boolean ignoreOdometer) {
-
-        Position startTrip = positions.get(startIndex);
-        Position endTrip = positions.get(endIndex);
-
-        double speedMax = 0;
-        for (int i = startIndex; i <= endIndex; i++) {
-            double speed = positions.get(i).getSpeed();
-            if (speed > speedMax) {
-                speedMax = speed;
-            }
-        }
+            Position startTrip, Position endTrip, double speedMax, boolean ignoreOdometer) {
 
         TripReport trip = new TripReport();
 
@@ -236,11 +226,7 @@ public final class ReportUtils {
         return trip;
     }
 
-    private static StopReport calculateStop(
-            ArrayList<Position> positions, int startIndex, int endIndex, boolean ignoreOdometer) {
-
-        Position startStop = positions.get(startIndex);
-        Position endStop = positions.get(endIndex);
+    private static StopReport calculateStop(Position startStop, Position endStop, boolean ignoreOdometer) {
 
         StopReport stop = new StopReport();
 
@@ -285,80 +271,105 @@ public final class ReportUtils {
     }
 
     private static <T extends BaseReport> T calculateTripOrStop(
-            ArrayList<Position> positions, int startIndex, int endIndex, boolean ignoreOdometer, Class<T> reportClass) {
+            Position start, Position end, double speedMax, boolean ignoreOdometer, Class<T> reportClass) {
 
         if (reportClass.equals(TripReport.class)) {
-            return (T) calculateTrip(positions, startIndex, endIndex, ignoreOdometer);
+            return (T) calculateTrip(start, end, speedMax, ignoreOdometer);
         } else {
-            return (T) calculateStop(positions, startIndex, endIndex, ignoreOdometer);
+            return (T) calculateStop(start, end, ignoreOdometer);
         }
     }
 
-    private static boolean isMoving(ArrayList<Position> positions, int index, TripsConfig tripsConfig) {
+    private static boolean isMoving(Position previous, Position position, Position next, TripsConfig tripsConfig) {
         if (tripsConfig.getMinimalNoDataDuration() > 0) {
-            boolean beforeGap = index < positions.size() - 1
-                    && positions.get(index + 1).getFixTime().getTime() - positions.get(index).getFixTime().getTime()
+            boolean beforeGap = next != null
+                    && next.getFixTime().getTime() - position.getFixTime().getTime()
                     >= tripsConfig.getMinimalNoDataDuration();
-            boolean afterGap = index > 0
-                    && positions.get(index).getFixTime().getTime() - positions.get(index - 1).getFixTime().getTime()
+            boolean afterGap = previous != null
+                    && position.getFixTime().getTime() - previous.getFixTime().getTime()
                     >= tripsConfig.getMinimalNoDataDuration();
             if (beforeGap || afterGap) {
                 return false;
             }
         }
-        if (positions.get(index).getAttributes().containsKey(Position.KEY_MOTION)
-                && positions.get(index).getAttributes().get(Position.KEY_MOTION) instanceof Boolean) {
-            return positions.get(index).getBoolean(Position.KEY_MOTION);
+        if (position.getAttributes().containsKey(Position.KEY_MOTION)
+                && position.getAttributes().get(Position.KEY_MOTION) instanceof Boolean) {
+            return position.getBoolean(Position.KEY_MOTION);
         } else {
-            return positions.get(index).getSpeed() > tripsConfig.getSpeedThreshold();
+            return position.getSpeed() > tripsConfig.getSpeedThreshold();
         }
     }
 
+    /**
+     * Detect trips or stops in a single pass. Only the previous and the next position are kept besides the current
+     * trip or stop boundaries, so positions can be streamed directly from the database.
+     */
     public static <T extends BaseReport> Collection<T> detectTripsAndStops(
             IdentityManager identityManager, DeviceManager deviceManager,
-            Collection<Position> positionCollection,
+            Iterable<Position> positions,
             TripsConfig tripsConfig, boolean ignoreOdometer, Class<T> reportClass) {
 
         Collection<T> result = new ArrayList<>();
 
-        ArrayList<Position> positions = new ArrayList<>(positionCollection);
-        if (!positions.isEmpty()) {
+        Iterator<Position> iterator = positions.iterator();
+        if (iterator.hasNext()) {
             boolean trips = reportClass.equals(TripReport.class);
             MotionEventHandler  motionHandler = new MotionEventHandler(identityManager, deviceManager, tripsConfig);
             DeviceState deviceState = new DeviceState();
-            deviceState.setMotionState(isMoving(positions, 0, tripsConfig));
-            int startEventIndex = trips == deviceState.getMotionState() ? 0 : -1;
-            int startNoEventIndex = -1;
-            for (int i = 0; i < positions.size(); i++) {
-                Map<Event, Position> event = motionHandler.updateMotionState(deviceState, positions.get(i),
-                        isMoving(positions, i, tripsConfig));
-                if (startEventIndex == -1
+
+            Position previous = null;
+            Position position = iterator.next();
+            Position next = iterator.hasNext() ? iterator.next() : null;
+
+            boolean moving = isMoving(previous, position, next, tripsConfig);
+            deviceState.setMotionState(moving);
+            Position startEvent = trips == deviceState.getMotionState() ? position : null;
+            Position startNoEvent = null;
+            double speedMax = 0;
+            double speedMaxNoEvent = 0;
+
+            while (position != null) {
+                Map<Event, Position> event = motionHandler.updateMotionState(deviceState, position, moving);
+                if (startEvent == null
                         && (trips != deviceState.getMotionState() && deviceState.getMotionPosition() != null
                         || trips == deviceState.getMotionState() && event != null)) {
-                    startEventIndex = i;
-                    startNoEventIndex = -1;
-                } else if (trips != deviceState.getMotionState() && startEventIndex != -1
+                    startEvent = position;
+                    startNoEvent = null;
+                    speedMax = 0;
+                } else if (trips != deviceState.getMotionState() && startEvent != null
                         && deviceState.getMotionPosition() == null && event == null) {
-                    startEventIndex = -1;
+                    startEvent = null;
+                }
+                if (startEvent != null) {
+                    speedMax = Math.max(speedMax, position.getSpeed());
                 }
-                if (startNoEventIndex == -1
+                if (startNoEvent == null
                         && (trips == deviceState.getMotionState() && deviceState.getMotionPosition() != null
                         || trips != deviceState.getMotionState() && event != null)) {
-                    startNoEventIndex = i;
-                } else if (startNoEventIndex != -1 && deviceState.getMotionPosition() == null && event == null) {
-                    startNoEventIndex = -1;
+                    startNoEvent = position;
+                    speedMaxNoEvent = speedMax;
+                } else if (startNoEvent != null && deviceState.getMotionPosition() == null && event == null) {
+                    startNoEvent = null;
                 }
-                if (startEventIndex != -1 && startNoEventIndex != -1 && event != null
+                if (startEvent != null && startNoEvent != null && event != null
                         && trips != deviceState.getMotionState()) {
-                    result.add(calculateTripOrStop(positions, startEventIndex, startNoEventIndex,
-                            ignoreOdometer, reportClass));
-                    startEventIndex = -1;
+                    result.add(calculateTripOrStop(
+                            startEvent, startNoEvent, speedMaxNoEvent, ignoreOdometer, reportClass));
+                    startEvent = null;
+                }
+
+                if (next == null) {
+                    break;
                 }
+                previous = position;
+                position = next;
+                next = iterator.hasNext() ? iterator.next() : null;
+                moving = isMoving(previous, position, next, tripsConfig);
             }
-            if (startEventIndex != -1 && (startNoEventIndex != -1 || !trips)) {
-                result.add(calculateTripOrStop(positions, startEventIndex,
-                            startNoEventIndex != -1 ? startNoEventIndex : positions.size() - 1,
-                            ignoreOdometer, reportClass));
+            if (startEvent != null && (startNoEvent != null || !trips)) {
+                result.add(calculateTripOrStop(
+                        startEvent, startNoEvent != null ? startNoEvent : position,
+                        startNoEvent != null ? speedMaxNoEvent : speedMax, ignoreOdometer, reportClass));
             }
         }
 
@@ -37,13 +37,12 @@ public final class Route {
     private Route() {
     }
 
-    public static Collection<Position> getObjects(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
-            Date from, Date to) throws SQLException {
+    public static Collection<Long> getDevices(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
+            Date from, Date to) {
         ReportUtils.checkPeriodLimit(from, to);
-        ArrayList<Position> result = new ArrayList<>();
-        for (long deviceId: ReportUtils.getDeviceList(deviceIds, groupIds)) {
+        Collection<Long> result = ReportUtils.getDeviceList(deviceIds, groupIds);
+        for (long deviceId: result) {
             Context.getPermissionsManager().checkDevice(userId, deviceId);
-            result.addAll(Context.getDataManager().getPositions(deviceId, from, to));
         }
         return result;
     }
@@ -31,8 +31,10 @@ import org.traccar.Context;
 import org.traccar.Main;
 import org.traccar.database.DeviceManager;
 import org.traccar.database.IdentityManager;
+import org.traccar.database.QueryCursor;
 import org.traccar.model.Device;
 import org.traccar.model.Group;
+import org.traccar.model.Position;
 import org.traccar.reports.model.DeviceReport;
 import org.traccar.reports.model.StopReport;
 
@@ -48,9 +50,11 @@ public final class Stops {
         IdentityManager identityManager = Main.getInjector().getInstance(IdentityManager.class);
         DeviceManager deviceManager = Main.getInjector().getInstance(DeviceManager.class);
 
-        return ReportUtils.detectTripsAndStops(
-                identityManager, deviceManager, Context.getDataManager().getPositions(deviceId, from, to),
-                Context.getTripsConfig(), ignoreOdometer, StopReport.class);
+        try (QueryCursor<Position> positions = Context.getDataManager().getPositionsCursor(deviceId, from, to)) {
+            return ReportUtils.detectTripsAndStops(
+                    identityManager, deviceManager, positions,
+                    Context.getTripsConfig(), ignoreOdometer, StopReport.class);
+        }
     }
 
     public static Collection<StopReport> getObjects(
@@ -28,6 +28,7 @@ import java.util.Date;
 
 import org.jxls.util.JxlsHelper;
 import org.traccar.Context;
+import org.traccar.database.QueryCursor;
 import org.traccar.helper.UnitsConverter;
 import org.traccar.model.Position;
 import org.traccar.reports.model.SummaryReport;
@@ -37,22 +38,13 @@ public final class Summary {
     private Summary() {
     }
 
-    private static SummaryReport calculateSummaryResult(long deviceId, Collection<Position> positions) {
+    private static SummaryReport calculateSummaryResult(
+            long deviceId, Position firstPosition, Position previousPosition, double maxSpeed) {
         SummaryReport result = new SummaryReport();
         result.setDeviceId(deviceId);
         result.setDeviceName(Context.getIdentityManager().getById(deviceId).getName());
-        if (positions != null && !positions.isEmpty()) {
-            Position firstPosition = null;
-            Position previousPosition = null;
-            for (Position position : positions) {
-                if (firstPosition == null) {
-                    firstPosition = position;
-                }
-                previousPosition = position;
-                if (position.getSpeed() > result.getMaxSpeed()) {
-                    result.setMaxSpeed(position.getSpeed());
-                }
-            }
+        if (firstPosition != null) {
+            result.setMaxSpeed(maxSpeed);
             boolean ignoreOdometer = Context.getDeviceManager()
                     .lookupAttributeBoolean(deviceId, "report.ignoreOdometer", false, false, true);
             result.setDistance(ReportUtils.calculateDistance(firstPosition, previousPosition, !ignoreOdometer));
@@ -99,24 +91,33 @@ public final class Summary {
     private static Collection<SummaryReport> calculateSummaryResults(
             long userId, long deviceId, Date from, Date to, boolean daily) throws SQLException {
 
-        ArrayList<Position> positions = new ArrayList<>(Context.getDataManager().getPositions(deviceId, from, to));
-
         ArrayList<SummaryReport> results = new ArrayList<>();
-        if (daily && !positions.isEmpty()) {
-            int startIndex = 0;
-            int startDay = getDay(userId, positions.iterator().next().getFixTime());
-            for (int i = 0; i < positions.size(); i++) {
-                int currentDay = getDay(userId, positions.get(i).getFixTime());
-                if (currentDay != startDay) {
-                    results.add(calculateSummaryResult(deviceId, positions.subList(startIndex, i)));
-                    startIndex = i;
+
+        Position firstPosition = null;
+        Position previousPosition = null;
+        double maxSpeed = 0;
+        int startDay = 0;
+        try (QueryCursor<Position> positions = Context.getDataManager().getPositionsCursor(deviceId, from, to)) {
+            for (Position position : positions) {
+                if (daily) {
+                    int currentDay = getDay(userId, position.getFixTime());
+                    if (firstPosition != null && currentDay != startDay) {
+                        results.add(calculateSummaryResult(deviceId, firstPosition, previousPosition, maxSpeed));
+                        firstPosition = null;
+                        maxSpeed = 0;
+                    }
                     startDay = currentDay;
                 }
+                if (firstPosition == null) {
+                    firstPosition = position;
+                }
+                previousPosition = position;
+                if (position.getSpeed() > maxSpeed) {
+                    maxSpeed = position.getSpeed();
+                }
             }
-            results.add(calculateSummaryResult(deviceId, positions.subList(startIndex, positions.size())));
-        } else {
-            results.add(calculateSummaryResult(deviceId, positions));
         }
+        results.add(calculateSummaryResult(deviceId, firstPosition, previousPosition, maxSpeed));
 
         return results;
     }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2020 - 2021 Anton Tananaev (anton@traccar.org)
+ * Copyright 2020 - 2022 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import java.util.concurrent.ScheduledExecutorService;
 public class ScheduleManager {
 
     private ScheduledExecutorService executor;
+    private ScheduledExecutorService backgroundExecutor;
 
     public void start() {
 
@@ -29,6 +30,13 @@ public class ScheduleManager {
         new TaskDeviceInactivityCheck().schedule(executor);
         new TaskWebSocketKeepalive().schedule(executor);
 
+        // long running database tasks use a separate thread to avoid delaying periodic notifications
+        backgroundExecutor = Executors.newSingleThreadScheduledExecutor();
+
+        new TaskPartitionMaintenance().schedule(backgroundExecutor);
+        new TaskPositionArchive().schedule(backgroundExecutor);
+        new TaskAttributesMigration().schedule(backgroundExecutor);
+
     }
 
     public void stop() {
@@ -37,6 +45,10 @@ public class ScheduleManager {
             executor.shutdown();
             executor = null;
         }
+        if (backgroundExecutor != null) {
+            backgroundExecutor.shutdown();
+            backgroundExecutor = null;
+        }
 
     }
 
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.schedule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.Context;
+import org.traccar.config.Keys;
+import org.traccar.database.DataManager;
+
+import java.sql.SQLException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class TaskAttributesMigration implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskAttributesMigration.class);
+
+    private static final long CHECK_PERIOD_MINUTES = 10;
+
+    private boolean completed;
+
+    public void schedule(ScheduledExecutorService executor) {
+        executor.scheduleAtFixedRate(this, CHECK_PERIOD_MINUTES, CHECK_PERIOD_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void run() {
+        DataManager dataManager = Context.getDataManager();
+        if (!completed && dataManager != null && dataManager.getBinaryAttributes()) {
+            int limit = Context.getConfig().getInteger(Keys.DATABASE_BINARY_ATTRIBUTES_MIGRATION_LIMIT);
+            try {
+                int count = dataManager.migrateBinaryAttributes(limit);
+                if (count > 0) {
+                    LOGGER.info("Converted attributes of {} positions", count);
+                }
+                completed = count < limit;
+            } catch (SQLException | RuntimeException e) {
+                LOGGER.warn("Attributes migration error", e);
+            }
+        }
+    }
+
+}
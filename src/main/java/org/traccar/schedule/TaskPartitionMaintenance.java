@@ -0,0 +1,53 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.schedule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.Context;
+import org.traccar.database.PartitionManager;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class TaskPartitionMaintenance implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskPartitionMaintenance.class);
+
+    private static final long CHECK_PERIOD_HOURS = 1;
+
+    public void schedule(ScheduledExecutorService executor) {
+        executor.scheduleAtFixedRate(this, 0, CHECK_PERIOD_HOURS, TimeUnit.HOURS);
+    }
+
+    @Override
+    public void run() {
+        PartitionManager partitionManager = Context.getDataManager() != null
+                ? Context.getDataManager().getPartitionManager() : null;
+        if (partitionManager != null) {
+            try {
+                // create next partition in advance to avoid delaying the first write of the month
+                partitionManager.ensurePartition(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)));
+                partitionManager.removeExpiredPartitions();
+            } catch (SQLException | RuntimeException e) {
+                LOGGER.warn("Partition maintenance error", e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.schedule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.Context;
+import org.traccar.database.PositionArchive;
+import org.traccar.model.Device;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class TaskPositionArchive implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskPositionArchive.class);
+
+    private static final long CHECK_PERIOD_HOURS = 6;
+
+    public void schedule(ScheduledExecutorService executor) {
+        executor.scheduleAtFixedRate(this, 1, CHECK_PERIOD_HOURS, TimeUnit.HOURS);
+    }
+
+    @Override
+    public void run() {
+        PositionArchive positionArchive = Context.getDataManager() != null
+                ? Context.getDataManager().getPositionArchive() : null;
+        if (positionArchive != null) {
+            for (Device device : Context.getDeviceManager().getAllDevices()) {
+                try {
+                    positionArchive.archiveDevice(
+                            Context.getDataManager(), device.getId(),
+                            Context.getDeviceManager().getLastPosition(device.getId()));
+                } catch (SQLException | IOException | RuntimeException e) {
+                    LOGGER.warn("Position archive error", e);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package org.traccar;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+import org.traccar.handler.DefaultDataHandler;
+import org.traccar.handler.FilterHandler;
+import org.traccar.handler.GeocoderHandler;
+import org.traccar.handler.RemoteAddressHandler;
+import org.traccar.handler.TimeHandler;
+import org.traccar.handler.events.GeofenceEventHandler;
+import org.traccar.model.Position;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BasePipelineFactoryTest {
+
+    @Test
+    public void testHandlerName() {
+        assertEquals("geofenceEvent", BasePipelineFactory.getHandlerName(GeofenceEventHandler.class));
+        assertEquals("defaultData", BasePipelineFactory.getHandlerName(DefaultDataHandler.class));
+    }
+
+    @Test
+    public void testSelectHandlers() {
+        List<Class<? extends ChannelHandler>> all = BasePipelineFactory.selectHandlers(null);
+
+        List<Class<? extends ChannelHandler>> selected = BasePipelineFactory.selectHandlers("defaultData, time");
+        assertEquals(List.of(TimeHandler.class, DefaultDataHandler.class), selected);
+
+        selected = BasePipelineFactory.selectHandlers("-geocoder,-unknown");
+        assertEquals(all.size() - 1, selected.size());
+        assertFalse(selected.contains(GeocoderHandler.class));
+
+        selected = BasePipelineFactory.selectHandlers("time,filter,-filter");
+        assertEquals(List.of(TimeHandler.class), selected);
+    }
+
+    private static class TestDataHandler extends BaseDataHandler {
+
+        private final int value;
+
+        TestDataHandler(int value) {
+            this.value = value;
+        }
+
+        @Override
+        protected Position handlePosition(Position position) {
+            if (position.getDeviceId() == value) {
+                return null;
+            }
+            position.set("value" + value, true);
+            return position;
+        }
+
+    }
+
+    @Test
+    public void testFuseHandlers() {
+        ChannelHandler first = new TestDataHandler(1);
+        ChannelHandler second = new TestDataHandler(2);
+        ChannelHandler remoteAddress = new RemoteAddressHandler();
+        ChannelHandler third = new TestDataHandler(3);
+
+        List<ChannelHandler> fused = BasePipelineFactory.fuseHandlers(List.of(first, second, remoteAddress, third));
+        assertEquals(3, fused.size());
+        assertTrue(fused.get(0) instanceof CompositeDataHandler);
+        assertSame(remoteAddress, fused.get(1));
+        assertSame(third, fused.get(2));
+        assertFalse(CompositeDataHandler.isFusible(remoteAddress));
+
+        EmbeddedChannel channel = new EmbeddedChannel(fused.get(0));
+        assertSame(first, BasePipelineFactory.getHandler(channel.pipeline(), TestDataHandler.class));
+        assertNull(BasePipelineFactory.getHandler(channel.pipeline(), FilterHandler.class));
+
+        Position position = new Position("test");
+        channel.writeInbound(position);
+        Position result = channel.readInbound();
+        assertTrue(result.getBoolean("value1"));
+        assertTrue(result.getBoolean("value2"));
+
+        position = new Position("test");
+        position.setDeviceId(1);
+        channel.writeInbound(position);
+        assertNull(channel.readInbound());
+    }
+
+}
@@ -0,0 +1,97 @@
+package org.traccar;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class CharacterDelimiterFrameDecoderTest extends ProtocolTest {
+
+    private static List<String> decode(ChannelHandler decoder, String data, Random random) {
+        EmbeddedChannel channel = new EmbeddedChannel(decoder);
+        List<String> result = new ArrayList<>();
+        int index = 0;
+        while (index < data.length()) {
+            int length = Math.min(data.length() - index, 1 + random.nextInt(8));
+            try {
+                channel.writeInbound(Unpooled.copiedBuffer(
+                        data.substring(index, index + length), StandardCharsets.ISO_8859_1));
+            } catch (DecoderException e) {
+                result.add("error");
+            }
+            index += length;
+            ByteBuf frame;
+            while ((frame = channel.readInbound()) != null) {
+                result.add(frame.toString(StandardCharsets.ISO_8859_1));
+                frame.release();
+            }
+        }
+        return result;
+    }
+
+    private static ByteBuf[] delimiters(String... delimiters) {
+        ByteBuf[] result = new ByteBuf[delimiters.length];
+        for (int i = 0; i < delimiters.length; i++) {
+            result[i] = Unpooled.copiedBuffer(delimiters[i], StandardCharsets.ISO_8859_1);
+        }
+        return result;
+    }
+
+    private static void verifyCompatible(boolean strip, String data, String... delimiters) {
+        for (int seed = 0; seed < 20; seed++) {
+            assertEquals(
+                    decode(new DelimiterBasedFrameDecoder(16, strip, delimiters(delimiters)), data, new Random(seed)),
+                    decode(new CharacterDelimiterFrameDecoder(16, strip, delimiters), data, new Random(seed)));
+        }
+    }
+
+    @Test
+    public void testCompatibility() {
+        verifyCompatible(true, "abc#def##g#", "#");
+        verifyCompatible(true, "abc##def####g##h#", "##");
+        verifyCompatible(false, "a#\r\nb#c\r\nd#\r\n", "#\r\n", "#", "\r\n");
+        verifyCompatible(true, "a;\0b;c;\0;\0", ";\0", ";");
+        verifyCompatible(true, "@R#@abc@E#@def@R#@", "@R#@", "@E#@");
+        verifyCompatible(true, "0123456789abcdefghij#short#0123456789abcdefghijklmnop#x#", "#");
+        verifyCompatible(false, "0123456789abcdefghij\r\nok\r\n", "\r\n", "\n");
+        verifyCompatible(true, "first\r\nsecond\0third\n", "\0", "\n", "\r\n");
+    }
+
+    @Test
+    public void testDecode() throws Exception {
+
+        var decoder = new CharacterDelimiterFrameDecoder(1024, "\0", "\n", "\r\n");
+        ByteBuf buf = buffer("first\r\nsecond");
+
+        assertEquals(buffer("first"), decoder.decode(null, buf));
+        assertNull(decoder.decode(null, buf));
+
+        buf.writeCharSequence("\0third\n", StandardCharsets.US_ASCII);
+        assertEquals(buffer("second"), decoder.decode(null, buf));
+        assertEquals(buffer("third"), decoder.decode(null, buf));
+        assertNull(decoder.decode(null, buf));
+
+        decoder = new CharacterDelimiterFrameDecoder(4, '#');
+        try {
+            decoder.decode(null, buffer("toolong#"));
+            fail();
+        } catch (TooLongFrameException e) {
+            assertEquals("frame length exceeds 4: 7 - discarded", e.getMessage());
+        }
+
+    }
+
+}
@@ -0,0 +1,109 @@
+package org.traccar;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+import org.traccar.protocol.Gl200Protocol;
+import org.traccar.protocol.Gt06Protocol;
+import org.traccar.protocol.WatchProtocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DetectorServerTest extends ProtocolTest {
+
+    private static ProtocolSignature.Result match(BaseProtocol protocol, ByteBuf buf) {
+        ProtocolSignature.Result result = ProtocolSignature.Result.MISMATCH;
+        for (ProtocolSignature signature : protocol.getSignatures()) {
+            ProtocolSignature.Result current = signature.match(buf);
+            if (current == ProtocolSignature.Result.MATCH) {
+                return current;
+            } else if (current == ProtocolSignature.Result.MORE) {
+                result = current;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testSignatures() {
+        BaseProtocol gt06 = new Gt06Protocol();
+        assertEquals(ProtocolSignature.Result.MATCH, match(gt06, binary("78780d01012345678901234500018cdd0d0a")));
+        assertEquals(ProtocolSignature.Result.MORE, match(gt06, binary("78")));
+        assertEquals(ProtocolSignature.Result.MISMATCH, match(gt06, binary("7880")));
+
+        BaseProtocol gl200 = new Gl200Protocol();
+        assertEquals(ProtocolSignature.Result.MATCH, match(gl200, buffer("+RESP:GTFRI,")));
+        assertEquals(ProtocolSignature.Result.MORE, match(gl200, buffer("+RE")));
+        assertEquals(ProtocolSignature.Result.MISMATCH, match(gl200, buffer("+XYZ")));
+
+        BaseProtocol watch = new WatchProtocol();
+        assertEquals(ProtocolSignature.Result.MATCH, match(watch, buffer("[SG*8800000015*0002*LK]")));
+        assertEquals(ProtocolSignature.Result.MATCH, match(watch, buffer("[3G*")));
+        assertEquals(ProtocolSignature.Result.MORE, match(watch, buffer("[SG")));
+        assertEquals(ProtocolSignature.Result.MISMATCH, match(watch, buffer("[*")));
+        assertEquals(ProtocolSignature.Result.MISMATCH, match(watch, buffer("SG*")));
+    }
+
+    private static class TestHandler extends ChannelInboundHandlerAdapter {
+
+        private boolean active;
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            active = true;
+            super.channelActive(ctx);
+        }
+
+    }
+
+    @Test
+    public void testDetection() {
+        TestHandler first = new TestHandler();
+        TestHandler second = new TestHandler();
+        DetectorServer server = new DetectorServer(List.of(
+                new DetectorServer.Candidate(
+                        "first", List.of(ProtocolSignature.textPrefix("$ABC")),
+                        channel -> channel.pipeline().addLast(first)),
+                new DetectorServer.Candidate(
+                        "second", List.of(ProtocolSignature.hexPrefix("7878")),
+                        channel -> channel.pipeline().addLast(second))),
+                null, 0, 0);
+
+        EmbeddedChannel channel = new EmbeddedChannel(server.createHandler());
+        channel.writeInbound(buffer("$A"));
+        assertNotSame(first, channel.pipeline().first());
+        assertFalse(first.active);
+        channel.writeInbound(buffer("BC,1"));
+        assertTrue(first.active);
+        assertSame(first, channel.pipeline().first());
+        ByteBuf data = channel.readInbound();
+        assertEquals("$ABC,1", data.toString(StandardCharsets.US_ASCII));
+        data.release();
+        channel.writeInbound(buffer("next"));
+        data = channel.readInbound();
+        assertEquals("next", data.toString(StandardCharsets.US_ASCII));
+        data.release();
+
+        channel = new EmbeddedChannel(server.createHandler());
+        channel.writeInbound(binary("7878"));
+        assertTrue(second.active);
+
+        channel = new EmbeddedChannel(server.createHandler());
+        channel.writeInbound(buffer("GET / HTTP/1.1"));
+        assertFalse(channel.isOpen());
+
+        assertEquals(2, server.getDetectionHits());
+        assertEquals(1, server.getDetectionMisses());
+        assertEquals(List.of("first", "second"), server.getProtocols());
+    }
+
+}
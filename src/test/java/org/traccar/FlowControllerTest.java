@@ -0,0 +1,77 @@
+package org.traccar;
+
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlowControllerTest {
+
+    @Test
+    public void testWaterMarks() {
+        Config config = new Config();
+        config.setString(Keys.SERVER_BACKPRESSURE_HIGH, "100");
+        config.setString(Keys.SERVER_BACKPRESSURE_LOW, "50");
+        FlowController flowController = new FlowController(config, null);
+        FlowController.Source first = flowController.createSource();
+        FlowController.Source second = flowController.createSource();
+
+        EmbeddedChannel channel = new EmbeddedChannel(DefaultChannelId.newInstance());
+        flowController.addChannel(channel);
+
+        first.update(60);
+        second.update(30);
+        assertFalse(flowController.isPaused());
+        assertTrue(channel.config().isAutoRead());
+
+        second.update(40);
+        assertTrue(flowController.isPaused());
+        assertFalse(channel.config().isAutoRead());
+        assertEquals(1, flowController.getPausedChannels());
+
+        EmbeddedChannel newChannel = new EmbeddedChannel(DefaultChannelId.newInstance());
+        flowController.addChannel(newChannel);
+        assertFalse(newChannel.config().isAutoRead());
+
+        first.update(20);
+        assertTrue(flowController.isPaused());
+
+        second.update(10);
+        assertFalse(flowController.isPaused());
+        assertTrue(channel.config().isAutoRead());
+        assertTrue(newChannel.config().isAutoRead());
+        assertEquals(1, flowController.getPauseCount());
+    }
+
+    @Test
+    public void testDrainBeforePause() throws Exception {
+        Config config = new Config();
+        config.setString(Keys.SERVER_BACKPRESSURE_HIGH, "100");
+        config.setString(Keys.SERVER_BACKPRESSURE_LOW, "50");
+        FlowController flowController = new FlowController(config, null);
+        FlowController.Source source = flowController.createSource();
+
+        EmbeddedChannel channel = new EmbeddedChannel(DefaultChannelId.newInstance());
+        flowController.addChannel(channel);
+
+        Thread thread = new Thread(() -> source.update(100));
+        synchronized (flowController) {
+            thread.start();
+            while (thread.getState() != Thread.State.BLOCKED) {
+                Thread.sleep(1);
+            }
+            source.update(0);
+        }
+        thread.join();
+
+        assertFalse(flowController.isPaused());
+        assertTrue(channel.config().isAutoRead());
+        assertEquals(0, flowController.getPauseCount());
+    }
+
+}
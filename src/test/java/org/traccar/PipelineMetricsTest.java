@@ -0,0 +1,101 @@
+package org.traccar;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+import org.traccar.model.Position;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PipelineMetricsTest {
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class SleepHandler extends ChannelInboundHandlerAdapter {
+
+        private final long delay;
+
+        SleepHandler(long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            sleep(delay);
+            ctx.fireChannelRead(msg);
+        }
+
+    }
+
+    @Test
+    public void testNestedStages() {
+        PipelineMetrics metrics = new PipelineMetrics();
+        PipelineMetrics.Stage outer = metrics.getStage("test", "outer");
+        PipelineMetrics.Stage inner = metrics.getStage("test", "inner");
+        assertSame(outer, metrics.getStage("test", "outer"));
+
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new WrapperInboundHandler(new SleepHandler(10), outer),
+                new WrapperInboundHandler(new SleepHandler(50), inner));
+        channel.writeInbound("message");
+        assertEquals("message", channel.readInbound());
+
+        assertEquals(1, outer.getCount());
+        assertEquals(1, inner.getCount());
+        assertTrue(inner.getTime() >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(outer.getTime() >= TimeUnit.MILLISECONDS.toNanos(10));
+        assertTrue(outer.getTime() < TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(inner.getTime(), inner.getMaxTime());
+
+        long[] buckets = inner.getBuckets();
+        long total = 0;
+        for (long bucket : buckets) {
+            total += bucket;
+        }
+        assertEquals(1, total);
+    }
+
+    private static class TestDataHandler extends BaseDataHandler {
+
+        @Override
+        protected Position handlePosition(Position position) {
+            sleep(1);
+            return position;
+        }
+
+    }
+
+    @Test
+    public void testCompositeStages() {
+        PipelineMetrics metrics = new PipelineMetrics();
+        List<PipelineMetrics.Stage> stages = List.of(metrics.getStage("test", "first"), metrics.getStage("test", "second"));
+        EmbeddedChannel channel = new EmbeddedChannel(new CompositeDataHandler(
+                List.of(new TestDataHandler(), new TestDataHandler()), stages));
+        channel.writeInbound(new Position("test"));
+        channel.writeInbound(new Position("test"));
+
+        for (PipelineMetrics.Stage stage : stages) {
+            assertEquals(2, stage.getCount());
+            assertTrue(stage.getTime() >= TimeUnit.MILLISECONDS.toNanos(2));
+        }
+
+        String text = metrics.formatPrometheus();
+        assertTrue(text.contains("# TYPE traccar_pipeline_handler_seconds histogram"));
+        assertTrue(text.contains(
+                "traccar_pipeline_handler_seconds_bucket{protocol=\"test\",handler=\"first\",le=\"+Inf\"} 2"));
+        assertTrue(text.contains("traccar_pipeline_handler_seconds_count{protocol=\"test\",handler=\"second\"} 2"));
+    }
+
+}
@@ -0,0 +1,124 @@
+package org.traccar;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.handler.ProcessingHandler;
+import org.traccar.model.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProcessingExecutorTest {
+
+    private ProcessingExecutor createExecutor() {
+        Config config = new Config();
+        config.setString(Keys.PROCESSING_EXECUTOR, "pool");
+        config.setString(Keys.PROCESSING_THREADS, "4");
+        return new ProcessingExecutor(config, null, null);
+    }
+
+    @Test
+    public void testKeyOrder() throws Exception {
+        ProcessingExecutor executor = createExecutor();
+        int keys = 10;
+        int count = 200;
+        List<List<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < keys; i++) {
+            results.add(new ArrayList<>());
+        }
+        CountDownLatch latch = new CountDownLatch(keys * count);
+        AtomicBoolean outside = new AtomicBoolean();
+        for (int i = 0; i < count; i++) {
+            for (int key = 0; key < keys; key++) {
+                int index = i;
+                List<Integer> result = results.get(key);
+                executor.execute(key, () -> {
+                    if (!executor.inEventLoop()) {
+                        outside.set(true);
+                    }
+                    synchronized (result) {
+                        result.add(index);
+                    }
+                    latch.countDown();
+                });
+            }
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertFalse(outside.get());
+        assertFalse(executor.inEventLoop());
+        for (List<Integer> result : results) {
+            synchronized (result) {
+                for (int i = 0; i < count; i++) {
+                    assertEquals(i, (int) result.get(i));
+                }
+            }
+        }
+        executor.shutdownGracefully();
+    }
+
+    @Test
+    public void testUnkeyedOrder() throws Exception {
+        ProcessingExecutor executor = createExecutor();
+        int count = 200;
+        List<Integer> result = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            executor.execute(() -> {
+                synchronized (result) {
+                    result.add(index);
+                }
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        synchronized (result) {
+            for (int i = 0; i < count; i++) {
+                assertEquals(i, (int) result.get(i));
+            }
+        }
+        executor.shutdownGracefully();
+    }
+
+    @Test
+    public void testPipeline() throws Exception {
+        ProcessingExecutor executor = createExecutor();
+        CountDownLatch latch = new CountDownLatch(3);
+        List<Long> devices = new ArrayList<>();
+        EmbeddedChannel channel = new EmbeddedChannel();
+        channel.pipeline().addLast(new ProcessingHandler(executor));
+        channel.pipeline().addLast(executor, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                if (ctx.executor().inEventLoop() && ctx.executor() == executor) {
+                    synchronized (devices) {
+                        devices.add(((Position) msg).getDeviceId());
+                    }
+                }
+                latch.countDown();
+            }
+        });
+        for (long deviceId = 1; deviceId <= 3; deviceId++) {
+            Position position = new Position("test");
+            position.setDeviceId(deviceId);
+            channel.writeInbound(position);
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        synchronized (devices) {
+            assertEquals(3, devices.size());
+        }
+        executor.shutdownGracefully();
+    }
+
+}
@@ -24,6 +24,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.function.BiConsumer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -33,6 +34,22 @@ import static org.junit.Assert.assertTrue;
 
 public class ProtocolTest extends BaseTest {
 
+    private static BiConsumer<BaseProtocolDecoder, Object> decodeListener;
+
+    /**
+     * Listener receives every sample passed to a decoder by verify methods. Benchmarks use it to collect samples.
+     */
+    public static void setDecodeListener(BiConsumer<BaseProtocolDecoder, Object> decodeListener) {
+        ProtocolTest.decodeListener = decodeListener;
+    }
+
+    private Object decode(BaseProtocolDecoder decoder, Object object) throws Exception {
+        if (decodeListener != null) {
+            decodeListener.accept(decoder, object);
+        }
+        return decoder.decode(null, null, object);
+    }
+
     protected Position position(String time, boolean valid, double lat, double lon) throws ParseException {
 
         Position position = new Position();
@@ -96,7 +113,7 @@ public class ProtocolTest extends BaseTest {
     }
 
     protected void verifyNotNull(BaseProtocolDecoder decoder, Object object) throws Exception {
-        assertNotNull(decoder.decode(null, null, object));
+        assertNotNull(decode(decoder, object));
     }
 
     protected void verifyNull(Object object) {
@@ -104,11 +121,11 @@ public class ProtocolTest extends BaseTest {
     }
 
     protected void verifyNull(BaseProtocolDecoder decoder, Object object) throws Exception {
-        assertNull(decoder.decode(null, null, object));
+        assertNull(decode(decoder, object));
     }
 
     protected void verifyAttribute(BaseProtocolDecoder decoder, Object object, String key, Object expected) throws Exception {
-        Object decodedObject = decoder.decode(null, null, object);
+        Object decodedObject = decode(decoder, object);
         Position position;
         if (decodedObject instanceof Collection) {
             position = (Position) ((Collection) decodedObject).iterator().next();
@@ -129,27 +146,27 @@ public class ProtocolTest extends BaseTest {
     }
 
     protected void verifyAttributes(BaseProtocolDecoder decoder, Object object) throws Exception {
-        verifyDecodedPosition(decoder.decode(null, null, object), false, true, null);
+        verifyDecodedPosition(decode(decoder, object), false, true, null);
     }
 
     protected void verifyPosition(BaseProtocolDecoder decoder, Object object) throws Exception {
-        verifyDecodedPosition(decoder.decode(null, null, object), true, false, null);
+        verifyDecodedPosition(decode(decoder, object), true, false, null);
     }
 
     protected void verifyPosition(BaseProtocolDecoder decoder, Object object, Position position) throws Exception {
-        verifyDecodedPosition(decoder.decode(null, null, object), true, false, position);
+        verifyDecodedPosition(decode(decoder, object), true, false, position);
     }
 
     protected void verifyPositions(BaseProtocolDecoder decoder, Object object) throws Exception {
-        verifyDecodedList(decoder.decode(null, null, object), true, null);
+        verifyDecodedList(decode(decoder, object), true, null);
     }
 
     protected void verifyPositions(BaseProtocolDecoder decoder, boolean checkLocation, Object object) throws Exception {
-        verifyDecodedList(decoder.decode(null, null, object), checkLocation, null);
+        verifyDecodedList(decode(decoder, object), checkLocation, null);
     }
 
     protected void verifyPositions(BaseProtocolDecoder decoder, Object object, Position position) throws Exception {
-        verifyDecodedList(decoder.decode(null, null, object), true, position);
+        verifyDecodedList(decode(decoder, object), true, position);
     }
 
     private void verifyDecodedList(Object decodedObject, boolean checkLocation, Position expected) {
@@ -0,0 +1,101 @@
+package org.traccar.database;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.traccar.model.CellTower;
+import org.traccar.model.Network;
+import org.traccar.model.Position;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveSegmentTest {
+
+    @Test
+    public void testWriteRead() throws Exception {
+
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        Position first = new Position("gps103");
+        first.setId(100);
+        first.setDeviceId(1);
+        first.setTime(new Date(1600000000000L));
+        first.setServerTime(new Date(1600000001000L));
+        first.setValid(true);
+        first.setLatitude(55.7522200);
+        first.setLongitude(-37.6155600);
+        first.setAltitude(150.5);
+        first.setSpeed(12.34);
+        first.setCourse(270.5);
+        first.setAccuracy(3.2);
+        first.setAddress("Main Street");
+        first.setNetwork(new Network(CellTower.from(250, 1, 100, 200)));
+        first.set(Position.KEY_IGNITION, true);
+        first.set(Position.KEY_SATELLITES, 7);
+        first.set(Position.KEY_ODOMETER, 12345678901L);
+        first.set(Position.KEY_POWER, 12.5);
+        first.set(Position.KEY_DRIVER_UNIQUE_ID, "driver");
+        first.getAttributes().put("custom", Map.of("key", "value"));
+
+        Position second = new Position("gps103");
+        second.setId(105);
+        second.setDeviceId(1);
+        second.setTime(new Date(1600000010000L));
+        second.setServerTime(new Date(1600000011000L));
+        second.setLatitude(55.7522300);
+        second.setLongitude(-37.6155500);
+        second.set(Position.KEY_IGNITION, false);
+
+        Path file = Files.createTempFile("segment", ".seg");
+        try {
+            ArchiveSegment.write(objectMapper, file, List.of(first, second));
+
+            Iterator<Position> iterator = ArchiveSegment.read(objectMapper, file);
+
+            Position position = iterator.next();
+            assertEquals(100, position.getId());
+            assertEquals(1, position.getDeviceId());
+            assertEquals("gps103", position.getProtocol());
+            assertEquals(first.getFixTime(), position.getFixTime());
+            assertEquals(first.getDeviceTime(), position.getDeviceTime());
+            assertEquals(first.getServerTime(), position.getServerTime());
+            assertTrue(position.getValid());
+            assertEquals(55.7522200, position.getLatitude(), 0.00000001);
+            assertEquals(-37.6155600, position.getLongitude(), 0.00000001);
+            assertEquals(150.5, position.getAltitude(), 0.01);
+            assertEquals(12.34, position.getSpeed(), 0.001);
+            assertEquals(270.5, position.getCourse(), 0.01);
+            assertEquals(3.2, position.getAccuracy(), 0.01);
+            assertEquals("Main Street", position.getAddress());
+            assertEquals(200, position.getNetwork().getCellTowers().iterator().next().getCellId().longValue());
+            assertEquals(true, position.getAttributes().get(Position.KEY_IGNITION));
+            assertEquals(7, position.getAttributes().get(Position.KEY_SATELLITES));
+            assertEquals(12345678901L, position.getAttributes().get(Position.KEY_ODOMETER));
+            assertEquals(12.5, position.getAttributes().get(Position.KEY_POWER));
+            assertEquals("driver", position.getAttributes().get(Position.KEY_DRIVER_UNIQUE_ID));
+            assertEquals(Map.of("key", "value"), position.getAttributes().get("custom"));
+
+            position = iterator.next();
+            assertEquals(105, position.getId());
+            assertFalse(position.getValid());
+            assertNull(position.getAddress());
+            assertNull(position.getNetwork());
+            assertEquals(55.7522300, position.getLatitude(), 0.00000001);
+            assertEquals(false, position.getAttributes().get(Position.KEY_IGNITION));
+
+            assertFalse(iterator.hasNext());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
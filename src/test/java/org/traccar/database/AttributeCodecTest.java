@@ -0,0 +1,38 @@
+package org.traccar.database;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.traccar.model.Position;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AttributeCodecTest {
+
+    @Test
+    public void testEncodeDecode() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put(Position.KEY_IGNITION, true);
+        attributes.put(Position.KEY_SATELLITES, 7);
+        attributes.put(Position.KEY_ODOMETER, 12345678901L);
+        attributes.put(Position.KEY_POWER, 12.6);
+        attributes.put(Position.KEY_VIN, "1HGCM82633A004352");
+        attributes.put("io239", -1);
+        attributes.put("custom", List.of(1, 2));
+
+        byte[] data = AttributeCodec.encode(objectMapper, attributes);
+        assertTrue(data.length < objectMapper.writeValueAsBytes(attributes).length);
+
+        Map<String, Object> decoded = AttributeCodec.decode(objectMapper, data);
+        assertEquals(attributes, decoded);
+        assertEquals(List.copyOf(attributes.keySet()), List.copyOf(decoded.keySet()));
+    }
+
+}
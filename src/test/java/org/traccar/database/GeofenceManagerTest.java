@@ -0,0 +1,70 @@
+package org.traccar.database;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.traccar.model.Geofence;
+import org.traccar.model.Position;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class GeofenceManagerTest {
+
+    private static Geofence createGeofence(long id, String area) throws Exception {
+        Geofence geofence = new Geofence();
+        geofence.setId(id);
+        geofence.setArea(area);
+        return geofence;
+    }
+
+    private static Position createPosition(long deviceId, double latitude, double longitude) {
+        Position position = new Position("test");
+        position.setDeviceId(deviceId);
+        position.setLatitude(latitude);
+        position.setLongitude(longitude);
+        return position;
+    }
+
+    @Test
+    public void testAffectedDevices() throws Exception {
+        GeofenceManager geofenceManager = new GeofenceManager(null);
+        geofenceManager.addNewItem(createGeofence(1, "CIRCLE (10 10, 1000)"));
+        geofenceManager.addNewItem(createGeofence(2, "CIRCLE (20 20, 1000)"));
+
+        Envelope previousArea = geofenceManager.getById(1).getGeometry().getEnvelope();
+        geofenceManager.updateCachedItem(createGeofence(1, "CIRCLE (11 11, 1000)"));
+
+        Map<Long, Position> positions = new HashMap<>();
+        positions.put(1L, createPosition(1, 10, 10)); // inside old area
+        positions.put(2L, createPosition(2, 30, 30)); // far from old and new area
+        positions.put(3L, createPosition(3, 30, 30)); // linked to changed geofence
+        positions.put(4L, createPosition(4, 20, 20)); // unlinked from geofence
+        positions.put(5L, createPosition(5, 20, 20)); // linked to unchanged geofence only
+        positions.put(6L, createPosition(6, 11, 11)); // inside new area
+
+        Map<Long, Set<Long>> previousItems = new HashMap<>();
+        previousItems.put(1L, Set.of(1L));
+        previousItems.put(2L, Set.of(1L));
+        previousItems.put(3L, Set.of(2L));
+        previousItems.put(4L, Set.of(2L));
+        previousItems.put(5L, Set.of(2L));
+        previousItems.put(6L, Set.of(1L));
+
+        Map<Long, Set<Long>> currentItems = new HashMap<>(previousItems);
+        currentItems.put(3L, Set.of(1L, 2L));
+        currentItems.remove(4L);
+
+        assertEquals(Set.of(1L, 3L, 4L, 6L), geofenceManager.getAffectedDevices(
+                previousItems, currentItems, Map.of(1L, previousArea), positions::get));
+
+        assertEquals(Set.of(3L, 4L), geofenceManager.getAffectedDevices(
+                previousItems, currentItems, Map.of(), positions::get));
+
+        assertEquals(Set.of(4L, 5L), geofenceManager.getAffectedDevices(
+                previousItems, previousItems, Map.of(2L, new Envelope()), positions::get));
+    }
+
+}
@@ -0,0 +1,81 @@
+package org.traccar.database;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Test;
+import org.traccar.BaseTest;
+import org.traccar.model.Position;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ModelBinderTest extends BaseTest {
+
+    @Test
+    public void testBindAndMap() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:binder;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE test (id INT AUTO_INCREMENT PRIMARY KEY, deviceId INT,"
+                    + " protocol VARCHAR(128), fixTime TIMESTAMP, valid BOOLEAN, latitude DOUBLE,"
+                    + " attributes VARCHAR(4000))");
+        }
+
+        Position position = new Position("test");
+        position.setDeviceId(1);
+        position.setFixTime(new Date(1000));
+        position.setValid(true);
+        position.setLatitude(10.5);
+        position.set(Position.KEY_IGNITION, true);
+
+        long id = QueryBuilder.create(dataSource, "INSERT INTO test (deviceId, protocol, fixTime, valid, latitude,"
+                + " attributes) VALUES (:deviceId, :protocol, :fixTime, :valid, :latitude, :attributes)", true)
+                .setObject(position)
+                .executeUpdate();
+
+        Collection<Position> result = QueryBuilder.create(dataSource, "SELECT * FROM test").executeQuery(Position.class);
+        assertEquals(1, result.size());
+        Position stored = result.iterator().next();
+        assertEquals(id, stored.getId());
+        assertEquals(1, stored.getDeviceId());
+        assertEquals("test", stored.getProtocol());
+        assertEquals(1000, stored.getFixTime().getTime());
+        assertTrue(stored.getValid());
+        assertEquals(10.5, stored.getLatitude(), 0.0);
+        assertTrue(stored.getBoolean(Position.KEY_IGNITION));
+    }
+
+    @Test
+    public void testBinaryAttributes() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:binary;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE test (id INT AUTO_INCREMENT PRIMARY KEY, deviceId INT,"
+                    + " attributes VARCHAR(4000), binaryAttributes BLOB)");
+            statement.execute("INSERT INTO test (deviceId, attributes) VALUES (1, '{\"sat\":5}')");
+        }
+
+        Position position = new Position();
+        position.setDeviceId(2);
+        position.set(Position.KEY_SATELLITES, 9);
+        QueryBuilder.create(dataSource, "INSERT INTO test (deviceId, binaryAttributes)"
+                + " VALUES (:deviceId, :binaryAttributes)")
+                .setObject(position)
+                .executeUpdate();
+
+        Collection<Position> result = QueryBuilder.create(dataSource, "SELECT * FROM test ORDER BY deviceId")
+                .executeQuery(Position.class);
+        assertEquals(2, result.size());
+        var iterator = result.iterator();
+        assertEquals(5, iterator.next().getInteger(Position.KEY_SATELLITES));
+        assertEquals(9, iterator.next().getInteger(Position.KEY_SATELLITES));
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.traccar.database;
+
+import org.junit.Test;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PartitionManagerTest {
+
+    @Test
+    public void testPartitionId() {
+        YearMonth partition = YearMonth.of(2022, 10);
+        long idStart = PartitionManager.getIdStart(partition);
+        assertEquals(partition, PartitionManager.getPartition(idStart));
+        assertEquals(partition, PartitionManager.getPartition(idStart + PartitionManager.ID_RANGE - 1));
+        assertEquals(partition.plusMonths(1), PartitionManager.getPartition(idStart + PartitionManager.ID_RANGE));
+        assertNull(PartitionManager.getPartition(Integer.MAX_VALUE));
+        assertEquals(YearMonth.of(1970, 1), PartitionManager.getPartition(new Date(-1000L)));
+    }
+
+    @Test
+    public void testFormatQuery() {
+        YearMonth partition = YearMonth.of(2022, 1);
+        assertEquals(
+                "SELECT tc_positions_202201.* FROM tc_positions_202201 INNER JOIN tc_devices"
+                        + " ON tc_positions_202201.id = tc_devices.positionid",
+                PartitionManager.formatQuery(
+                        "SELECT tc_positions.* FROM tc_positions INNER JOIN tc_devices"
+                                + " ON tc_positions.id = tc_devices.positionid", partition));
+        assertEquals(
+                "SELECT * FROM tc_events_202201 WHERE id = :id",
+                PartitionManager.formatQuery("SELECT * FROM tc_events WHERE id = :id", partition));
+        assertEquals(
+                "SELECT * FROM tc_positions WHERE id = :id",
+                PartitionManager.formatQuery("SELECT * FROM tc_positions WHERE id = :id", null));
+    }
+
+    private static Date date(int year, int month, int day) {
+        return Date.from(YearMonth.of(year, month).atDay(day).atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+
+    @Test
+    public void testGetPartitions() {
+        PartitionManager partitionManager = new PartitionManager(List.of(
+                YearMonth.of(2022, 6), YearMonth.of(2022, 7), YearMonth.of(2022, 9)));
+
+        assertEquals(Arrays.asList(null, YearMonth.of(2022, 6)),
+                partitionManager.getPartitions(date(2022, 5, 20), date(2022, 6, 10)));
+        assertEquals(Arrays.asList(null, YearMonth.of(2022, 6), YearMonth.of(2022, 7)),
+                partitionManager.getPartitions(date(2022, 6, 20), date(2022, 7, 10)));
+        assertEquals(Arrays.asList(null, YearMonth.of(2022, 7), YearMonth.of(2022, 9)),
+                partitionManager.getPartitions(date(2022, 7, 20), date(2022, 9, 10)));
+        assertEquals(Arrays.asList((YearMonth) null),
+                partitionManager.getPartitions(date(2022, 10, 1), date(2022, 10, 2)));
+        assertEquals(List.of(),
+                partitionManager.getPartitions(date(2022, 7, 1), date(2022, 6, 1)));
+    }
+
+    @Test
+    public void testGetPartitionsCutoverMonth() {
+        PartitionManager partitionManager = new PartitionManager(List.of(YearMonth.of(2022, 10)));
+
+        assertEquals(Arrays.asList(null, YearMonth.of(2022, 10)),
+                partitionManager.getPartitions(date(2022, 10, 1), date(2022, 10, 20)));
+    }
+
+    @Test
+    public void testGetPartitionsBefore() {
+        PartitionManager partitionManager = new PartitionManager(List.of(
+                YearMonth.of(2022, 6), YearMonth.of(2022, 7), YearMonth.of(2022, 9)));
+
+        assertEquals(Arrays.asList(null, YearMonth.of(2022, 9), YearMonth.of(2022, 7), YearMonth.of(2022, 6)),
+                partitionManager.getPartitionsBefore(date(2022, 9, 10)));
+        assertEquals(Arrays.asList(null, YearMonth.of(2022, 7), YearMonth.of(2022, 6)),
+                partitionManager.getPartitionsBefore(date(2022, 7, 10)));
+    }
+
+    @Test
+    public void testGetInsertPartition() {
+        PartitionManager partitionManager = new PartitionManager(List.of(YearMonth.of(2022, 6)));
+
+        assertEquals(YearMonth.of(2022, 6), partitionManager.getInsertPartition(date(2022, 6, 10)));
+        assertNull(partitionManager.getInsertPartition(date(2022, 5, 10)));
+        assertNull(partitionManager.getInsertPartition(date(2030, 1, 1)));
+    }
+
+}
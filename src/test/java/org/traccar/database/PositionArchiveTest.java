@@ -0,0 +1,59 @@
+package org.traccar.database;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Position;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PositionArchiveTest {
+
+    private static Position createPosition(long id, long time) {
+        Position position = new Position("test");
+        position.setId(id);
+        position.setDeviceId(1);
+        position.setTime(new Date(time));
+        return position;
+    }
+
+    @Test
+    public void testGetPrecedingPosition() throws Exception {
+        Path directory = Files.createTempDirectory("archive");
+        try {
+            ObjectMapper objectMapper = new ObjectMapper();
+            Path device = Files.createDirectories(directory.resolve("1"));
+            ArchiveSegment.write(objectMapper, device.resolve("20221001.seg"), List.of(
+                    createPosition(1, 1664625600000L), createPosition(2, 1664629200000L)));
+            ArchiveSegment.write(objectMapper, device.resolve("20221003.seg"), List.of(
+                    createPosition(3, 1664798400000L)));
+
+            Config config = new Config();
+            config.setString(Keys.DATABASE_ARCHIVE_PATH, directory.toString());
+            config.setString(Keys.DATABASE_ARCHIVE_AGE, "30");
+            PositionArchive archive = new PositionArchive(config, objectMapper);
+
+            assertEquals(2, archive.getPrecedingPosition(1, new Date(0), new Date(1664712000000L)).getId());
+            assertEquals(1, archive.getPrecedingPosition(1, new Date(0), new Date(1664625600000L)).getId());
+            assertEquals(3, archive.getPrecedingPosition(1, new Date(0), new Date(1664900000000L)).getId());
+            assertNull(archive.getPrecedingPosition(1, new Date(0), new Date(1664600000000L)));
+            assertNull(archive.getPrecedingPosition(1, new Date(1664630000000L), new Date(1664712000000L)));
+            assertNull(archive.getPrecedingPosition(2, new Date(0), new Date(1664900000000L)));
+        } finally {
+            try (var files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.traccar.database;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Position;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PositionSpoolTest {
+
+    @Test
+    public void testWriteAndReopen() throws IOException {
+        Path directory = Files.createTempDirectory("spool");
+        try {
+            Config config = new Config();
+            config.setString(Keys.DATABASE_SPOOL_PATH, directory.toString());
+            config.setString(Keys.DATABASE_SPOOL_SEGMENT_SIZE, "1024");
+            ObjectMapper objectMapper = new ObjectMapper();
+
+            PositionSpool spool = new PositionSpool(config, null, null, objectMapper);
+            assertFalse(spool.isActive());
+            for (int i = 0; i < 10; i++) {
+                Position position = new Position("test");
+                position.setDeviceId(1);
+                position.setTime(new Date(i * 1000L));
+                position.set(Position.KEY_INDEX, i);
+                spool.write(position);
+            }
+            assertTrue(spool.isActive());
+            assertEquals(10, spool.getPendingCount());
+
+            try (var files = Files.list(directory)) {
+                assertTrue(files.count() > 1);
+            }
+
+            PositionSpool reopened = new PositionSpool(config, null, null, objectMapper);
+            assertEquals(10, reopened.getPendingCount());
+            assertEquals(spool.getSize(), reopened.getSize());
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testSkipCorruptedRecord() throws Exception {
+        Path directory = Files.createTempDirectory("spool");
+        try {
+            byte[] data = "{\"deviceId\":".getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.allocate(8 + 2 * (Integer.BYTES + data.length));
+            buffer.putInt(0x54435331).putInt(8);
+            buffer.putInt(data.length).put(data);
+            buffer.putInt(data.length).put(data);
+            Files.write(directory.resolve("spool-0000000000000000.dat"), buffer.array());
+
+            Config config = new Config();
+            config.setString(Keys.DATABASE_SPOOL_PATH, directory.toString());
+            config.setString(Keys.DATABASE_SPOOL_SEGMENT_SIZE, "1024");
+
+            PositionSpool spool = new PositionSpool(config, null, null, new ObjectMapper());
+            assertEquals(2, spool.getPendingCount());
+            for (int i = 0; i < 100 && spool.isActive(); i++) {
+                Thread.sleep(100);
+            }
+            assertFalse(spool.isActive());
+            assertEquals(0, spool.getSize());
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+}
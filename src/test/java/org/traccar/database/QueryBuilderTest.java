@@ -0,0 +1,31 @@
+package org.traccar.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class QueryBuilderTest {
+
+    @Test
+    public void testParse() {
+        QueryBuilder.ParsedQuery parsedQuery = QueryBuilder.parse(
+                "SELECT * FROM tc_positions WHERE deviceId = :deviceId AND fixTime BETWEEN :from AND :to"
+                        + " AND protocol <> ':skip' AND id <> :deviceId");
+        assertEquals(
+                "SELECT * FROM tc_positions WHERE deviceId = ? AND fixTime BETWEEN ? AND ?"
+                        + " AND protocol <> ':skip' AND id <> ?",
+                parsedQuery.getSql());
+        assertArrayEquals(new int[] {1, 4}, parsedQuery.getIndexes("deviceid"));
+        assertArrayEquals(new int[] {2}, parsedQuery.getIndexes("from"));
+        assertArrayEquals(new int[0], parsedQuery.getIndexes("skip"));
+    }
+
+    @Test
+    public void testParsedQueryCache() {
+        String query = "SELECT * FROM tc_devices WHERE id = :id";
+        assertSame(QueryBuilder.getParsedQuery(query), QueryBuilder.getParsedQuery(query));
+    }
+
+}
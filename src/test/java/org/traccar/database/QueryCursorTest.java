@@ -0,0 +1,37 @@
+package org.traccar.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class QueryCursorTest {
+
+    @Test
+    public void testMerge() throws Exception {
+        List<Integer> result = new ArrayList<>();
+        try (QueryCursor<Integer> cursor = QueryCursor.merge(
+                QueryCursor.of(List.of(1, 3, 4, 8)),
+                QueryCursor.of(List.of(2, 3, 9, 10)),
+                Comparator.naturalOrder())) {
+            cursor.forEach(result::add);
+        }
+        assertEquals(List.of(1, 2, 3, 3, 4, 8, 9, 10), result);
+    }
+
+    @Test
+    public void testMergeEmpty() throws Exception {
+        List<Integer> result = new ArrayList<>();
+        try (QueryCursor<Integer> cursor = QueryCursor.merge(
+                QueryCursor.of(List.<Integer>of()),
+                QueryCursor.of(List.of(5, 6)),
+                Comparator.naturalOrder())) {
+            cursor.forEach(result::add);
+        }
+        assertEquals(List.of(5, 6), result);
+    }
+
+}
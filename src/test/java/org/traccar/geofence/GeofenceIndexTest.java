@@ -0,0 +1,165 @@
+package org.traccar.geofence;
+
+import org.junit.Test;
+import org.traccar.model.Geofence;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GeofenceIndexTest {
+
+    private static Geofence createGeofence(long id, GeofenceGeometry geometry) {
+        Geofence geofence = new Geofence();
+        geofence.setId(id);
+        geofence.setGeometry(geometry);
+        return geofence;
+    }
+
+    private static GeofenceGeometry createGeometry(Random random) throws ParseException {
+        double latitude = random.nextDouble() * 10 - 5;
+        double longitude = random.nextDouble() * 10 - 5;
+        switch (random.nextInt(3)) {
+            case 0:
+                return new GeofenceCircle(latitude, longitude, random.nextDouble() * 100000);
+            case 1:
+                StringBuilder polygon = new StringBuilder("POLYGON ((");
+                for (int i = 0; i < 6; i++) {
+                    double angle = 2 * Math.PI * i / 6;
+                    double size = random.nextDouble();
+                    polygon.append(latitude + size * Math.sin(angle)).append(' ');
+                    polygon.append(longitude + size * Math.cos(angle)).append(", ");
+                }
+                polygon.append(latitude + " " + longitude + "))");
+                return new GeofencePolygon(polygon.toString());
+            default:
+                String polyline = "LINESTRING (" + latitude + " " + longitude + ", "
+                        + (latitude + random.nextDouble() - 0.5) + " " + (longitude + random.nextDouble() - 0.5) + ")";
+                return new GeofencePolyline(polyline, random.nextDouble() * 20000);
+        }
+    }
+
+    private static List<Long> getContaining(List<Geofence> geofences, double latitude, double longitude) {
+        List<Long> result = new ArrayList<>();
+        for (Geofence geofence : geofences) {
+            if (geofence.getGeometry().containsPoint(latitude, longitude)) {
+                result.add(geofence.getId());
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testContaining() throws ParseException {
+        Random random = new Random(42);
+        List<Geofence> geofences = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            geofences.add(createGeofence(i, createGeometry(random)));
+        }
+        GeofenceIndex index = new GeofenceIndex(geofences);
+        assertEquals(1000, index.size());
+        int matched = 0;
+        for (int i = 0; i < 10000; i++) {
+            double latitude = random.nextDouble() * 12 - 6;
+            double longitude = random.nextDouble() * 12 - 6;
+            List<Long> expected = getContaining(geofences, latitude, longitude);
+            List<Long> actual = index.getContaining(latitude, longitude, id -> true);
+            expected.sort(null);
+            actual.sort(null);
+            assertEquals(expected, actual);
+            matched += expected.size();
+        }
+        assertTrue(matched > 0);
+    }
+
+    private static double[] move(double latitude, double longitude, double distance, double bearing) {
+        double angle = distance / 6378137;
+        double lat1 = Math.toRadians(latitude);
+        double lat2 = Math.asin(Math.sin(lat1) * Math.cos(angle)
+                + Math.cos(lat1) * Math.sin(angle) * Math.cos(bearing));
+        double lon2 = Math.toRadians(longitude) + Math.atan2(Math.sin(bearing) * Math.sin(angle) * Math.cos(lat1),
+                Math.cos(angle) - Math.sin(lat1) * Math.sin(lat2));
+        return new double[] {Math.toDegrees(lat2), Math.toDegrees(lon2)};
+    }
+
+    @Test
+    public void testBoundaryDistance() throws ParseException {
+        Random random = new Random(7);
+        List<Geofence> geofences = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            geofences.add(createGeofence(i, createGeometry(random)));
+        }
+        GeofenceIndex index = new GeofenceIndex(geofences);
+        int skipped = 0;
+        for (int i = 0; i < 2000; i++) {
+            double latitude = random.nextDouble() * 12 - 6;
+            double longitude = random.nextDouble() * 12 - 6;
+            double expected = 50000;
+            for (Geofence geofence : geofences) {
+                expected = Math.min(expected, geofence.getGeometry().getBoundaryDistance(latitude, longitude, 50000));
+            }
+            double distance = index.getBoundaryDistance(latitude, longitude, 50000, id -> true);
+            assertEquals(expected, distance, 0);
+            if (distance > 0) {
+                skipped += 1;
+                double[] moved = move(latitude, longitude, distance * random.nextDouble(), random.nextDouble() * 7);
+                assertEquals(
+                        getContaining(geofences, latitude, longitude), getContaining(geofences, moved[0], moved[1]));
+            }
+        }
+        assertTrue(skipped > 0);
+    }
+
+    @Test
+    public void testGeometryBoundaryDistance() throws ParseException {
+        Random random = new Random(3);
+        for (int i = 0; i < 200; i++) {
+            GeofenceGeometry geometry = createGeometry(random);
+            for (int j = 0; j < 50; j++) {
+                double latitude = random.nextDouble() * 12 - 6;
+                double longitude = random.nextDouble() * 12 - 6;
+                double distance = geometry.getBoundaryDistance(latitude, longitude, 200000);
+                double[] moved = move(latitude, longitude, distance * random.nextDouble(), random.nextDouble() * 7);
+                assertEquals(geometry.containsPoint(latitude, longitude), geometry.containsPoint(moved[0], moved[1]));
+            }
+        }
+        GeofenceGeometry circle = new GeofenceCircle(10, 10, 1000);
+        assertEquals(1000, circle.getBoundaryDistance(10, 10, 5000), 0.01);
+        assertEquals(5000, circle.getBoundaryDistance(20, 20, 5000), 0);
+    }
+
+    @Test
+    public void testFilter() throws ParseException {
+        List<Geofence> geofences = new ArrayList<>();
+        geofences.add(createGeofence(1, new GeofenceCircle(10, 10, 1000)));
+        geofences.add(createGeofence(2, new GeofenceCircle(10, 10, 2000)));
+        GeofenceIndex index = new GeofenceIndex(geofences);
+        assertEquals(List.of(2L), index.getContaining(10, 10, id -> id == 2));
+    }
+
+    @Test
+    public void testEnvelopeEdgeCases() throws ParseException {
+        GeofenceGeometry antimeridian = new GeofencePolygon("POLYGON ((10 179, 11 179, 11 -179, 10 -179, 10 179))");
+        assertTrue(antimeridian.containsPoint(10.5, 179.5));
+        assertTrue(antimeridian.getEnvelope().contains(179.5, 10.5));
+
+        GeofenceGeometry pole = new GeofenceCircle(89.9, 0, 50000);
+        assertTrue(pole.containsPoint(89.9, 180));
+        assertTrue(pole.getEnvelope().contains(180, 89.9));
+
+        GeofenceGeometry arc = new GeofencePolyline("LINESTRING (60 0, 60 90)", 1000);
+        assertTrue(arc.containsPoint(67.79, 45));
+        assertTrue(arc.getEnvelope().contains(45, 67.79));
+
+        GeofencePolyline line = new GeofencePolyline("LINESTRING (0 0, 0 1)", 100);
+        assertTrue(!line.getEnvelope().contains(0.5, 0.01));
+        line.setDistance(2000);
+        assertTrue(line.containsPoint(0.01, 0.5));
+        assertTrue(line.getEnvelope().contains(0.5, 0.01));
+    }
+
+}
@@ -0,0 +1,98 @@
+package org.traccar.geofence;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GeofencePreparedPolygonTest {
+
+    private static String createPolygon(Random random, double latitude, double longitude, int vertices) {
+        StringBuilder polygon = new StringBuilder("POLYGON ((");
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            double size = 0.2 + random.nextDouble();
+            if (i > 0) {
+                polygon.append(", ");
+            }
+            polygon.append(latitude + size * Math.sin(angle)).append(' ').append(longitude + size * Math.cos(angle));
+        }
+        return polygon.append("))").toString();
+    }
+
+    @Test
+    public void testCompatibility() throws ParseException {
+        Random random = new Random(5);
+        for (int vertices : new int[] {3, 10, 100, 1000}) {
+            String wkt = createPolygon(random, 50, 30, vertices);
+            GeofenceGeometry polygon = new GeofencePolygon(wkt);
+            GeofenceGeometry prepared = new GeofencePreparedPolygon(wkt);
+            for (int i = 0; i < 10000; i++) {
+                double latitude = 48.5 + random.nextDouble() * 3;
+                double longitude = 28.5 + random.nextDouble() * 3;
+                assertEquals(polygon.containsPoint(latitude, longitude), prepared.containsPoint(latitude, longitude));
+            }
+            assertEquals(polygon.getEnvelope(), prepared.getEnvelope());
+        }
+    }
+
+    @Test
+    public void testHoles() throws ParseException {
+        GeofenceGeometry geometry = new GeofencePreparedPolygon(
+                "POLYGON ((0 0, 0 10, 10 10, 10 0, 0 0), (4 4, 4 6, 6 6, 6 4, 4 4))");
+        assertTrue(geometry.containsPoint(2, 2));
+        assertFalse(geometry.containsPoint(5, 5));
+        assertFalse(geometry.containsPoint(11, 5));
+        assertEquals("POLYGON ((0.0 0.0, 0.0 10.0, 10.0 10.0, 10.0 0.0, 0.0 0.0), (4.0 4.0, 4.0 6.0, 6.0 6.0, 6.0 4.0, 4.0 4.0))",
+                geometry.toWkt());
+        assertTrue(geometry.getBoundaryDistance(5, 5, 1000000) > 0);
+    }
+
+    @Test
+    public void testMultiPolygon() throws ParseException {
+        String wkt = "MULTIPOLYGON (((0.0 0.0, 0.0 1.0, 1.0 1.0, 1.0 0.0, 0.0 0.0)), "
+                + "((5.0 5.0, 5.0 6.0, 6.0 6.0, 6.0 5.0, 5.0 5.0)))";
+        GeofenceGeometry geometry = new GeofencePreparedPolygon(wkt);
+        assertTrue(geometry.containsPoint(0.5, 0.5));
+        assertTrue(geometry.containsPoint(5.5, 5.5));
+        assertFalse(geometry.containsPoint(3, 3));
+        assertEquals(wkt, geometry.toWkt());
+        assertEquals(0, geometry.getEnvelope().getMinX(), 0);
+        assertEquals(6, geometry.getEnvelope().getMaxY(), 0);
+    }
+
+    @Test
+    public void testContainsPolygon180() throws ParseException {
+        GeofenceGeometry geometry = new GeofencePreparedPolygon(
+                "POLYGON ((66.9494 179.838, 66.9508 -179.8496, 66.8406 -180.0014))");
+        assertTrue(geometry.containsPoint(66.9015, -180.0096));
+        assertTrue(geometry.containsPoint(66.9015, 179.991));
+        assertFalse(geometry.containsPoint(66.8368, -179.8792));
+    }
+
+    @Test
+    public void testWktAndArea() throws ParseException {
+        String test = "POLYGON ((-23.559204099194772 148.8653145299711, -23.6000443437826 148.85956016213583, "
+                + "-23.600411843430095 148.89462111436828, -23.5626384786532 148.90278297873897, "
+                + "-23.5574863232753 148.88137329347367, -23.559204099194772 148.8653145299711))";
+        assertEquals(new GeofencePolygon(test).calculateArea(), new GeofencePreparedPolygon(test).calculateArea(), 0.01);
+
+        String wkt = "POLYGON ((55.75474 37.61823, 55.75513 37.61888, 55.7535 37.6222, 55.75315 37.62165))";
+        assertEquals("POLYGON ((55.75474 37.61823, 55.75513 37.61888, 55.7535 37.6222, 55.75315 37.62165, "
+                + "55.75474 37.61823))", new GeofencePreparedPolygon(wkt).toWkt());
+    }
+
+    @Test
+    public void testPreferred() {
+        Random random = new Random(1);
+        assertFalse(GeofencePreparedPolygon.isPreferred(createPolygon(random, 0, 0, 10)));
+        assertTrue(GeofencePreparedPolygon.isPreferred(createPolygon(random, 0, 0, 100)));
+        assertTrue(GeofencePreparedPolygon.isPreferred("POLYGON ((0 0, 0 9, 9 9, 0 0), (1 1, 1 2, 2 2, 1 1))"));
+        assertTrue(GeofencePreparedPolygon.isPreferred("MULTIPOLYGON (((0 0, 0 1, 1 1, 0 0)))"));
+    }
+
+}
@@ -0,0 +1,136 @@
+package org.traccar.helper;
+
+import org.junit.Test;
+import org.traccar.protocol.Gl200TextProtocolDecoder;
+import org.traccar.protocol.H02ProtocolDecoder;
+import org.traccar.protocol.Tk103ProtocolDecoder;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PatternScannerTest {
+
+    private static List<String> groups(Parser parser, int count, boolean find) {
+        List<String> result = new ArrayList<>();
+        while (find ? parser.find() : parser.matches()) {
+            for (int i = 0; i < count; i++) {
+                result.add(parser.next());
+            }
+            if (!find) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static void verify(PatternBuilder builder, String... inputs) {
+        Pattern pattern = builder.compile();
+        PatternScanner scanner = builder.compileScanner();
+        assertTrue(scanner.isCompiled());
+        for (String input : inputs) {
+            int count = pattern.matcher(input).groupCount();
+            for (boolean find : new boolean[] {false, true}) {
+                assertEquals(input, groups(new Parser(pattern, input), count, find),
+                        groups(new Parser(scanner, input), count, find));
+            }
+        }
+    }
+
+    @Test
+    public void testCompatibility() {
+
+        verify(new PatternBuilder()
+                .text("$GPRMC,")
+                .number("(dd)(dd)(dd).?d*,")
+                .expression("([AV]),")
+                .number("(d+)(dd.d+),")
+                .expression("([NS]),")
+                .number("(-?d+.?d*)?,")
+                .expression("([^,]+)?")
+                .any(),
+                "$GPRMC,123519.00,A,4807.038,N,12.5,test*47", "$GPRMC,123519,V,4807.038,S,,", "$GPRMC,12,A");
+
+        verify(new PatternBuilder()
+                .number("(d*?)(d?d.d+),")
+                .expression("(.*),")
+                .number("(x+)"),
+                "12345.67,a,b,c,ff", "5.0,,1", "x");
+
+        verify(new PatternBuilder()
+                .text("+RESP:")
+                .expression("((?:")
+                .number("(d+),")
+                .expression("[^,]*,")
+                .expression(")+)")
+                .number("(d{1,3}),")
+                .groupBegin()
+                .text("A")
+                .or()
+                .expression("(B+)")
+                .groupEnd("?")
+                .expression("$"),
+                "+RESP:1,a,2,,3,b,45,A", "+RESP:1,,2,BB\r\n", "+RESP:1,,", "+RESP:12,x,\n");
+
+        verify(new PatternBuilder()
+                .text("*")
+                .expression("[^\\|#]+")
+                .number("(x{2})")
+                .text("#"),
+                "*abc|12#*cd12#", "*ab12#", "no#");
+
+    }
+
+    @Test
+    public void testNumbers() {
+        Parser parser = new Parser(new PatternBuilder()
+                .number("(-?d+.?d*),(x+),(d+),(d+.d+)")
+                .compileScanner(), "-12.375,1f,0042,12345678901234567890.5");
+        assertTrue(parser.matches());
+        assertEquals(-12.375, parser.nextDouble(), 0);
+        assertEquals(31, parser.nextHexInt(0));
+        assertEquals(42, parser.nextInt(0));
+        assertEquals(12345678901234567890.5, parser.nextDouble(), 0);
+    }
+
+    @Test
+    public void testFallback() {
+        assertFalse(new PatternBuilder().expression("(?=a)a").compileScanner().isCompiled());
+        PatternScanner scanner = new PatternBuilder().number("(d+)").any().compileScanner();
+        Parser parser = new Parser(scanner, "12😀");
+        assertTrue(parser.matches());
+        assertEquals(12, parser.nextInt(0));
+    }
+
+    @Test
+    public void testFallbackFind() {
+        PatternScanner scanner = new PatternBuilder().text("#").number("(d+)").compileScanner();
+        Parser parser = new Parser(scanner, "#1,#2,😀#3");
+        int count = 0;
+        while (parser.find()) {
+            count += 1;
+            assertEquals(count, parser.nextInt(0));
+        }
+        assertEquals(3, count);
+    }
+
+    @Test
+    public void testDecoders() throws Exception {
+        for (Class<?> clazz : new Class<?>[] {
+                Gl200TextProtocolDecoder.class, Tk103ProtocolDecoder.class, H02ProtocolDecoder.class}) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) && field.getType() == PatternScanner.class) {
+                    field.setAccessible(true);
+                    assertTrue(field.getName(), ((PatternScanner) field.get(null)).isCompiled());
+                }
+            }
+        }
+    }
+
+}